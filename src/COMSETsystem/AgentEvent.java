@@ -2,6 +2,7 @@ package COMSETsystem;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -45,11 +46,21 @@ public class AgentEvent extends Event {
 	// The cause of the AgentEvent to be triggered, either INTERSECTION_REACHED or DROPPING_OFF.
 	public int eventCause;
 
+	// The index of the agent in the AgentStateStore of the simulator.
+	final int index;
+
 	/*
-	 * The time at which the agent started to search for a resource. This is also the
-	 * time at which the agent drops off a resource.
+	 * The roads of the route that the agent committed to, or null. The agent reaches the end of 
+	 * committedRoads[i] at committedArrivalTimes[i]; the last road is loc.road and its arrival time is time.
 	 */
-	long startSearchTime;
+	private Road[] committedRoads;
+	private long[] committedArrivalTimes;
+
+	// The buckets of the EmptyAgentIndex that the agent is in, or null if it is not in the index.
+	int[] indexBuckets;
+
+	// The last search of the EmptyAgentIndex that computed the travel time of the agent.
+	int indexSearch;
 
 	/**
 	 * Constructor for class AgentEvent.
@@ -59,16 +70,12 @@ public class AgentEvent extends Event {
 	 */
 	public AgentEvent(LocationOnRoad loc, long startedSearch, Simulator simulator) {
 		super(startedSearch, simulator);
+		this.index = simulator.agentStates.register(this);
 		this.loc = loc;
-		this.startSearchTime = startedSearch;
+		simulator.agentStates.setStartSearchTime(index, startedSearch);
 		this.eventCause = DROPPING_OFF; // The introduction of an agent is considered a drop-off event.
-		simulator.emptyAgents.add(this); 
-		try {
-			Constructor<? extends BaseAgent> cons = simulator.agentClass.getConstructor(Long.TYPE, CityMap.class);
-			agent = cons.newInstance(id, simulator.mapForAgents);
-		} catch (NoSuchMethodException | IllegalAccessException | InstantiationException | InvocationTargetException e) {
-			e.printStackTrace();
-		}		
+		simulator.addEmptyAgent(this); 
+		initAgent();
 	}
 
 	/**
@@ -76,13 +83,27 @@ public class AgentEvent extends Event {
 	 */
 	public void initAgent() {
 		try {
-			Constructor<? extends BaseAgent> cons = simulator.agentClass.getConstructor(Long.TYPE, CityMap.class);
-			agent = cons.newInstance(id, simulator.mapForAgents);
+			agent = createAgent();
 		} catch (NoSuchMethodException | IllegalAccessException | InstantiationException | InvocationTargetException e) {
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * Create the agent with its (long, CityMapView) constructor, or with the deprecated
+	 * (long, CityMap) constructor of agents written before the CityMapView was introduced.
+	 */
+	@SuppressWarnings("deprecation")
+	private BaseAgent createAgent() throws NoSuchMethodException, IllegalAccessException, InstantiationException, InvocationTargetException {
+		try {
+			Constructor<? extends BaseAgent> cons = simulator.agentClass.getConstructor(Long.TYPE, CityMapView.class);
+			return cons.newInstance(id, simulator.mapForAgents);
+		} catch (NoSuchMethodException e) {
+			Constructor<? extends BaseAgent> cons = simulator.agentClass.getConstructor(Long.TYPE, CityMap.class);
+			return cons.newInstance(id, simulator.map);
+		}
+	}
+
 	@Override
 	Event trigger() throws Exception {
 		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "******** AgentEvent id = " + id+ " triggered at time " + time, this);
@@ -103,9 +124,16 @@ public class AgentEvent extends Event {
 	Event intersectionReachedHandler() throws Exception{
 		assert loc.travelTimeFromStartIntersection == loc.road.travelTime : "Agent not at an intersection.";
 
+		if (simulator.routeCommit) {
+			// Let the agent commit to a route of several intersections.
+			List<Intersection> route = agent.commitRoute(loc, time);
+			if (route != null && !route.isEmpty()) {
+				return commit(route);
+			}
+		}
+
 		// Ask the agent to choose the next intersection to move to.
-		LocationOnRoad locAgentCopy = simulator.agentCopy(loc);
-		Intersection nextIntersection = agent.nextIntersection(locAgentCopy, time);
+		Intersection nextIntersection = agent.nextIntersection(loc, time);
 		if (nextIntersection == null) {
 			throw new Exception("agent.move() did not return a next location");
 		}
@@ -124,11 +152,116 @@ public class AgentEvent extends Event {
 		return this;
 	}
 
+	/*
+	 * Move the agent along a committed route, i.e., set the event to be triggered when the agent
+	 * reaches the end of the route.
+	 */
+	private Event commit(List<Intersection> route) throws Exception {
+		Road[] roads = new Road[route.size()];
+		long[] arrivalTimes = new long[route.size()];
+		Intersection current = loc.road.to;
+		long arrivalTime = time;
+		for (int i = 0; i < roads.length; i++) {
+			Intersection next = route.get(i);
+			if (next == null || !current.isAdjacent(next)) {
+				throw new Exception("move not made to an adjacent location");
+			}
+			roads[i] = current.roadTo(next);
+			arrivalTime += roads[i].travelTime;
+			arrivalTimes[i] = arrivalTime;
+			current = roads[i].to;
+		}
+		Road lastRoad = roads[roads.length - 1];
+		moveTo(arrivalTime, new LocationOnRoad(lastRoad, lastRoad.travelTime), INTERSECTION_REACHED, roads, arrivalTimes);
+
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Commit to a route of " + roads.length + " roads to " + lastRoad.to, this);
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Next trigger time = " + time, this);
+		return this;
+	}
+
+	/**
+	 * @return the time at which the agent started to search for a resource. This is also the
+	 * time at which the agent dropped off its last resource.
+	 */
+	long startSearchTime() {
+		return simulator.agentStates.startSearchTime(index);
+	}
+
+	/**
+	 * Find the step of the committed route that the agent is on when an event is triggered, i.e.,
+	 * the first road whose end the agent reaches after the event in the order of the event queue. 
+	 * 
+	 * @param event the event that is triggered, usually at a time before this event 
+	 * @return the index of the road in the committed route, or -1 if the agent is on loc.road
+	 */
+	int stepAt(Event event) {
+		if (committedRoads == null) {
+			return -1;
+		}
+		int low = 0;
+		int high = committedRoads.length - 1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			long arrivalTime = committedArrivalTimes[middle];
+			if (arrivalTime > event.time || (arrivalTime == event.time && id > event.id)) {
+				high = middle;
+			} else {
+				low = middle + 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @return the number of roads of the committed route, or 0 if the agent did not commit to a route
+	 */
+	int committedSteps() {
+		return committedRoads == null ? 0 : committedRoads.length;
+	}
+
+	/**
+	 * @param step a step returned by stepAt
+	 * @return the road the agent is on at the step
+	 */
+	Road roadAt(int step) {
+		return step < 0 ? loc.road : committedRoads[step];
+	}
+
+	/**
+	 * @param step a step returned by stepAt
+	 * @return the time at which the agent reaches the end of the road it is on at the step
+	 */
+	long arrivalTimeAt(int step) {
+		return step < 0 ? time : committedArrivalTimes[step];
+	}
+
+	/**
+	 * Calculate the location of an empty agent when an event is triggered.
+	 * 
+	 * Assumption: time is the arrival time at the end intersection of loc.road. 
+	 * This assumption is true for empty agents. Notice that when agents are initially introduced
+	 * to the system, they are empty and time is not necessarily the time to arrive at the end intersection.
+	 * However, all the agents are triggered once before the earliest resource (see MapWithData.createMapWithData).
+	 * When that happens, time is updated to the end intersection arrival time. 
+	 * Thus the assumption is still true.
+	 * If the agent follows a committed route, the same holds for the road of the route that it is on.
+	 * 
+	 * @param event the event that is triggered, at a time not after this event 
+	 * @return the location of the agent
+	 */
+	LocationOnRoad locationAt(Event event) {
+		int step = stepAt(event);
+		Road road = roadAt(step);
+		long travelTimeToEndIntersection = arrivalTimeAt(step) - event.time;
+		long travelTimeFromStartIntersection = road.travelTime - travelTimeToEndIntersection;
+		return new LocationOnRoad(road, travelTimeFromStartIntersection);
+	}
+
 	/*
 	 * The handler of a DROPPING_OFF event.
 	 */
 	Event dropoffHandler() {
-		startSearchTime = time;
+		simulator.agentStates.setStartSearchTime(index, time);
 		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Dropoff at " + loc, this);
 		// Only check the following when an agent drops off a resource. 
 		// Check if there are resources waiting to be picked up by an agent.
@@ -136,24 +269,34 @@ public class AgentEvent extends Event {
 			// get the closest resource that will not expire before the agent reaches it
 			ResourceEvent bestResource = null;
 			long earliest = Long.MAX_VALUE;
-			for (ResourceEvent res : simulator.waitingResources) {
-				// If res is in waitingResources, then it must have not expired yet
-				// testing null pointer exception 
-				long travelTime = Long.MAX_VALUE;
-				if (loc == null) {
-					System.out.println("loc is null");
-				} else if (res.pickupLoc == null) {
-					System.out.println("res.loc is null");
-				} else {
-					travelTime = simulator.map.travelTimeBetween(loc, res.pickupLoc);
+			if (simulator.batchWindow > 0) {
+				// The agent waits for the next batch (see BatchEvent).
+			} else if (simulator.waitingResourceGrid != null) {
+				// Only the resources that the agent may reach in time and earlier than the best one so far are considered.
+				bestResource = simulator.waitingResourceGrid.earliestResource(loc, time);
+				if (bestResource != null) {
+					earliest = time + simulator.map.travelTimeBetween(loc, bestResource.pickupLoc);
 				}
+			} else {
+				for (ResourceEvent res : simulator.waitingResources) {
+					// If res is in waitingResources, then it must have not expired yet
+					// testing null pointer exception 
+					long travelTime = Long.MAX_VALUE;
+					if (loc == null) {
+						System.out.println("loc is null");
+					} else if (res.pickupLoc == null) {
+						System.out.println("res.loc is null");
+					} else {
+						travelTime = simulator.map.travelTimeBetween(loc, res.pickupLoc);
+					}
 
-				if (travelTime != Long.MAX_VALUE) {
-					// if the resource is reachable before expiration
-					long arriveTime = time + travelTime;
-					if (arriveTime + simulator.ResourceMaximumLifeTime <= res.expirationTime && arriveTime < earliest) {
-						earliest = arriveTime;
-						bestResource = res;
+					if (travelTime != Long.MAX_VALUE) {
+						// if the resource is reachable before expiration
+						long arriveTime = time + travelTime;
+						if (arriveTime <= res.pickupDeadline() && arriveTime < earliest) {
+							earliest = arriveTime;
+							bestResource = res;
+						}
 					}
 				}
 			}
@@ -161,7 +304,7 @@ public class AgentEvent extends Event {
 			// if a a waiting resource is reachable in time by this agent make an assignment
 			if (bestResource != null) {
 				// update the statistics				
-				long cruiseTime = time - startSearchTime; 
+				long cruiseTime = time - startSearchTime(); 
 				long approachTime = earliest - time;
 				long searchTime = cruiseTime + approachTime;
 				long waitTime = earliest - bestResource.availableTime;
@@ -176,9 +319,9 @@ public class AgentEvent extends Event {
 	            assignedTo(loc, time, bestResource.id, bestResource.pickupLoc, bestResource.dropoffLoc);
 
 				// "Label" the agent as occupied
-				simulator.emptyAgents.remove(this);
+				simulator.removeEmptyAgent(this);
 
-				simulator.waitingResources.remove(bestResource);
+				simulator.removeWaitingResource(bestResource);
 				simulator.events.remove(bestResource); // resource is pickup and does not expire anymore. 
 
 				// set time and location of the next trigger 
@@ -195,8 +338,7 @@ public class AgentEvent extends Event {
 				return this;
 			} else {
 				// Let agent plan a search route after the current dropoff.
-				LocationOnRoad locAgentCopy = simulator.agentCopy(loc);
-				agent.planSearchRoute(locAgentCopy, time);
+				agent.planSearchRoute(loc, time);
 			}
 		}
 
@@ -204,7 +346,7 @@ public class AgentEvent extends Event {
 		// so if the agent was not empty, make it empty for other resources
 		if (!simulator.emptyAgents.contains(this)) {
 			// "Label" the agent as empty.
-			simulator.emptyAgents.add(this);
+			simulator.addEmptyAgent(this);
 		}
 		// move to the end intersection of the current road
 		long nextEventTime = time + loc.road.travelTime - loc.travelTimeFromStartIntersection;
@@ -215,15 +357,25 @@ public class AgentEvent extends Event {
 	}
 
 	public void assignedTo(LocationOnRoad currentLocation, long currentTime, long resourceId, LocationOnRoad resourcePickupLocation, LocationOnRoad resourceDropoffLocation) {
-		LocationOnRoad currentLocationAgentCopy = simulator.agentCopy(currentLocation);
-		LocationOnRoad resourcePickupLocationAgentCopy = simulator.agentCopy(resourcePickupLocation);
-		LocationOnRoad resourceDropoffLocationAgentCopy = simulator.agentCopy(resourceDropoffLocation);
-		agent.assignedTo(currentLocationAgentCopy, currentTime, resourceId, resourcePickupLocationAgentCopy, resourceDropoffLocationAgentCopy);
+		agent.assignedTo(currentLocation, currentTime, resourceId, resourcePickupLocation, resourceDropoffLocation);
 	}
 	
 	public void setEvent(long time, LocationOnRoad loc, int eventCause) {
+		moveTo(time, loc, eventCause, null, null);
+	}
+
+	/*
+	 * Set the location and time of the next trigger and the committed route, and move the agent
+	 * in the EmptyAgentIndex accordingly.
+	 */
+	private void moveTo(long time, LocationOnRoad loc, int eventCause, Road[] roads, long[] arrivalTimes) {
+		committedRoads = roads;
+		committedArrivalTimes = arrivalTimes;
 		this.time = time;
 		this.loc = loc;
 		this.eventCause = eventCause;
+		if (simulator.emptyAgentIndex != null) {
+			simulator.emptyAgentIndex.update(this);
+		}
 	}
 }
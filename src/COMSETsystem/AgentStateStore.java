@@ -0,0 +1,203 @@
+package COMSETsystem;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The AgentStateStore keeps the state of the agents that the simulator reads for many agents at
+ * once in parallel primitive arrays indexed by a dense agent index, instead of in a separate
+ * object or collection entry per agent: whether the agent is empty, as a bit set, and the time
+ * at which it started to search. The agent event of an agent stays the facade of its state (see
+ * AgentEvent.index), and the empty agents are available as a set of agent events (see
+ * emptyAgents) that is a view of the bit set.
+ *
+ * Agents are indexed in the order in which their agent events are created, which is also the
+ * order of their ids, so the empty agents are iterated in id order as from a set sorted by id.
+ * An empty agent costs a bit instead of an entry of a sorted set, and labeling an agent as empty
+ * or occupied takes constant time.
+ *
+ * The store is not a full structure-of-arrays layout of the agents. It replaces the sorted set
+ * of empty agents and the search start time only. An agent still costs its agent event, its
+ * BaseAgent and its LocationOnRoad. The location and the time of the next event of an agent stay
+ * in its agent event, and the event queue holds agent events, not agent indices: the queue orders
+ * agent and resource events alike by time and id, the location is handed to the agent as a
+ * LocationOnRoad at every event, and a batch reads the location of an agent on its committed
+ * route (see AgentEvent.locationAt). Keeping them in arrays as well would only add a copy to keep
+ * in sync that nothing reads.
+ */
+class AgentStateStore {
+
+	// The agent event of each agent.
+	private AgentEvent[] agents = new AgentEvent[16];
+
+	// The time at which each agent started to search for a resource.
+	private long[] startSearchTime = new long[16];
+
+	// The empty agents, one bit per agent.
+	private long[] empty = new long[1];
+
+	// The number of agents and the number of empty agents.
+	private int size = 0;
+	private int emptyCount = 0;
+
+	// The empty agents as a set of agent events.
+	private final EmptyAgents emptyAgents = new EmptyAgents();
+
+	/**
+	 * Add an agent to the store. The agent is occupied.
+	 *
+	 * @param agent the agent event of the agent
+	 * @return the index of the agent
+	 */
+	int register(AgentEvent agent) {
+		if (size == agents.length) {
+			agents = Arrays.copyOf(agents, size * 2);
+			startSearchTime = Arrays.copyOf(startSearchTime, size * 2);
+		}
+		if ((size >> 6) == empty.length) {
+			empty = Arrays.copyOf(empty, empty.length * 2);
+		}
+		agents[size] = agent;
+		return size++;
+	}
+
+	/**
+	 * @param index the index of an agent
+	 * @return the time at which the agent started to search for a resource
+	 */
+	long startSearchTime(int index) {
+		return startSearchTime[index];
+	}
+
+	/**
+	 * @param index the index of an agent
+	 * @param time the time at which the agent starts to search for a resource
+	 */
+	void setStartSearchTime(int index, long time) {
+		startSearchTime[index] = time;
+	}
+
+	/**
+	 * @param index the index of an agent
+	 * @return true if the agent is empty
+	 */
+	boolean isEmpty(int index) {
+		return (empty[index >> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Label an agent as empty or occupied.
+	 *
+	 * @param index the index of an agent
+	 * @param isEmpty true to label the agent as empty, false to label it as occupied
+	 * @return true if the label of the agent changed
+	 */
+	boolean setEmpty(int index, boolean isEmpty) {
+		if (isEmpty(index) == isEmpty) {
+			return false;
+		}
+		empty[index >> 6] ^= 1L << index;
+		emptyCount += isEmpty ? 1 : -1;
+		return true;
+	}
+
+	/**
+	 * @param index the index to start from
+	 * @return the smallest index of an empty agent not smaller than the given index, or -1 if there is none
+	 */
+	int nextEmpty(int index) {
+		int word = index >> 6;
+		if (word >= empty.length) {
+			return -1;
+		}
+		long bits = empty[word] & (-1L << index);
+		while (bits == 0) {
+			if (++word == empty.length) {
+				return -1;
+			}
+			bits = empty[word];
+		}
+		return (word << 6) + Long.numberOfTrailingZeros(bits);
+	}
+
+	/**
+	 * Label all agents as occupied.
+	 */
+	void clearEmpty() {
+		Arrays.fill(empty, 0);
+		emptyCount = 0;
+	}
+
+	/**
+	 * @return the empty agents as a set of agent events, in id order; adding or removing an agent
+	 * event labels the agent as empty or occupied
+	 */
+	EmptyAgents emptyAgents() {
+		return emptyAgents;
+	}
+
+	/**
+	 * A view of the empty agents as a set of agent events.
+	 */
+	class EmptyAgents extends AbstractSet<AgentEvent> {
+
+		@Override
+		public Iterator<AgentEvent> iterator() {
+			return new Iterator<AgentEvent>() {
+				private int next = nextEmpty(0);
+				private int last = -1;
+
+				@Override
+				public boolean hasNext() {
+					return next >= 0;
+				}
+
+				@Override
+				public AgentEvent next() {
+					if (next < 0) {
+						throw new NoSuchElementException();
+					}
+					last = next;
+					next = nextEmpty(next + 1);
+					return agents[last];
+				}
+
+				@Override
+				public void remove() {
+					if (last < 0) {
+						throw new IllegalStateException();
+					}
+					setEmpty(last, false);
+					last = -1;
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return emptyCount;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return o instanceof AgentEvent && AgentStateStore.this.isEmpty(((AgentEvent) o).index);
+		}
+
+		@Override
+		public boolean add(AgentEvent agent) {
+			return setEmpty(agent.index, true);
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			return o instanceof AgentEvent && setEmpty(((AgentEvent) o).index, false);
+		}
+
+		@Override
+		public void clear() {
+			clearEmpty();
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package COMSETsystem;
 
+import java.util.List;
+
 /**
  * The BaseAgent class is the class the participants should extend in order to create an Agent that will be used in
  * Simulator to run the simulation. The participants should extend the BaseAgent class to implement their agent search
@@ -7,8 +9,8 @@ package COMSETsystem;
  */
 public abstract class BaseAgent {
 
-	// Every agent gets a reference to the map
-	protected CityMap map;
+	// Every agent gets a read-only view of the map
+	protected CityMapView map;
 
 	// An id that is unique across all agents and resources 
 	protected final long id;
@@ -17,13 +19,26 @@ public abstract class BaseAgent {
 	 * BaseAgent constructor. 
 	 *
 	 * @param id An id that is unique among all agents and resources
-	 * @param map The map
+	 * @param map A read-only view of the map
 	 */
-	public BaseAgent (long id, CityMap map) {
+	public BaseAgent (long id, CityMapView map) {
 		this.id = id;
 		this.map = map;
 	}
 
+	/**
+	 * BaseAgent constructor of agents written before agents got a read-only view of the map. 
+	 * The agent gets a read-only view of the given map.
+	 *
+	 * @param id An id that is unique among all agents and resources
+	 * @param map The map
+	 * @deprecated Use BaseAgent(long, CityMapView) instead.
+	 */
+	@Deprecated
+	public BaseAgent (long id, CityMap map) {
+		this(id, new CityMapView(map));
+	}
+
 	/**
 	 * This is a callback method called when the agent drops off a resource or when the previous route is finished. 
 	 * The agent uses this method to plan a route which defines what is the intersection to return for each of 
@@ -42,6 +57,9 @@ public abstract class BaseAgent {
 	 * This method is a callback method which is called when the agent reaches an intersection. The agent decides which
 	 * of the neighboring intersections to go to. The Simulator will move the agent to the returned intersection and then 
 	 * call this method again, and so on. This is how a planned route is executed by the Simulator. 
+	 * 
+	 * If the agent is thread safe (see isThreadSafe) and comset.agent_event_parallelism is not 1, this method
+	 * may be called for several agents at the same time from different threads.
 	 *
 	 * @param currentLocation The agent's location at the time when the method is called 
 	 * @param currentTime The time at which the method is invoked
@@ -49,6 +67,44 @@ public abstract class BaseAgent {
 	 */
 	public abstract Intersection nextIntersection(LocationOnRoad currentLocation, long currentTime); 
 
+	/**
+	 * This method may be overridden by an agent that knows several intersections of its route ahead, e.g., because
+	 * it follows a planned route. It is called instead of nextIntersection when the agent reaches an intersection.
+	 * 
+	 * The agent may return the intersections it is going to move to, one after the other, i.e., the intersections 
+	 * that nextIntersection would return for the current and the subsequent intersections. The Simulator then moves 
+	 * the agent along the whole route in a single event without calling nextIntersection on the way, and calls this 
+	 * method again when the agent reaches the end of the route. If the agent is assigned to a resource on the way, 
+	 * the rest of the route is dropped and assignedTo is called as usual, with the location of the agent on the route.
+	 * The agent should therefore consider the returned route as driven, e.g., remove it from its planned route.
+	 * 
+	 * The default implementation returns null, i.e., the agent is asked for one intersection at a time with 
+	 * nextIntersection.
+	 *
+	 * @param currentLocation The agent's location at the time when the method is called 
+	 * @param currentTime The time at which the method is invoked
+	 * @return the intersections the agent is going to move to, starting with a neighbor of the current intersection,
+	 * or null to be asked with nextIntersection instead
+	 */
+	public List<Intersection> commitRoute(LocationOnRoad currentLocation, long currentTime) {
+		return null;
+	}
+
+	/**
+	 * This method may be overridden to declare that nextIntersection and commitRoute do not modify state that 
+	 * is shared between agents, e.g., a shared random number generator or a lazily loaded data model, so that 
+	 * the Simulator may call them for several agents at the same time from different threads (see 
+	 * comset.agent_event_parallelism). The Simulator triggers all events one by one unless every agent is 
+	 * thread safe.
+	 * 
+	 * The default implementation returns false.
+	 *
+	 * @return true if the agent may be moved in parallel with other agents
+	 */
+	public boolean isThreadSafe() {
+		return false;
+	}
+
 	/**
 	 * This method is to inform the agent that it is assigned to a resource. No action is necessary from the agent. The agent
 	 * will be automatically moved to the destination of the resource. The method is provided in case that the agent wants to use
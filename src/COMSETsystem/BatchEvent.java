@@ -0,0 +1,184 @@
+package COMSETsystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The BatchEvent assigns the waiting resources to the empty agents in batches (see
+ * Simulator.setBatchWindow). Instead of assigning each resource to the agent that reaches it
+ * the earliest when it becomes available, and each agent that becomes empty to the resource it
+ * reaches the earliest, resources wait and agents cruise until the next batch, which is
+ * triggered at the end of every window.
+ *
+ * A batch assigns the waiting resources to the empty agents so that as many resources as possible
+ * are assigned, and among those assignments the total approach time is the least, by solving the
+ * assignment problem (see HungarianAssignment). An agent may only be assigned a resource that it
+ * reaches not after the expiration time of the resource, as when a resource becomes available.
+ *
+ * The approach times of all agents to a resource are computed together, from the column of the path
+ * table towards the pickup location (see CityMap.travelTimesTo). Only the agents that are among
+ * the r agents reaching some resource the earliest, for r waiting resources, take part in the
+ * assignment problem: if a resource were assigned an agent outside its r earliest, one of those r
+ * would be left over by the other r - 1 resources and could take the resource instead with no
+ * larger approach time. The assignment problem thus has at most r * r agents however many agents
+ * are empty.
+ *
+ * A batch event has a larger id than all agent and resource events, so it is triggered after
+ * the events of the same time.
+ */
+class BatchEvent extends Event {
+
+	// The time between two batches in seconds.
+	private final long window;
+
+	/**
+	 * Constructor for class BatchEvent.
+	 *
+	 * @param time the time of the first batch
+	 * @param simulator a reference to simulator
+	 * @param window the time between two batches in seconds
+	 */
+	BatchEvent(long time, Simulator simulator, long window) {
+		super(time, simulator);
+		this.window = window;
+	}
+
+	/**
+	 * Assign the waiting resources to the empty agents and schedule the next batch.
+	 */
+	@Override
+	Event trigger() throws Exception {
+		if (!simulator.waitingResources.isEmpty() && !simulator.emptyAgents.isEmpty()) {
+			assign();
+		}
+		time += window;
+		return this;
+	}
+
+	/**
+	 * Assign the waiting resources to the empty agents.
+	 */
+	private void assign() {
+		List<AgentEvent> agents = new ArrayList<>(simulator.emptyAgents);
+		List<ResourceEvent> resources = new ArrayList<>(simulator.waitingResources);
+		LocationOnRoad[] agentLocations = new LocationOnRoad[agents.size()];
+		for (int i = 0; i < agents.size(); i++) {
+			agentLocations[i] = agents.get(i).locationAt(this);
+		}
+
+		// The candidates of a resource are the agents that reach it in time, at most as many as
+		// there are resources, the earliest first and ties broken by the smaller agent index.
+		boolean[] agentCandidate = new boolean[agents.size()];
+		boolean[] resourceFeasible = new boolean[resources.size()];
+		long[] approachTimes = new long[agents.size()];
+		long[] candidates = new long[agents.size()];
+		for (int j = 0; j < resources.size(); j++) {
+			ResourceEvent resource = resources.get(j);
+			simulator.map.travelTimesTo(agentLocations, resource.pickupLoc, approachTimes);
+			int count = 0;
+			for (int i = 0; i < agents.size(); i++) {
+				if (approachTimes[i] <= resource.expirationTime - time) {
+					candidates[count++] = approachTimes[i] << 32 | i;
+				}
+			}
+			if (count > resources.size()) {
+				Arrays.sort(candidates, 0, count);
+				count = resources.size();
+			}
+			for (int k = 0; k < count; k++) {
+				agentCandidate[(int) candidates[k]] = true;
+			}
+			resourceFeasible[j] = count > 0;
+		}
+
+		// Only the candidate agents and the resources that can be assigned at all take part in the assignment problem.
+		int[] agentIndex = indexOf(agentCandidate);
+		int[] resourceIndex = indexOf(resourceFeasible);
+		if (agentIndex.length == 0) {
+			return;
+		}
+
+		// The approach time of each candidate agent to each resource, or -1 if the agent cannot reach it in time.
+		LocationOnRoad[] candidateLocations = new LocationOnRoad[agentIndex.length];
+		for (int i = 0; i < agentIndex.length; i++) {
+			candidateLocations[i] = agentLocations[agentIndex[i]];
+		}
+		long[][] approach = new long[resourceIndex.length][agentIndex.length];
+		for (int j = 0; j < resourceIndex.length; j++) {
+			ResourceEvent resource = resources.get(resourceIndex[j]);
+			simulator.map.travelTimesTo(candidateLocations, resource.pickupLoc, approach[j]);
+			for (int i = 0; i < agentIndex.length; i++) {
+				if (approach[j][i] > resource.expirationTime - time) {
+					approach[j][i] = -1;
+				}
+			}
+		}
+
+		// An infeasible assignment costs more than any assignment of feasible pairs only, so that
+		// the solution has as many feasible pairs as possible. Approach times are at most the
+		// maximum life time of a resource.
+		boolean transposed = agentIndex.length > resourceIndex.length;
+		int rows = transposed ? resourceIndex.length : agentIndex.length;
+		int columns = transposed ? agentIndex.length : resourceIndex.length;
+		long infeasible = (rows + 1) * (simulator.ResourceMaximumLifeTime + 1);
+		long[][] cost = new long[rows][columns];
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				long approachTime = transposed ? approach[row][column] : approach[column][row];
+				cost[row][column] = approachTime >= 0 ? approachTime : infeasible;
+			}
+		}
+		int[] assignment = HungarianAssignment.solve(cost);
+
+		// Make the assignments in the order of the resources.
+		AgentEvent[] agentOfResource = new AgentEvent[resourceIndex.length];
+		LocationOnRoad[] locationOfResource = new LocationOnRoad[resourceIndex.length];
+		long[] approachOfResource = new long[resourceIndex.length];
+		for (int row = 0; row < rows; row++) {
+			int i = transposed ? assignment[row] : row;
+			int j = transposed ? row : assignment[row];
+			long approachTime = approach[j][i];
+			if (approachTime >= 0) {
+				agentOfResource[j] = agents.get(agentIndex[i]);
+				locationOfResource[j] = candidateLocations[i];
+				approachOfResource[j] = approachTime;
+			}
+		}
+		int assigned = 0;
+		for (int j = 0; j < resourceIndex.length; j++) {
+			if (agentOfResource[j] == null) {
+				continue;
+			}
+			ResourceEvent resource = resources.get(resourceIndex[j]);
+			AgentEvent agent = resource.assignTo(agentOfResource[j], locationOfResource[j], time, time + approachOfResource[j]);
+			simulator.removeWaitingResource(resource);
+			simulator.events.remove(resource); // resource is pickup and does not expire anymore.
+			simulator.events.add(agent);
+			assigned++;
+		}
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Batch assigned " + assigned + " of " + resources.size() + " waiting resources to " + agents.size() + " empty agents", this);
+	}
+
+	/**
+	 * @return the indices of the true values
+	 */
+	private static int[] indexOf(boolean[] values) {
+		int count = 0;
+		for (boolean value : values) {
+			if (value) {
+				count++;
+			}
+		}
+		int[] indices = new int[count];
+		count = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (values[i]) {
+				indices[count++] = i;
+			}
+		}
+		return indices;
+	}
+}
@@ -1,17 +1,20 @@
 package COMSETsystem;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import com.google.common.collect.ImmutableList;
 import net.iakovlev.timeshape.TimeZoneEngine;
 import org.apache.log4j.BasicConfigurator;
 import org.apache.log4j.Level;
@@ -20,8 +23,6 @@ import org.apache.log4j.Logger;
 import DataParsing.GeoProjector;
 import DataParsing.KdTree;
 
-import java.util.PriorityQueue;
-import java.awt.geom.Point2D;
 import java.time.ZoneId;
 
 
@@ -44,11 +45,20 @@ public class CityMap {
 	// kdTree for map matching
 	private KdTree kdTree;
 
-	// Shortest travel-time path table.
-	private ImmutableList<ImmutableList<PathTableEntry>> immutablePathTable;
+	// The number of points that are matched as one task in mapMatch.
+	private final static int MAP_MATCH_CHUNK_SIZE = 4096;
+
+	// Shortest travel-time path table, a PathTable or a CompactPathTable.
+	private DensePathTable pathTable;
+
+	// The backend answering shortest travel time queries; the path table if it has been computed.
+	private RoutingBackend routingBackend;
 	
-	// A map from an intersection's path table index to the intersection itself.
-	private HashMap<Integer, Intersection> intersectionsByPathTableIndex;
+	// The intersections by path table index.
+	private Intersection[] intersectionsByPathTableIndex;
+
+	// The road network in compressed sparse row form, indexed by pathTableIndex.
+	private RoadGraph graph;
 
 	/*
 	 * Constructor of CityMap
@@ -60,23 +70,23 @@ public class CityMap {
 		this.kdTree = kdTree;
 		this.roads = roads;
 
+		// setup the index of every road
+		for (int i = 0; i < roads.size(); i++) {
+			roads.get(i).index = i;
+		}
+
 		// setup pathTableIndex for every intersection
-		intersectionsByPathTableIndex = new HashMap<Integer, Intersection>();
+		intersectionsByPathTableIndex = new Intersection[intersections.size()];
 		int index = 0;
 		for (Intersection intersection : intersections.values()) {
 			intersection.pathTableIndex = index++;
-			intersectionsByPathTableIndex.put(intersection.pathTableIndex, intersection);
+			intersectionsByPathTableIndex[intersection.pathTableIndex] = intersection;
 		}
 
+		graph = new RoadGraph(intersections.values());
 	}
 
 	
-	/**
-	 * Create an empty CityMap object for making a copy.
-	 * See makeCopy().
-	 */
-	public CityMap() {}
-
 	/**
 	 * Gets the time it takes to move from one intersection to the next
 	 * intersection. This assumes traversal at pre-defined travel speed of the roads.
@@ -86,7 +96,7 @@ public class CityMap {
 	 * @return the time in seconds it takes to go from source to destination
 	 */
 	public long travelTimeBetween (Intersection source, Intersection destination) {
-		return immutablePathTable.get(source.pathTableIndex).get(destination.pathTableIndex).travelTime;
+		return routingBackend.travelTime(source.pathTableIndex, destination.pathTableIndex);
 	}
 
 
@@ -113,6 +123,30 @@ public class CityMap {
 		return travelTime;
 	}        
 
+	/**
+	 * Gets the times it takes to move from each of several locations to one location, as
+	 * travelTimeBetween(LocationOnRoad, LocationOnRoad) would for each of them. The travel times
+	 * between intersections all end at the start intersection of the destination's road, so with
+	 * a path table they are read from a single column of the table, one entry per source.
+	 *
+	 * @param sources The locations to depart from
+	 * @param destination The location to arrive at
+	 * @param travelTimes The array to store the travel time from each source in, at the index of the source
+	 */
+	public void travelTimesTo (LocationOnRoad[] sources, LocationOnRoad destination, long[] travelTimes) {
+		int destinationIndex = destination.road.from.pathTableIndex;
+		for (int i = 0; i < sources.length; i++) {
+			LocationOnRoad source = sources[i];
+			if (source.road == destination.road && source.travelTimeFromStartIntersection <= destination.travelTimeFromStartIntersection) {
+				travelTimes[i] = destination.travelTimeFromStartIntersection - source.travelTimeFromStartIntersection;
+			} else {
+				travelTimes[i] = source.road.travelTime - source.travelTimeFromStartIntersection
+						+ routingBackend.travelTime(source.road.to.pathTableIndex, destinationIndex)
+						+ destination.travelTimeFromStartIntersection;
+			}
+		}
+	}
+
 	/**
 	 * @return { @code projector }
 	 */
@@ -130,8 +164,61 @@ public class CityMap {
 	 */
 	public Link getNearestLink(double longitude, double latitude){
 		double[] xy = projector.fromLatLon(latitude, longitude);
-		Point2D p = new Point2D.Double(xy[0], xy[1]);
-		return kdTree.nearest(p);    	
+		return kdTree.nearest(xy[0], xy[1]);
+	}
+
+	/**
+	 * Match a batch of points to the closest locations on the map, as MapWithData.mapMatch does
+	 * for one point. The points are split into chunks that are matched by the given executor;
+	 * the kdTree is not modified after the map is created, so its nearest link queries run in
+	 * all threads at once, and they allocate nothing. The locations are the same as those of
+	 * MapWithData.mapMatch.
+	 *
+	 * @param longitudes the longitudes of the points
+	 * @param latitudes the latitudes of the points
+	 * @param executor the executor that matches the chunks, or null to match them in this thread
+	 * @return the locations of the points
+	 */
+	public MapMatches mapMatch(double[] longitudes, double[] latitudes, ExecutorService executor) {
+		final MapMatches matches = new MapMatches(roads, longitudes.length);
+		if (executor == null || longitudes.length <= MAP_MATCH_CHUNK_SIZE) {
+			mapMatch(longitudes, latitudes, matches, 0, longitudes.length);
+			return matches;
+		}
+
+		List<Future<?>> chunks = new ArrayList<>();
+		for (int from = 0; from < longitudes.length; from += MAP_MATCH_CHUNK_SIZE) {
+			final int chunkFrom = from;
+			final int chunkTo = Math.min(from + MAP_MATCH_CHUNK_SIZE, longitudes.length);
+			chunks.add(executor.submit(() -> mapMatch(longitudes, latitudes, matches, chunkFrom, chunkTo)));
+		}
+		try {
+			for (Future<?> chunk : chunks) {
+				chunk.get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			for (Future<?> chunk : chunks) {
+				chunk.cancel(true);
+			}
+			throw new RuntimeException("Map matching failed", e);
+		}
+		return matches;
+	}
+
+	/**
+	 * Match the points from index from (inclusive) to index to (exclusive) and write their
+	 * locations to the matches.
+	 */
+	private void mapMatch(double[] longitudes, double[] latitudes, MapMatches matches, int from, int to) {
+		for (int i = from; i < to; i++) {
+			double x = projector.xFromLon(longitudes[i]);
+			double y = projector.yFromLat(latitudes[i]);
+			Link link = kdTree.nearest(x, y);
+			matches.x[i] = x;
+			matches.y[i] = y;
+			matches.roads[i] = link.getRoad().index;
+			matches.offsets[i] = link.travelTimeFromStartIntersection(x, y);
+		}
 	}
 
 	/**
@@ -139,74 +226,163 @@ public class CityMap {
 	 * from each intersection using Dijkstra.
 	 */
 	public void calcTravelTimes() {
-		ArrayList<ArrayList<PathTableEntry>> pathTable;
+		calcTravelTimes(1);
+	}
 
-		// initialize path table
-		pathTable = new ArrayList<ArrayList<PathTableEntry>>();
-		for (int i = 0; i < intersections.size(); i++) {
-			ArrayList<PathTableEntry> aList = new ArrayList<PathTableEntry>();
-			for (int j = 0; j < intersections.size(); j++) {
-				aList.add(null);
-			}
-			pathTable.add(aList);
-		}
+	/**
+	 * Compute all-pair shortest travel times with the given number of threads. The one-to-all
+	 * Dijkstra runs of the individual sources are independent, so every worker thread takes
+	 * the next source that has not been taken yet, runs Dijkstra with its own DijkstraEngine,
+	 * and writes the entries of that source. Since the entries of a source are written by exactly
+	 * one worker and ties in the queue are broken by intersection index, the table is identical to
+	 * the one computed by a single thread.
+	 *
+	 * @param parallelism the number of worker threads; 0 to use all available processors
+	 */
+	public void calcTravelTimes(int parallelism) {
+		calcTravelTimes(parallelism, false);
+	}
 
-		// creates a queue entry for each intersection
-		HashMap<Intersection, DijkstraQueueEntry> queueEntry = new HashMap<>();
-		for (Intersection i : intersections.values()) {
-			queueEntry.put(i, new DijkstraQueueEntry(i));
+	/**
+	 * Compute all-pair shortest travel times with the given number of threads into a PathTable,
+	 * or into a CompactPathTable that holds the same travel times and next hops in 3 instead of
+	 * 8 bytes per pair of intersections.
+	 *
+	 * @param parallelism the number of worker threads; 0 to use all available processors
+	 * @param compact whether to compute a CompactPathTable
+	 */
+	public void calcTravelTimes(int parallelism, boolean compact) {
+		if (parallelism <= 0) {
+			parallelism = Runtime.getRuntime().availableProcessors();
 		}
 
-		for (Intersection source : intersections.values()) {
-			// 'reset' every queue entry
-			for (DijkstraQueueEntry entry : queueEntry.values()) {
-				entry.cost = Long.MAX_VALUE;
-				entry.inQueue = true;
+		// initialize path table
+		final DensePathTable table = compact ? new CompactPathTable(graph) : new PathTable(intersections.size());
+		final Intersection[] sources = intersections.values().toArray(new Intersection[0]);
+
+		if (parallelism == 1) {
+			DijkstraEngine engine = new DijkstraEngine(graph);
+			int[] nextHops = new int[graph.size()];
+			for (Intersection source : sources) {
+				calcTravelTimesFrom(source, engine, nextHops, table);
 			}
-
-			// source is set at distance 0
-			DijkstraQueueEntry sourceEntry = queueEntry.get(source);
-			sourceEntry.cost = 0;
-			pathTable.get(source.pathTableIndex).set(source.pathTableIndex, new PathTableEntry(0L, source.pathTableIndex));
-
-			PriorityQueue<DijkstraQueueEntry> queue = new PriorityQueue<>(queueEntry.values());
-
-			while (!queue.isEmpty()) {
-				DijkstraQueueEntry entry = queue.poll();
-				entry.inQueue = false;
-
-				for (Road r : entry.intersection.getRoadsFrom()) {
-					DijkstraQueueEntry v = queueEntry.get(r.to);
-					if (!v.inQueue) continue;
-					long ncost = entry.cost + r.travelTime;
-					if (v.cost > ncost) {
-						queue.remove(v);
-						v.cost = ncost;
-						pathTable.get(source.pathTableIndex).set(v.intersection.pathTableIndex, new PathTableEntry(v.cost, entry.intersection.pathTableIndex));
-						queue.add(v);
+		} else {
+			final AtomicInteger nextSource = new AtomicInteger(0);
+			ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+			List<Future<?>> workers = new ArrayList<>();
+			for (int i = 0; i < parallelism; i++) {
+				workers.add(executor.submit(() -> {
+					DijkstraEngine engine = new DijkstraEngine(graph);
+					int[] nextHops = new int[graph.size()];
+					int next;
+					while ((next = nextSource.getAndIncrement()) < sources.length) {
+						calcTravelTimesFrom(sources[next], engine, nextHops, table);
 					}
+				}));
+			}
+			executor.shutdown();
+			try {
+				for (Future<?> worker : workers) {
+					worker.get();
 				}
+			} catch (InterruptedException | ExecutionException e) {
+				executor.shutdownNow();
+				throw new RuntimeException("Computing the path table failed", e);
 			}
 		}
+		table.finish();
 
-		// Make the path table unmodifiable
-		makePathTableUnmodifiable(pathTable);
+		pathTable = table;
+		routingBackend = table;
 	}
 
 	/**
-	 * Make a path table unmodifiable.
-	 * @param pathTable
+	 * Compute one-to-all shortest travel times from a source and write them to the entries of the
+	 * source in the table. The next hop towards a node is the first move on the path to the node in
+	 * the shortest path tree of the source, i.e., the next hop of its predecessor, or the node itself
+	 * if its predecessor is the source. Nodes are settled after their predecessors, so the next hops
+	 * are known in settling order. Following the next hops thus takes the first intersection of the
+	 * same route as reconstructing the route backwards from the predecessors of the source.
+	 *
+	 * @param source the source intersection
+	 * @param engine the Dijkstra engine of the calling thread
+	 * @param nextHops scratch space of the calling thread for the next hops, one per intersection
+	 * @param table the table to write to
 	 */
-	public void makePathTableUnmodifiable(ArrayList<ArrayList<PathTableEntry>> pathTable) {
-		ArrayList<ImmutableList<PathTableEntry>> aListOfImmutableList = new ArrayList<ImmutableList<PathTableEntry>>();
-		for (int i = 0; i < intersections.size(); i++) {
-			ArrayList<PathTableEntry> aListOfPathTableEntries = pathTable.get(i);
-			aListOfImmutableList.add(ImmutableList.copyOf(aListOfPathTableEntries));
-			aListOfPathTableEntries.clear();
+	private void calcTravelTimesFrom(Intersection source, DijkstraEngine engine, int[] nextHops, DensePathTable table) {
+		int sourceIndex = source.pathTableIndex;
+		engine.run(sourceIndex);
+		for (int i = 0; i < engine.settledCount(); i++) {
+			int node = engine.settled(i);
+			int predecessor = engine.predecessor(node);
+			nextHops[node] = node == sourceIndex || predecessor == sourceIndex ? node : nextHops[predecessor];
+			table.set(sourceIndex, node, engine.distance(node), nextHops[node]);
 		}
-		pathTable.clear();
+	}
 
-		immutablePathTable = ImmutableList.copyOf(aListOfImmutableList);
+	/**
+	 * Map the all-pair shortest travel times from a cache if the cache has an entry for this map,
+	 * otherwise compute them with calcTravelTimes and store them in the cache for later runs.
+	 * Failures of the cache are reported and otherwise ignored, i.e., the travel times are then
+	 * computed as if there were no cache.
+	 *
+	 * @param cache the cache of the path table of this map
+	 * @param parallelism the number of threads used to compute the travel times, see calcTravelTimes
+	 */
+	public void loadOrCalcTravelTimes(PathTableCache cache, int parallelism) {
+		loadOrCalcTravelTimes(cache, parallelism, false);
+	}
+
+	/**
+	 * Map the all-pair shortest travel times from a cache, or compute and cache them, as a
+	 * PathTable or a CompactPathTable. The two encodings are cached in separate files.
+	 *
+	 * @param cache the cache of the path table of this map
+	 * @param parallelism the number of threads used to compute the travel times, see calcTravelTimes
+	 * @param compact whether to use a CompactPathTable
+	 */
+	public void loadOrCalcTravelTimes(PathTableCache cache, int parallelism, boolean compact) {
+		try {
+			DensePathTable table = compact ? cache.loadCompact(graph) : cache.load(intersections.size());
+			if (table != null) {
+				System.out.println("Loaded all pair travel times from " + (compact ? cache.compactFile() : cache.file()));
+				pathTable = table;
+				routingBackend = table;
+				return;
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		calcTravelTimes(parallelism, compact);
+
+		try {
+			if (compact) {
+				cache.store((CompactPathTable) pathTable);
+			} else {
+				cache.store((PathTable) pathTable);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Use a routing backend other than the path table to answer shortest travel time queries,
+	 * e.g., a LandmarkRouter for maps that are too large for the path table. This replaces
+	 * calcTravelTimes.
+	 *
+	 * @param routingBackend the backend
+	 */
+	public void setRoutingBackend(RoutingBackend routingBackend) {
+		this.routingBackend = routingBackend;
+	}
+
+	/**
+	 * @return the backend answering shortest travel time queries
+	 */
+	public RoutingBackend routingBackend() {
+		return routingBackend;
 	}
 
 	/**
@@ -216,50 +392,41 @@ public class CityMap {
 	 * @return LinkedList<Intersection> an ordered list of intersections forming the path
 	 */
 	public LinkedList<Intersection> shortestTravelTimePath(Intersection source, Intersection destination) {
+		int[] indices = routingBackend.path(source.pathTableIndex, destination.pathTableIndex);
+		if (indices == null) {
+			throw new IllegalArgumentException("Intersection " + destination.id + " cannot be reached from intersection " + source.id);
+		}
 		LinkedList<Intersection> path = new LinkedList<Intersection>();
-		path.addFirst(destination);
-		int current = destination.pathTableIndex;
-		while (current != source.pathTableIndex) {
-			int pred = immutablePathTable.get(source.pathTableIndex).get(current).predecessor;
-			path.addFirst(intersectionsByPathTableIndex.get(pred));
-			current = pred;
+		for (int i = 0; i < indices.length - 1; i++) {
+			path.add(intersectionsByPathTableIndex[indices[i]]);
 		}
+		path.add(destination);
 		return path;
 	}
 
-	private class DijkstraQueueEntry implements Comparable<DijkstraQueueEntry> {
-		Intersection intersection;
-		long cost = Long.MAX_VALUE;
-		boolean inQueue = true;
-
-		DijkstraQueueEntry(Intersection intersection) {
-			this.intersection = intersection;
-		}
-
-		@Override
-		public int compareTo(DijkstraQueueEntry j) {
-			if (this.cost < j.cost) {
-				return -1;
-			} else if (this.cost > j.cost) {
-				return 1;
-			} else if (this.intersection.id < j.intersection.id) {
-				return -1;
-			} else if (this.intersection.id > j.intersection.id) {
-				return 1;
-			} else {
-				return 0;
-			}
-		}
+	/**
+	 * Create a cursor to follow shortest travel time routes on this map one intersection at a
+	 * time. See RouteCursor.
+	 *
+	 * @return a new cursor without a route
+	 */
+	public RouteCursor routeCursor() {
+		return new RouteCursor(this);
 	}
 
-	private class PathTableEntry {
-		final long travelTime;
-		final int predecessor;
+	/**
+	 * @param pathTableIndex the path table index of an intersection
+	 * @return the intersection
+	 */
+	public Intersection intersectionByPathTableIndex(int pathTableIndex) {
+		return intersectionsByPathTableIndex[pathTableIndex];
+	}
 
-		PathTableEntry(long travelTime, int predecessor) {
-			this.travelTime = travelTime;
-			this.predecessor = predecessor;
-		}
+	/**
+	 * @return { @code graph }, the road network in compressed sparse row form
+	 */
+	public RoadGraph graph() {
+		return graph;
 	}
 
 	/**
@@ -276,89 +443,6 @@ public class CityMap {
 		return intersections;
 	}
 
-	/**
-	 * 
-	 * @return a deep copy of the map
-	 */
-	public CityMap makeCopy() {
-		// deeply copy intersections
-		Map<Long, Vertex> verticesCopy = new TreeMap<Long, Vertex>();
-		Map<Long, Intersection> intersectionsCopy = new TreeMap<Long, Intersection>();
-		for (Intersection intersection : intersections.values()) {
-			for (Road road : intersection.roadsMapFrom.values()) {
-				ArrayList<Link> linksCopy = new ArrayList<Link>();
-				for (Link link : road.links) {
-					// create start vertex if not existing yet
-					if (!verticesCopy.containsKey(link.from.id)) {
-						// create a new vertex
-						Vertex vertexFrom = new Vertex(link.from); 
-						verticesCopy.put(vertexFrom.id, vertexFrom);
-					}				
-					// create end vertex if not existing yet
-					if (!verticesCopy.containsKey(link.to.id)) {
-						// create a new vertex
-						Vertex vertexTo = new Vertex(link.to);
-						verticesCopy.put(vertexTo.id, vertexTo);
-					}
-					// create a link
-					Vertex vertexFrom = verticesCopy.get(link.from.id);
-					Vertex vertexTo = verticesCopy.get(link.to.id);
-					Link linkCopy = new Link(link, vertexFrom, vertexTo);
-					vertexFrom.linksMapFrom.put(vertexTo, linkCopy);
-					vertexTo.linksMapTo.put(vertexFrom, linkCopy);
-					linksCopy.add(linkCopy);
-				}
-				Link firstLink = linksCopy.get(0);
-
-				// create start intersection if not existing yet
-				if (!intersectionsCopy.containsKey(road.from.id)) {
-					// create a new intersection
-					Intersection intersectionFrom = new Intersection(road.from);
-					intersectionFrom.vertex = firstLink.from;
-					firstLink.from.intersection = intersectionFrom;
-					intersectionsCopy.put(intersectionFrom.id, intersectionFrom);
-				}
-				Link lastLink = linksCopy.get(linksCopy.size()-1);
-				// create end intersection if not existing yet
-				if (!intersectionsCopy.containsKey(road.to.id)) {
-					// create a new intersection
-					Intersection intersectionTo = new Intersection(road.to);
-					intersectionTo.vertex = lastLink.to;
-					lastLink.to.intersection = intersectionTo;
-					intersectionsCopy.put(intersectionTo.id,  intersectionTo);
-				}
-				// create a road
-				Intersection intersectionFrom = intersectionsCopy.get(road.from.id);
-				Intersection intersectionTo = intersectionsCopy.get(road.to.id);
-				Road roadCopy = new Road(road, intersectionFrom, intersectionTo, linksCopy);
-				intersectionFrom.roadsMapFrom.put(intersectionTo,  roadCopy);
-				intersectionTo.roadsMapTo.put(intersectionFrom, roadCopy);
-			}
-		}
-
-		// now create road list
-		List<Road> roadsCopy = new ArrayList<>();
-		for (Intersection inter : intersectionsCopy.values()) {
-			for (Road road : inter.getRoadsFrom()) {
-				roadsCopy.add(road);
-			}
-		}
-
-		CityMap cityMap = new CityMap();
-		cityMap.intersections = intersectionsCopy;
-		cityMap.roads = roadsCopy;
-		cityMap.immutablePathTable = immutablePathTable;
-		cityMap.projector = projector;
-		cityMap.kdTree = kdTree;
-		
-		cityMap.intersectionsByPathTableIndex = new HashMap<Integer, Intersection>();
-		for (Intersection intersection : cityMap.intersections.values()) {
-			cityMap.intersectionsByPathTableIndex.put(intersection.pathTableIndex, intersection);
-		}
-		
-		return cityMap;
-	}
-	
 	/**
 	 * Compute the time zone ID of the map based on an arbitrary location of the map.
 	 * It is assumed that the entire map falls into a single time zone. In other words,
@@ -0,0 +1,154 @@
+package COMSETsystem;
+
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import DataParsing.GeoProjector;
+
+/**
+ * The CityMapView is the read-only view of a CityMap that agents get (see BaseAgent). It offers
+ * the queries of the map, i.e., the intersections and roads and the shortest travel times and
+ * paths between them, but none of the methods that change the map, such as the choice of the
+ * routing backend, and the collections it returns cannot be modified.
+ *
+ * The view shares the intersections, roads and routing data of the simulator's map instead of
+ * copying them. The intersections and roads themselves cannot be changed either: their fields
+ * are final or private, their coordinates are returned as copies, and their collections of
+ * roads are read-only, as are the links and vertices they refer to. An agent therefore gets the
+ * same Intersection and LocationOnRoad objects as the simulator uses.
+ */
+public final class CityMapView {
+
+	// The viewed map.
+	private final CityMap map;
+
+	// A read-only view of the intersections of the map.
+	private final Map<Long, Intersection> intersections;
+
+	// A read-only view of the roads of the map.
+	private final List<Road> roads;
+
+	/**
+	 * Create a view of a map.
+	 *
+	 * @param map the map
+	 */
+	public CityMapView(CityMap map) {
+		this.map = map;
+		this.intersections = Collections.unmodifiableMap(map.intersections());
+		this.roads = Collections.unmodifiableList(map.roads());
+	}
+
+	/**
+	 * @return a read-only map from all the intersection ids to the corresponding intersections
+	 */
+	public Map<Long, Intersection> intersections() {
+		return intersections;
+	}
+
+	/**
+	 * @return a read-only list of the roads of the map
+	 */
+	public List<Road> roads() {
+		return roads;
+	}
+
+	/**
+	 * Gets the time it takes to move from one intersection to another. See CityMap.travelTimeBetween.
+	 *
+	 * @param source The intersection to depart from
+	 * @param destination The intersection to arrive at
+	 * @return the time in seconds it takes to go from source to destination
+	 */
+	public long travelTimeBetween(Intersection source, Intersection destination) {
+		return map.travelTimeBetween(source, destination);
+	}
+
+	/**
+	 * Gets the time it takes to move from a location on a first road to a location on a second road.
+	 * See CityMap.travelTimeBetween.
+	 *
+	 * @param source The location to depart from
+	 * @param destination The location to arrive at
+	 * @return the time in seconds it takes to go from source to destination
+	 */
+	public long travelTimeBetween(LocationOnRoad source, LocationOnRoad destination) {
+		return map.travelTimeBetween(source, destination);
+	}
+
+	/**
+	 * Get the shortest path between a given source and a given destination. See CityMap.shortestTravelTimePath.
+	 *
+	 * @param source the source intersection
+	 * @param destination the destination intersection
+	 * @return LinkedList<Intersection> an ordered list of intersections forming the path
+	 */
+	public LinkedList<Intersection> shortestTravelTimePath(Intersection source, Intersection destination) {
+		return map.shortestTravelTimePath(source, destination);
+	}
+
+	/**
+	 * Create a cursor to follow shortest travel time routes one intersection at a time. See RouteCursor.
+	 *
+	 * @return a new cursor without a route
+	 */
+	public RouteCursor routeCursor() {
+		return map.routeCursor();
+	}
+
+	/**
+	 * @param pathTableIndex the path table index of an intersection
+	 * @return the intersection
+	 */
+	public Intersection intersectionByPathTableIndex(int pathTableIndex) {
+		return map.intersectionByPathTableIndex(pathTableIndex);
+	}
+
+	/**
+	 * @return the road network in compressed sparse row form, see RoadGraph
+	 */
+	public RoadGraph graph() {
+		return map.graph();
+	}
+
+	/**
+	 * @return the projector converting between lat,lon coordinates and xy coordinates
+	 */
+	public GeoProjector projector() {
+		return map.projector();
+	}
+
+	/**
+	 * Finds the nearest link of a point. See CityMap.getNearestLink.
+	 *
+	 * @param longitude The longitude of the point
+	 * @param latitude The latitude of the point
+	 * @return The closest link to the given point
+	 */
+	public Link getNearestLink(double longitude, double latitude) {
+		return map.getNearestLink(longitude, latitude);
+	}
+
+	/**
+	 * Matches a batch of points to the closest locations on the map. See CityMap.mapMatch.
+	 *
+	 * @param longitudes the longitudes of the points
+	 * @param latitudes the latitudes of the points
+	 * @param executor the executor that matches the points, or null to match them in this thread
+	 * @return the locations of the points
+	 */
+	public MapMatches mapMatch(double[] longitudes, double[] latitudes, ExecutorService executor) {
+		return map.mapMatch(longitudes, latitudes, executor);
+	}
+
+	/**
+	 * @return the time zone ID of the map, see CityMap.computeZoneId
+	 */
+	public ZoneId computeZoneId() {
+		return map.computeZoneId();
+	}
+}
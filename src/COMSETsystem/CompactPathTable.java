@@ -0,0 +1,230 @@
+package COMSETsystem;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * The CompactPathTable holds the same all-pair travel times and next hops as the PathTable in
+ * 3 instead of 8 bytes per pair, so that a map with about 1.6 times as many intersections fits
+ * in the same heap or memory-mapped budget, and a row of the table spans fewer cache lines.
+ *
+ * Travel times are stored as 16-bit values. Travel times within a city are whole seconds that
+ * stay far below 65535 (about 18 hours); the few that do not, and unreachable destinations, are
+ * stored as the escape value 0xFFFF and the actual travel time is kept in an overflow list (an
+ * escaped pair without an overflow entry is unreachable). The overflow list is a pair of int
+ * arrays sorted by the index of the pair, searched with a binary search, so it costs 8 bytes per
+ * entry and no objects. The encoding is thus lossless, and decoding a pair is a load and a
+ * compare with the escape value.
+ *
+ * The next hop is stored as its rank among the roads leaving the source, i.e., the next hop
+ * is the target of edge graph.firstEdge(source) + rank of the RoadGraph, in a byte. The rank
+ * 0xFF means that there is no next hop, i.e., the destination is the source or cannot be
+ * reached. Intersections with more than 255 outgoing roads are not supported.
+ *
+ * Like the PathTable, entries are indexed by {@code source * size + destination} and the
+ * buffers can live on the heap or in a memory-mapped cache file (see PathTableCache).
+ */
+public class CompactPathTable implements DensePathTable {
+
+	// The stored travel time of a pair whose travel time is in the overflow map or unreachable.
+	final static char ESCAPE = 0xFFFF;
+
+	// The stored rank of a pair without a next hop.
+	final static byte NO_HOP = (byte) 0xFF;
+
+	// The graph whose roads the ranks refer to.
+	private final RoadGraph graph;
+
+	// The number of intersections, i.e., the number of rows and columns of the table.
+	private final int size;
+
+	// Shortest travel times in seconds or ESCAPE, one row per source.
+	private final CharBuffer travelTimes;
+
+	// Rank of the road to the next hop among the roads leaving the source or NO_HOP, one row per source.
+	private final ByteBuffer hopRanks;
+
+	// The indices of the escaped pairs that are reachable, sorted once the table is finished,
+	// and their travel times. Entries are appended while the table is filled, see finish().
+	private int[] overflowIndices;
+	private int[] overflowTravelTimes;
+	private int overflowCount;
+
+	/**
+	 * Create a table for a graph. Every destination is initially unreachable.
+	 *
+	 * @param graph the graph of the map
+	 */
+	CompactPathTable(RoadGraph graph) {
+		this(graph, new char[checkSize(graph)], new byte[graph.size() * graph.size()]);
+	}
+
+	private CompactPathTable(RoadGraph graph, char[] travelTimeArray, byte[] hopRankArray) {
+		this(graph, CharBuffer.wrap(travelTimeArray), ByteBuffer.wrap(hopRankArray), new int[0], new int[0]);
+		Arrays.fill(travelTimeArray, ESCAPE);
+		Arrays.fill(hopRankArray, NO_HOP);
+	}
+
+	/**
+	 * Create a table on top of existing buffers, e.g., buffers mapped from a cache file.
+	 *
+	 * @param graph the graph of the map
+	 * @param travelTimes the encoded travel times, size * size entries, one row per source
+	 * @param hopRanks the ranks of the next hops, size * size entries, one row per source
+	 * @param overflowIndices the indices of the escaped pairs that are reachable, in ascending order
+	 * @param overflowTravelTimes the travel times of these pairs
+	 */
+	CompactPathTable(RoadGraph graph, CharBuffer travelTimes, ByteBuffer hopRanks, int[] overflowIndices, int[] overflowTravelTimes) {
+		checkSize(graph);
+		this.graph = graph;
+		this.size = graph.size();
+		if (travelTimes.limit() != size * size || hopRanks.limit() != size * size) {
+			throw new IllegalArgumentException("The buffers do not match a path table of size " + size);
+		}
+		this.travelTimes = travelTimes;
+		this.hopRanks = hopRanks;
+		if (overflowIndices.length != overflowTravelTimes.length) {
+			throw new IllegalArgumentException("The overflow indices do not match the overflow travel times");
+		}
+		this.overflowIndices = overflowIndices;
+		this.overflowTravelTimes = overflowTravelTimes;
+		this.overflowCount = overflowIndices.length;
+	}
+
+	/**
+	 * Check that a graph can be covered by a compact table.
+	 *
+	 * @return the number of entries of the table
+	 */
+	private static int checkSize(RoadGraph graph) {
+		int size = graph.size();
+		if ((long) size * size > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("A map with " + size + " intersections is too large for a path table.");
+		}
+		for (int node = 0; node < size; node++) {
+			if (graph.degree(node) > (NO_HOP & 0xFF)) {
+				throw new IllegalArgumentException("Intersection " + graph.intersection(node).id + " has too many roads for a compact path table.");
+			}
+		}
+		return size * size;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public long travelTime(int source, int destination) {
+		int index = source * size + destination;
+		char travelTime = travelTimes.get(index);
+		if (travelTime != ESCAPE) {
+			return travelTime;
+		}
+		int entry = Arrays.binarySearch(overflowIndices, 0, overflowCount, index);
+		return entry < 0 ? PathTable.UNREACHABLE : overflowTravelTimes[entry];
+	}
+
+	@Override
+	public int nextHop(int source, int destination) {
+		int rank = hopRanks.get(source * size + destination) & 0xFF;
+		if (rank == (NO_HOP & 0xFF)) {
+			return source == destination ? destination : -1;
+		}
+		return graph.target(graph.firstEdge(source) + rank);
+	}
+
+	/**
+	 * Get the shortest path between two intersections by following the next hops from the
+	 * source to the destination.
+	 */
+	@Override
+	public int[] path(int source, int destination) {
+		return NextHopTable.path(this, source, destination, size);
+	}
+
+	@Override
+	public void set(int source, int destination, long travelTime, int nextHop) {
+		if (travelTime >= PathTable.UNREACHABLE) {
+			throw new IllegalArgumentException("Travel time " + travelTime + " does not fit in the path table.");
+		}
+		int index = source * size + destination;
+		if (travelTime < ESCAPE) {
+			travelTimes.put(index, (char) travelTime);
+		} else {
+			travelTimes.put(index, ESCAPE);
+			addOverflow(index, (int) travelTime);
+		}
+		byte rank = NO_HOP;
+		if (nextHop >= 0 && source != destination) {
+			int edge = graph.edge(source, nextHop);
+			if (edge < 0) {
+				throw new IllegalArgumentException("There is no road from " + source + " to its next hop " + nextHop);
+			}
+			rank = (byte) (edge - graph.firstEdge(source));
+		}
+		hopRanks.put(index, rank);
+	}
+
+	/**
+	 * Append an entry to the overflow list. Entries are rare, so threads filling the table take
+	 * turns.
+	 */
+	private synchronized void addOverflow(int index, int travelTime) {
+		if (overflowCount == overflowIndices.length) {
+			int capacity = Math.max(16, 2 * overflowCount);
+			overflowIndices = Arrays.copyOf(overflowIndices, capacity);
+			overflowTravelTimes = Arrays.copyOf(overflowTravelTimes, capacity);
+		}
+		overflowIndices[overflowCount] = index;
+		overflowTravelTimes[overflowCount] = travelTime;
+		overflowCount++;
+	}
+
+	/**
+	 * Sort the overflow list by index after the table has been filled.
+	 */
+	@Override
+	public synchronized void finish() {
+		long[] entries = new long[overflowCount];
+		for (int i = 0; i < overflowCount; i++) {
+			entries[i] = (long) overflowIndices[i] << 32 | overflowTravelTimes[i];
+		}
+		Arrays.sort(entries);
+		overflowIndices = new int[overflowCount];
+		overflowTravelTimes = new int[overflowCount];
+		for (int i = 0; i < overflowCount; i++) {
+			overflowIndices[i] = (int) (entries[i] >>> 32);
+			overflowTravelTimes[i] = (int) entries[i];
+		}
+	}
+
+	/**
+	 * @return a read-only view of the encoded travel times, one row per source
+	 */
+	CharBuffer travelTimes() {
+		return travelTimes.asReadOnlyBuffer();
+	}
+
+	/**
+	 * @return a read-only view of the ranks of the next hops, one row per source
+	 */
+	ByteBuffer hopRanks() {
+		return hopRanks.asReadOnlyBuffer();
+	}
+
+	/**
+	 * @return the indices of the escaped pairs that are reachable, in ascending order
+	 */
+	int[] overflowIndices() {
+		return Arrays.copyOf(overflowIndices, overflowCount);
+	}
+
+	/**
+	 * @return the travel times of the escaped pairs that are reachable, in the order of overflowIndices
+	 */
+	int[] overflowTravelTimes() {
+		return Arrays.copyOf(overflowTravelTimes, overflowCount);
+	}
+}
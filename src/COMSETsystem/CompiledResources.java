@@ -0,0 +1,324 @@
+package COMSETsystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+import DataParsing.CSVNewYorkParser;
+import DataParsing.MapWithData;
+import DataParsing.Resource;
+
+/**
+ * The CompiledResources are the resources of a dataset file, map-matched once and kept in a
+ * binary file next to the path table of the map (see PathTableCache), so that later runs on the
+ * same map and dataset neither parse nor map-match the dataset again.
+ *
+ * The file has a 64-byte header followed by one column per field of the resources, each in the
+ * order of the dataset file and in little-endian byte order regardless of the machine, so that
+ * the file can be copied between machines: the available times as longs, the pickup
+ * roads and offsets, the dropoff roads and offsets, and the trip times, as ints. A road is stored
+ * as its index in CityMap.roads, which is the same for every map created from the same files,
+ * unlike the road id; an offset is the travel time of the location from the start intersection
+ * of its road. The header holds the magic number, the version, the number of resources, the
+ * number of roads, the fingerprint of the map, and the length and modification time of the
+ * dataset file; a file whose header does not match the map or the dataset is compiled again.
+ * The name of the file holds the name of the dataset file, a hash of its canonical path, and
+ * the fingerprint of the map, so that datasets of the same name in different directories, or
+ * on different maps, are kept in different files.
+ *
+ * Loading maps the file read-only with FileChannel.map and creates the resource events straight
+ * from the columns, with the same ids and in the same order as when the dataset file is parsed
+ * and map-matched.
+ */
+public class CompiledResources {
+
+	// Identifies a compiled resources file.
+	private final static int MAGIC = 0x434d5253;
+
+	// The version of the file layout.
+	private final static int VERSION = 2;
+
+	// The size of the file header in bytes.
+	private final static int HEADER_SIZE = 64;
+
+	// The size of the columns of one resource in bytes.
+	private final static int RECORD_SIZE = 8 + 5 * 4;
+
+	// The byte order of the file.
+	private final static ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	// The number of resources that are map-matched at once when compiling.
+	private final static int COMPILE_BATCH_SIZE = 1 << 16;
+
+	// The roads of the map, by index.
+	private final Road[] roads;
+
+	// The columns.
+	private final LongBuffer availableTimes;
+	private final IntBuffer pickupRoads;
+	private final IntBuffer pickupOffsets;
+	private final IntBuffer dropoffRoads;
+	private final IntBuffer dropoffOffsets;
+	private final IntBuffer tripTimes;
+
+	// The number of resources.
+	private final int count;
+
+	private CompiledResources(Road[] roads, ByteBuffer columns, int count) {
+		this.roads = roads;
+		this.count = count;
+		this.availableTimes = column(columns, 0, 8 * count).asLongBuffer();
+		int position = 8 * count;
+		this.pickupRoads = column(columns, position, 4 * count).asIntBuffer();
+		this.pickupOffsets = column(columns, position += 4 * count, 4 * count).asIntBuffer();
+		this.dropoffRoads = column(columns, position += 4 * count, 4 * count).asIntBuffer();
+		this.dropoffOffsets = column(columns, position += 4 * count, 4 * count).asIntBuffer();
+		this.tripTimes = column(columns, position += 4 * count, 4 * count).asIntBuffer();
+	}
+
+	/**
+	 * Load the compiled resources of a dataset file from the cache, or compile them into the
+	 * cache first if they are not there or were compiled from another map or dataset file.
+	 *
+	 * @param cache the cache of the map
+	 * @param mapWD the map matching of the resources
+	 * @param resourceFile the dataset file
+	 * @param map the map
+	 * @return the compiled resources
+	 * @throws IOException if the dataset file cannot be read or the compiled file cannot be written
+	 */
+	public static CompiledResources loadOrCompile(PathTableCache cache, MapWithData mapWD, String resourceFile, CityMap map) throws IOException {
+		File dataset = new File(resourceFile);
+		File file = cache.file("resources-" + dataset.getName().replaceAll("[^A-Za-z0-9._-]", "_") + "-" + pathHash(dataset));
+		Road[] roads = map.roads().toArray(new Road[0]);
+		CompiledResources resources = load(file, cache, dataset, roads);
+		if (resources == null) {
+			System.out.println("Compiling resources to " + file + "...");
+			compile(file, cache, dataset, mapWD, map);
+			resources = load(file, cache, dataset, roads);
+			if (resources == null) {
+				throw new IOException("Could not load the compiled resources " + file);
+			}
+		} else {
+			System.out.println("Loaded compiled resources from " + file);
+		}
+		return resources;
+	}
+
+	/**
+	 * @return a hash of the canonical path of the dataset file, as 16 hex digits
+	 */
+	private static String pathHash(File dataset) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		byte[] hash = digest.digest(dataset.getCanonicalPath().getBytes(StandardCharsets.UTF_8));
+		StringBuilder hex = new StringBuilder();
+		for (int i = 0; i < 8; i++) {
+			hex.append(String.format("%02x", hash[i]));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * @return the compiled resources of the file, or null if the file does not exist or does not
+	 * belong to the map and the dataset file
+	 */
+	private static CompiledResources load(File file, PathTableCache cache, File dataset, Road[] roads) throws IOException {
+		if (!file.exists()) {
+			return null;
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			if (channel.size() < HEADER_SIZE) {
+				return null;
+			}
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(BYTE_ORDER);
+			byte[] fingerprint = cache.fingerprint();
+			byte[] storedFingerprint = new byte[fingerprint.length];
+			header.position(16);
+			header.get(storedFingerprint);
+			int count = header.getInt(8);
+			if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(12) != roads.length
+					|| !Arrays.equals(storedFingerprint, fingerprint)
+					|| header.getLong(48) != dataset.length() || header.getLong(56) != dataset.lastModified()
+					|| channel.size() != HEADER_SIZE + (long) RECORD_SIZE * count) {
+				return null;
+			}
+			// The mapping stays valid after the channel is closed.
+			ByteBuffer columns = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, (long) RECORD_SIZE * count);
+			return new CompiledResources(roads, columns, count);
+		}
+	}
+
+	/**
+	 * Parse and map-match the resources of a dataset file and write them to a compiled file. The
+	 * dataset file is read twice, once to count the resources and once to write them, so that the
+	 * resources are never all on the heap.
+	 */
+	private static void compile(File file, PathTableCache cache, File dataset, MapWithData mapWD, CityMap map) throws IOException {
+		long length = dataset.length();
+		long lastModified = dataset.lastModified();
+		CSVNewYorkParser parser = mapWD.parser();
+		int count = 0;
+		try (CSVNewYorkParser.ResourceStream stream = parser.stream()) {
+			while (stream.hasNext()) {
+				stream.next();
+				count++;
+			}
+		}
+		if ((long) RECORD_SIZE * count > Integer.MAX_VALUE) {
+			throw new IOException(count + " resources are too many to be memory-mapped.");
+		}
+
+		File directory = file.getParentFile();
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Could not create the cache directory " + directory);
+		}
+		File temporary = File.createTempFile(file.getName(), ".tmp", directory);
+		try {
+			try (RandomAccessFile raf = new RandomAccessFile(temporary, "rw"); FileChannel channel = raf.getChannel()) {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(BYTE_ORDER);
+				header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(map.roads().size()).put(cache.fingerprint())
+						.putLong(length).putLong(lastModified);
+				header.clear();
+				while (header.hasRemaining()) {
+					channel.write(header);
+				}
+				ByteBuffer columns = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE, (long) RECORD_SIZE * count);
+				LongBuffer availableTimes = column(columns, 0, 8 * count).asLongBuffer();
+				int position = 8 * count;
+				IntBuffer pickupRoads = column(columns, position, 4 * count).asIntBuffer();
+				IntBuffer pickupOffsets = column(columns, position += 4 * count, 4 * count).asIntBuffer();
+				IntBuffer dropoffRoads = column(columns, position += 4 * count, 4 * count).asIntBuffer();
+				IntBuffer dropoffOffsets = column(columns, position += 4 * count, 4 * count).asIntBuffer();
+				IntBuffer tripTimes = column(columns, position += 4 * count, 4 * count).asIntBuffer();
+				// map matching in batches, pickups at even and dropoffs at odd indices
+				double[] longitudes = new double[2 * COMPILE_BATCH_SIZE];
+				double[] latitudes = new double[2 * COMPILE_BATCH_SIZE];
+				ExecutorService executor = mapWD.newMapMatchingExecutor();
+				try (CSVNewYorkParser.ResourceStream stream = parser.stream()) {
+					for (int first = 0; first < count; first += COMPILE_BATCH_SIZE) {
+						int batch = Math.min(COMPILE_BATCH_SIZE, count - first);
+						for (int j = 0; j < batch; j++) {
+							Resource resource = stream.next();
+							availableTimes.put(first + j, resource.getTime());
+							longitudes[2 * j] = resource.getPickupLon();
+							latitudes[2 * j] = resource.getPickupLat();
+							longitudes[2 * j + 1] = resource.getDropoffLon();
+							latitudes[2 * j + 1] = resource.getDropoffLat();
+						}
+						MapMatches matches = mapWD.mapMatch(Arrays.copyOf(longitudes, 2 * batch), Arrays.copyOf(latitudes, 2 * batch), executor);
+						for (int j = 0; j < batch; j++) {
+							int i = first + j;
+							pickupRoads.put(i, matches.roads[2 * j]);
+							pickupOffsets.put(i, Math.toIntExact(matches.offsets[2 * j]));
+							dropoffRoads.put(i, matches.roads[2 * j + 1]);
+							dropoffOffsets.put(i, Math.toIntExact(matches.offsets[2 * j + 1]));
+							tripTimes.put(i, Math.toIntExact(map.travelTimeBetween(matches.location(2 * j), matches.location(2 * j + 1))));
+						}
+					}
+				} finally {
+					if (executor != null) {
+						executor.shutdown();
+					}
+				}
+				channel.force(true);
+			}
+			if (dataset.length() != length || dataset.lastModified() != lastModified) {
+				throw new IOException("The dataset file " + dataset + " changed while it was compiled.");
+			}
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			temporary.delete();
+		}
+	}
+
+	/**
+	 * @return a column of the given size at the given position of the columns, in the byte order of the file
+	 */
+	private static ByteBuffer column(ByteBuffer columns, int position, int size) {
+		ByteBuffer column = columns.duplicate();
+		column.position(position).limit(position + size);
+		return column.slice().order(BYTE_ORDER);
+	}
+
+	/**
+	 * @return the number of resources
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @param i the index of a resource in the order of the dataset file
+	 * @return the time at which the resource becomes available
+	 */
+	public long time(int i) {
+		return availableTimes.get(i);
+	}
+
+	/**
+	 * @return the earliest time of a resource, or Long.MAX_VALUE if there are no resources
+	 */
+	public long earliestTime() {
+		long earliestTime = Long.MAX_VALUE;
+		for (int i = 0; i < count; i++) {
+			earliestTime = Math.min(earliestTime, availableTimes.get(i));
+		}
+		return earliestTime;
+	}
+
+	/**
+	 * Create the event of a resource.
+	 *
+	 * @param i the index of the resource in the order of the dataset file
+	 * @param id the id of the event
+	 * @param simulator the simulator
+	 * @return the event of the resource
+	 */
+	ResourceEvent event(int i, long id, Simulator simulator) {
+		LocationOnRoad pickupLoc = new LocationOnRoad(roads[pickupRoads.get(i)], pickupOffsets.get(i));
+		LocationOnRoad dropoffLoc = new LocationOnRoad(roads[dropoffRoads.get(i)], dropoffOffsets.get(i));
+		return new ResourceEvent(id, pickupLoc, dropoffLoc, availableTimes.get(i), tripTimes.get(i), simulator);
+	}
+
+	/**
+	 * Create the events of all resources and add them to the events of the map, as
+	 * MapWithData.createMapWithData does for the dataset file.
+	 *
+	 * @param simulator the simulator
+	 * @param mapWD the map with the events
+	 * @return the latest possible time that a resource is dropped off
+	 */
+	public long createEvents(Simulator simulator, MapWithData mapWD) {
+		long firstId = Event.reserveIds(count);
+		for (int i = 0; i < count; i++) {
+			ResourceEvent ev = event(i, firstId + i, simulator);
+			mapWD.events.add(ev);
+
+			//  track earliestResourceTime and latestResourceTime
+			if (ev.availableTime < mapWD.earliestResourceTime) {
+				mapWD.earliestResourceTime = ev.availableTime;
+			}
+			if (ev.availableTime + simulator.ResourceMaximumLifeTime + ev.tripTime > mapWD.latestResourceTime) {
+				mapWD.latestResourceTime = ev.availableTime + simulator.ResourceMaximumLifeTime + ev.tripTime;
+			}
+		}
+		return mapWD.latestResourceTime;
+	}
+}
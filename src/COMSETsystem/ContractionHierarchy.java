@@ -0,0 +1,696 @@
+package COMSETsystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * The ContractionHierarchy answers shortest travel time queries with a bidirectional search in
+ * a contraction hierarchy (CH) of the map.
+ *
+ * Preprocessing contracts the intersections one by one in order of importance. Contracting an
+ * intersection v removes it from the remaining graph and, for every pair of remaining
+ * neighbors u -&gt; v -&gt; w whose only shortest connection is through v, adds a shortcut u -&gt; w
+ * that remembers v as its middle node. Whether such a witness path exists is decided by a
+ * small, bounded Dijkstra search; when in doubt a shortcut is added, which never makes the
+ * hierarchy wrong. The intersections are ordered by the number of shortcuts their contraction
+ * would add minus the number of roads it would remove (edge difference), plus the number of
+ * neighbors already contracted, with lazy updates.
+ *
+ * A query searches upwards in the hierarchy, forward from the source and backward from the
+ * destination, and takes the best meeting node. Both searches only settle a few hundred
+ * intersections even on large maps. The path is obtained by recursively replacing every
+ * shortcut with its two halves.
+ *
+ * Memory: the hierarchy takes about 24 bytes per road and shortcut (typically two to three
+ * times the number of roads), i.e., it grows linearly with the map. Contraction is the
+ * expensive part, so the hierarchy can be written to and read from a file, see
+ * loadOrBuild. When several shortest paths have the same travel time, the hierarchy may return
+ * a different one than the PathTable.
+ */
+public class ContractionHierarchy implements RoutingBackend {
+
+	// Identifies a contraction hierarchy file.
+	private final static int MAGIC = 0x434d4348;
+
+	// The version of the file layout.
+	private final static int VERSION = 1;
+
+	// The maximum number of nodes settled by a witness search.
+	private final static int WITNESS_SETTLE_LIMIT = 500;
+
+	// The number of nodes.
+	private final int size;
+
+	// The rank of each node in the contraction order; higher ranks were contracted later.
+	private final int[] ranks;
+
+	// Edges u -> w with rank[u] < rank[w], grouped by u: upOffsets[u] .. upOffsets[u+1]-1.
+	private final int[] upOffsets;
+	private final int[] upTargets;
+	private final long[] upWeights;
+
+	// The middle node of each up edge if it is a shortcut, -1 otherwise.
+	private final int[] upMiddles;
+
+	// Edges u -> w with rank[u] > rank[w], grouped by w: downOffsets[w] .. downOffsets[w+1]-1.
+	private final int[] downOffsets;
+	private final int[] downSources;
+	private final long[] downWeights;
+
+	// The middle node of each down edge if it is a shortcut, -1 otherwise.
+	private final int[] downMiddles;
+
+	// The scratch space of each querying thread.
+	private final ThreadLocal<Query> queries;
+
+	private ContractionHierarchy(int[] ranks, int[] upOffsets, int[] upTargets, long[] upWeights, int[] upMiddles,
+			int[] downOffsets, int[] downSources, long[] downWeights, int[] downMiddles) {
+		this.size = ranks.length;
+		this.ranks = ranks;
+		this.upOffsets = upOffsets;
+		this.upTargets = upTargets;
+		this.upWeights = upWeights;
+		this.upMiddles = upMiddles;
+		this.downOffsets = downOffsets;
+		this.downSources = downSources;
+		this.downWeights = downWeights;
+		this.downMiddles = downMiddles;
+		this.queries = ThreadLocal.withInitial(() -> new Query(size));
+	}
+
+	/**
+	 * Contract a graph.
+	 *
+	 * @param graph the graph of the map
+	 * @return the contraction hierarchy of the graph
+	 */
+	public static ContractionHierarchy build(RoadGraph graph) {
+		return new Contraction(graph).run();
+	}
+
+	/**
+	 * Read the hierarchy of a map from a cache if the cache has one, otherwise contract the
+	 * graph and write the hierarchy to the cache for later runs. Failures of the cache are
+	 * reported and otherwise ignored.
+	 *
+	 * @param graph the graph of the map
+	 * @param cache the cache of the map, or null to always contract
+	 * @return the contraction hierarchy of the graph
+	 */
+	public static ContractionHierarchy loadOrBuild(RoadGraph graph, PathTableCache cache) {
+		if (cache != null) {
+			File file = cache.file("ch");
+			if (file.exists()) {
+				try {
+					ContractionHierarchy hierarchy = read(file);
+					if (hierarchy.size == graph.size()) {
+						System.out.println("Loaded contraction hierarchy from " + file);
+						return hierarchy;
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+
+		ContractionHierarchy hierarchy = build(graph);
+
+		if (cache != null) {
+			try {
+				hierarchy.write(cache.file("ch"));
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		return hierarchy;
+	}
+
+	/**
+	 * @return the number of up and down edges, including shortcuts
+	 */
+	public int edgeCount() {
+		return upTargets.length + downSources.length;
+	}
+
+	@Override
+	public long travelTime(int source, int destination) {
+		Query query = queries.get();
+		query.run(source, destination);
+		return query.best == Long.MAX_VALUE ? PathTable.UNREACHABLE : query.best;
+	}
+
+	@Override
+	public int[] path(int source, int destination) {
+		Query query = queries.get();
+		query.run(source, destination);
+		if (query.best == Long.MAX_VALUE) {
+			return null;
+		}
+		return query.unpack(source, destination);
+	}
+
+	/**
+	 * Write the hierarchy to a file. The file is written to a temporary file first and then
+	 * atomically renamed.
+	 *
+	 * @param file the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(File file) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Could not create the directory " + directory);
+		}
+		File temporary = File.createTempFile(file.getName(), ".tmp", directory);
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary), 1 << 16))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(size);
+				out.writeInt(upTargets.length);
+				out.writeInt(downSources.length);
+				for (int i = 0; i < size; i++) {
+					out.writeInt(ranks[i]);
+				}
+				for (int i = 0; i <= size; i++) {
+					out.writeInt(upOffsets[i]);
+					out.writeInt(downOffsets[i]);
+				}
+				for (int e = 0; e < upTargets.length; e++) {
+					out.writeInt(upTargets[e]);
+					out.writeLong(upWeights[e]);
+					out.writeInt(upMiddles[e]);
+				}
+				for (int e = 0; e < downSources.length; e++) {
+					out.writeInt(downSources[e]);
+					out.writeLong(downWeights[e]);
+					out.writeInt(downMiddles[e]);
+				}
+			}
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			temporary.delete();
+		}
+	}
+
+	/**
+	 * Read a hierarchy from a file written by write.
+	 *
+	 * @param file the file
+	 * @return the hierarchy
+	 * @throws IOException if the file cannot be read or is not a contraction hierarchy file
+	 */
+	public static ContractionHierarchy read(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException(file + " is not a contraction hierarchy file of version " + VERSION);
+			}
+			int size = in.readInt();
+			int upCount = in.readInt();
+			int downCount = in.readInt();
+			int[] ranks = new int[size];
+			for (int i = 0; i < size; i++) {
+				ranks[i] = in.readInt();
+			}
+			int[] upOffsets = new int[size + 1];
+			int[] downOffsets = new int[size + 1];
+			for (int i = 0; i <= size; i++) {
+				upOffsets[i] = in.readInt();
+				downOffsets[i] = in.readInt();
+			}
+			int[] upTargets = new int[upCount];
+			long[] upWeights = new long[upCount];
+			int[] upMiddles = new int[upCount];
+			for (int e = 0; e < upCount; e++) {
+				upTargets[e] = in.readInt();
+				upWeights[e] = in.readLong();
+				upMiddles[e] = in.readInt();
+			}
+			int[] downSources = new int[downCount];
+			long[] downWeights = new long[downCount];
+			int[] downMiddles = new int[downCount];
+			for (int e = 0; e < downCount; e++) {
+				downSources[e] = in.readInt();
+				downWeights[e] = in.readLong();
+				downMiddles[e] = in.readInt();
+			}
+			return new ContractionHierarchy(ranks, upOffsets, upTargets, upWeights, upMiddles,
+					downOffsets, downSources, downWeights, downMiddles);
+		}
+	}
+
+	/**
+	 * Find the up edge from a node to a node of higher rank.
+	 */
+	private int upEdge(int from, int to) {
+		for (int e = upOffsets[from]; e < upOffsets[from + 1]; e++) {
+			if (upTargets[e] == to) {
+				return e;
+			}
+		}
+		throw new IllegalStateException("Missing up edge " + from + " -> " + to);
+	}
+
+	/**
+	 * Find the down edge from a node to a node of lower rank.
+	 */
+	private int downEdge(int from, int to) {
+		for (int e = downOffsets[to]; e < downOffsets[to + 1]; e++) {
+			if (downSources[e] == from) {
+				return e;
+			}
+		}
+		throw new IllegalStateException("Missing down edge " + from + " -> " + to);
+	}
+
+	/**
+	 * Append the intersections of an edge of the hierarchy to a path, without its start.
+	 */
+	private void unpackEdge(int from, int to, int middle, IntList path) {
+		if (middle < 0) {
+			path.add(to);
+			return;
+		}
+		// The middle node was contracted before both ends, so from -> middle is a down
+		// edge and middle -> to is an up edge.
+		int first = downEdge(from, middle);
+		unpackEdge(from, middle, downMiddles[first], path);
+		int second = upEdge(middle, to);
+		unpackEdge(middle, to, upMiddles[second], path);
+	}
+
+	/**
+	 * A growable list of ints.
+	 */
+	private static class IntList {
+		int[] values = new int[16];
+		int size = 0;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, 2 * size);
+			}
+			values[size++] = value;
+		}
+	}
+
+	/**
+	 * The scratch space of a bidirectional upward search. Only the entries touched by a search
+	 * are reset before the next one. The result of the last search is kept, so that asking for
+	 * the travel time and then for the path of the same pair searches only once.
+	 */
+	private class Query {
+		final long[] forwardDistances;
+		final long[] backwardDistances;
+
+		// The up edge by which the forward search reached a node, and the node it leaves.
+		final int[] forwardEdges;
+		final int[] forwardPredecessors;
+
+		// The down edge by which the backward search reached a node, and the node it leads to.
+		final int[] backwardEdges;
+		final int[] backwardSuccessors;
+
+		final int[] touched;
+		int touchedCount = 0;
+		final IndexedMinHeap forwardQueue;
+		final IndexedMinHeap backwardQueue;
+		int lastSource = -1;
+		int lastDestination = -1;
+		long best;
+		int meeting;
+
+		Query(int size) {
+			forwardDistances = new long[size];
+			backwardDistances = new long[size];
+			Arrays.fill(forwardDistances, Long.MAX_VALUE);
+			Arrays.fill(backwardDistances, Long.MAX_VALUE);
+			forwardEdges = new int[size];
+			forwardPredecessors = new int[size];
+			backwardEdges = new int[size];
+			backwardSuccessors = new int[size];
+			touched = new int[2 * size];
+			forwardQueue = new IndexedMinHeap(size);
+			backwardQueue = new IndexedMinHeap(size);
+		}
+
+		void run(int source, int destination) {
+			if (source == lastSource && destination == lastDestination) {
+				return;
+			}
+			for (int i = 0; i < touchedCount; i++) {
+				forwardDistances[touched[i]] = Long.MAX_VALUE;
+				backwardDistances[touched[i]] = Long.MAX_VALUE;
+			}
+			touchedCount = 0;
+			forwardQueue.clear();
+			backwardQueue.clear();
+			lastSource = source;
+			lastDestination = destination;
+			best = Long.MAX_VALUE;
+			meeting = -1;
+
+			touched[touchedCount++] = source;
+			touched[touchedCount++] = destination;
+			forwardDistances[source] = 0;
+			forwardEdges[source] = -1;
+			forwardQueue.addOrDecrease(source, 0);
+			backwardDistances[destination] = 0;
+			backwardEdges[destination] = -1;
+			backwardQueue.addOrDecrease(destination, 0);
+
+			boolean forward = true;
+			while (true) {
+				boolean forwardDone = forwardQueue.isEmpty() || forwardQueue.peekKey() >= best;
+				boolean backwardDone = backwardQueue.isEmpty() || backwardQueue.peekKey() >= best;
+				if (forwardDone && backwardDone) {
+					break;
+				}
+				if (forwardDone) {
+					forward = false;
+				} else if (backwardDone) {
+					forward = true;
+				}
+				if (forward) {
+					int node = forwardQueue.poll();
+					long distance = forwardDistances[node];
+					meet(node, distance, backwardDistances[node]);
+					for (int e = upOffsets[node]; e < upOffsets[node + 1]; e++) {
+						int target = upTargets[e];
+						long newDistance = distance + upWeights[e];
+						if (newDistance < forwardDistances[target]) {
+							touch(target);
+							forwardDistances[target] = newDistance;
+							forwardEdges[target] = e;
+							forwardPredecessors[target] = node;
+							forwardQueue.addOrDecrease(target, newDistance);
+						}
+					}
+				} else {
+					int node = backwardQueue.poll();
+					long distance = backwardDistances[node];
+					meet(node, forwardDistances[node], distance);
+					for (int e = downOffsets[node]; e < downOffsets[node + 1]; e++) {
+						int target = downSources[e];
+						long newDistance = distance + downWeights[e];
+						if (newDistance < backwardDistances[target]) {
+							touch(target);
+							backwardDistances[target] = newDistance;
+							backwardEdges[target] = e;
+							backwardSuccessors[target] = node;
+							backwardQueue.addOrDecrease(target, newDistance);
+						}
+					}
+				}
+				forward = !forward;
+			}
+		}
+
+		private void meet(int node, long forwardDistance, long backwardDistance) {
+			if (forwardDistance != Long.MAX_VALUE && backwardDistance != Long.MAX_VALUE) {
+				long distance = forwardDistance + backwardDistance;
+				if (distance < best || (distance == best && node < meeting)) {
+					best = distance;
+					meeting = node;
+				}
+			}
+		}
+
+		private void touch(int node) {
+			if (forwardDistances[node] == Long.MAX_VALUE && backwardDistances[node] == Long.MAX_VALUE) {
+				touched[touchedCount++] = node;
+			}
+		}
+
+		int[] unpack(int source, int destination) {
+			// the hierarchy nodes from the meeting node down to the source
+			IntList up = new IntList();
+			for (int node = meeting; node != source; node = forwardPredecessors[node]) {
+				up.add(node);
+			}
+			IntList path = new IntList();
+			path.add(source);
+			int from = source;
+			for (int i = up.size - 1; i >= 0; i--) {
+				int to = up.values[i];
+				unpackEdge(from, to, upMiddles[forwardEdges[to]], path);
+				from = to;
+			}
+			for (int node = meeting; node != destination; node = backwardSuccessors[node]) {
+				unpackEdge(node, backwardSuccessors[node], downMiddles[backwardEdges[node]], path);
+			}
+			return Arrays.copyOf(path.values, path.size);
+		}
+	}
+
+	/**
+	 * The contraction of a graph into a hierarchy. The remaining graph is kept as per-node
+	 * lists of outgoing and incoming arcs, including shortcuts; arcs of contracted nodes are
+	 * kept as they are the edges of the hierarchy.
+	 */
+	private static class Contraction {
+		final int size;
+		final Arcs[] outArcs;
+		final Arcs[] inArcs;
+		final boolean[] contracted;
+		final int[] contractedNeighbors;
+
+		// witness search scratch space
+		final long[] distances;
+		final int[] touched;
+		int touchedCount = 0;
+		final IndexedMinHeap queue;
+
+		Contraction(RoadGraph graph) {
+			size = graph.size();
+			outArcs = new Arcs[size];
+			inArcs = new Arcs[size];
+			for (int node = 0; node < size; node++) {
+				outArcs[node] = new Arcs();
+				inArcs[node] = new Arcs();
+			}
+			for (int node = 0; node < size; node++) {
+				for (int e = graph.firstEdge(node); e < graph.firstEdge(node + 1); e++) {
+					int target = graph.target(e);
+					if (target != node) {
+						outArcs[node].addOrImprove(target, graph.travelTime(e), -1);
+						inArcs[target].addOrImprove(node, graph.travelTime(e), -1);
+					}
+				}
+			}
+			contracted = new boolean[size];
+			contractedNeighbors = new int[size];
+			distances = new long[size];
+			Arrays.fill(distances, Long.MAX_VALUE);
+			touched = new int[size];
+			queue = new IndexedMinHeap(size);
+		}
+
+		ContractionHierarchy run() {
+			IndexedMinHeap order = new IndexedMinHeap(size);
+			for (int node = 0; node < size; node++) {
+				order.addOrDecrease(node, priority(node));
+			}
+			int[] ranks = new int[size];
+			int rank = 0;
+			while (!order.isEmpty()) {
+				int node = order.poll();
+				// lazy update: the priority may have grown since the node was queued
+				long priority = priority(node);
+				if (!order.isEmpty() && priority > order.peekKey()) {
+					order.addOrDecrease(node, priority);
+					continue;
+				}
+				contract(node, false);
+				contracted[node] = true;
+				ranks[node] = rank++;
+				for (int i = 0; i < outArcs[node].size; i++) {
+					contractedNeighbors[outArcs[node].nodes[i]]++;
+				}
+				for (int i = 0; i < inArcs[node].size; i++) {
+					contractedNeighbors[inArcs[node].nodes[i]]++;
+				}
+			}
+			return hierarchy(ranks);
+		}
+
+		long priority(int node) {
+			int removed = 0;
+			for (int i = 0; i < outArcs[node].size; i++) {
+				if (!contracted[outArcs[node].nodes[i]]) {
+					removed++;
+				}
+			}
+			for (int i = 0; i < inArcs[node].size; i++) {
+				if (!contracted[inArcs[node].nodes[i]]) {
+					removed++;
+				}
+			}
+			return contract(node, true) - removed + contractedNeighbors[node];
+		}
+
+		/**
+		 * Add the shortcuts needed to contract a node, or only count them.
+		 *
+		 * @return the number of shortcuts
+		 */
+		int contract(int node, boolean simulate) {
+			Arcs in = inArcs[node];
+			Arcs out = outArcs[node];
+			long maxOut = 0;
+			for (int j = 0; j < out.size; j++) {
+				if (!contracted[out.nodes[j]]) {
+					maxOut = Math.max(maxOut, out.weights[j]);
+				}
+			}
+			int shortcuts = 0;
+			for (int i = 0; i < in.size; i++) {
+				int from = in.nodes[i];
+				if (contracted[from]) {
+					continue;
+				}
+				long inWeight = in.weights[i];
+				witnessSearch(from, node, inWeight + maxOut);
+				for (int j = 0; j < out.size; j++) {
+					int to = out.nodes[j];
+					if (contracted[to] || to == from) {
+						continue;
+					}
+					long weight = inWeight + out.weights[j];
+					if (distances[to] > weight) {
+						shortcuts++;
+						if (!simulate) {
+							outArcs[from].addOrImprove(to, weight, node);
+							inArcs[to].addOrImprove(from, weight, node);
+						}
+					}
+				}
+			}
+			return shortcuts;
+		}
+
+		/**
+		 * Bounded Dijkstra from a node in the remaining graph without the node being contracted.
+		 */
+		void witnessSearch(int source, int excluded, long limit) {
+			for (int i = 0; i < touchedCount; i++) {
+				distances[touched[i]] = Long.MAX_VALUE;
+			}
+			touchedCount = 0;
+			queue.clear();
+			distances[source] = 0;
+			touched[touchedCount++] = source;
+			queue.addOrDecrease(source, 0);
+			int settled = 0;
+			while (!queue.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+				int node = queue.poll();
+				settled++;
+				long distance = distances[node];
+				if (distance > limit) {
+					break;
+				}
+				Arcs arcs = outArcs[node];
+				for (int i = 0; i < arcs.size; i++) {
+					int target = arcs.nodes[i];
+					if (target == excluded || contracted[target]) {
+						continue;
+					}
+					long newDistance = distance + arcs.weights[i];
+					if (newDistance < distances[target]) {
+						if (distances[target] == Long.MAX_VALUE) {
+							touched[touchedCount++] = target;
+						}
+						distances[target] = newDistance;
+						queue.addOrDecrease(target, newDistance);
+					}
+				}
+			}
+		}
+
+		ContractionHierarchy hierarchy(int[] ranks) {
+			int[] upOffsets = new int[size + 1];
+			int[] downOffsets = new int[size + 1];
+			for (int node = 0; node < size; node++) {
+				Arcs arcs = outArcs[node];
+				for (int i = 0; i < arcs.size; i++) {
+					if (ranks[node] < ranks[arcs.nodes[i]]) {
+						upOffsets[node + 1]++;
+					} else {
+						downOffsets[arcs.nodes[i] + 1]++;
+					}
+				}
+			}
+			for (int node = 0; node < size; node++) {
+				upOffsets[node + 1] += upOffsets[node];
+				downOffsets[node + 1] += downOffsets[node];
+			}
+			int[] upTargets = new int[upOffsets[size]];
+			long[] upWeights = new long[upOffsets[size]];
+			int[] upMiddles = new int[upOffsets[size]];
+			int[] downSources = new int[downOffsets[size]];
+			long[] downWeights = new long[downOffsets[size]];
+			int[] downMiddles = new int[downOffsets[size]];
+			int[] upNext = Arrays.copyOf(upOffsets, size);
+			int[] downNext = Arrays.copyOf(downOffsets, size);
+			for (int node = 0; node < size; node++) {
+				Arcs arcs = outArcs[node];
+				for (int i = 0; i < arcs.size; i++) {
+					int target = arcs.nodes[i];
+					if (ranks[node] < ranks[target]) {
+						int e = upNext[node]++;
+						upTargets[e] = target;
+						upWeights[e] = arcs.weights[i];
+						upMiddles[e] = arcs.middles[i];
+					} else {
+						int e = downNext[target]++;
+						downSources[e] = node;
+						downWeights[e] = arcs.weights[i];
+						downMiddles[e] = arcs.middles[i];
+					}
+				}
+			}
+			return new ContractionHierarchy(ranks, upOffsets, upTargets, upWeights, upMiddles,
+					downOffsets, downSources, downWeights, downMiddles);
+		}
+	}
+
+	/**
+	 * The arcs from or to a node during contraction, at most one per neighbor.
+	 */
+	private static class Arcs {
+		int[] nodes = new int[4];
+		long[] weights = new long[4];
+		int[] middles = new int[4];
+		int size = 0;
+
+		void addOrImprove(int node, long weight, int middle) {
+			for (int i = 0; i < size; i++) {
+				if (nodes[i] == node) {
+					if (weight < weights[i]) {
+						weights[i] = weight;
+						middles[i] = middle;
+					}
+					return;
+				}
+			}
+			if (size == nodes.length) {
+				nodes = Arrays.copyOf(nodes, 2 * size);
+				weights = Arrays.copyOf(weights, 2 * size);
+				middles = Arrays.copyOf(middles, 2 * size);
+			}
+			nodes[size] = node;
+			weights[size] = weight;
+			middles[size] = middle;
+			size++;
+		}
+	}
+}
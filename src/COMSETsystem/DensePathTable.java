@@ -0,0 +1,32 @@
+package COMSETsystem;
+
+/**
+ * A DensePathTable stores the travel time and the next hop of every pair of intersections,
+ * indexed by {@code source * size() + destination}. It is filled by CityMap.calcTravelTimes,
+ * one source at a time, and comes in two encodings: the PathTable with 8 bytes per pair
+ * and the CompactPathTable with 3 bytes per pair.
+ */
+interface DensePathTable extends NextHopTable {
+
+	/**
+	 * @return the number of intersections covered by the table
+	 */
+	int size();
+
+	/**
+	 * Set an entry of the table. Entries of different sources may be set by different threads.
+	 *
+	 * @param source path table index of the source intersection
+	 * @param destination path table index of the destination intersection
+	 * @param travelTime the shortest travel time from source to destination
+	 * @param nextHop path table index of the next hop from source towards destination, or -1
+	 */
+	void set(int source, int destination, long travelTime, int nextHop);
+
+	/**
+	 * Finish the table after all its entries have been set and before it is queried. Must not be
+	 * called while entries are being set. The default implementation does nothing.
+	 */
+	default void finish() {
+	}
+}
@@ -0,0 +1,201 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+
+/**
+ * The DijkstraEngine computes one-to-all shortest travel times on a map, optionally bounded by
+ * a travel time limit. Nodes are identified by the pathTableIndex of the intersections.
+ *
+ * The engine searches the RoadGraph of the map. All scratch state (tentative travel times,
+ * predecessors, the queue) is allocated once when the engine is created and only the entries
+ * touched by a run are reset before the next run, so a run does not allocate and costs
+ * O(m log n) in the part of the map that it explores.
+ * Ties between nodes with equal travel time are broken by the smaller index, which gives the
+ * same results as the Dijkstra formerly used by CityMap.calcTravelTimes.
+ *
+ * An engine is not thread-safe; every thread needs its own engine.
+ */
+public class DijkstraEngine {
+
+	// The graph searched by the engine.
+	private final RoadGraph graph;
+
+	// Tentative travel time of each node from the source of the current run.
+	private final long[] distances;
+
+	// Predecessor of each node on the shortest path from the source of the current run.
+	private final int[] predecessors;
+
+	// The nodes settled by the current run, in the order in which they were settled.
+	private final int[] settled;
+
+	// The number of nodes settled by the current run.
+	private int settledCount = 0;
+
+	// The nodes whose entry in distances has been set by the current run.
+	private final int[] touched;
+
+	// The number of touched nodes.
+	private int touchedCount = 0;
+
+	// The queue of nodes reached but not settled yet.
+	private final IndexedMinHeap queue;
+
+	// The travel time limit of the current run (exclusive).
+	private long limit;
+
+	/**
+	 * Create an engine for a map.
+	 *
+	 * @param map the map
+	 */
+	public DijkstraEngine(CityMap map) {
+		this(map.graph());
+	}
+
+	/**
+	 * Create an engine for a graph, e.g., for the reverse graph of a map to search towards
+	 * a destination.
+	 *
+	 * @param graph the graph
+	 */
+	public DijkstraEngine(RoadGraph graph) {
+		this.graph = graph;
+		int size = graph.size();
+		distances = new long[size];
+		Arrays.fill(distances, Long.MAX_VALUE);
+		predecessors = new int[size];
+		Arrays.fill(predecessors, -1);
+		settled = new int[size];
+		touched = new int[size];
+		queue = new IndexedMinHeap(size);
+	}
+
+	/**
+	 * Compute the shortest travel times from a source to all nodes.
+	 *
+	 * @param source the pathTableIndex of the source
+	 */
+	public void run(int source) {
+		run(source, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Compute the shortest travel times from a source to all nodes that can be reached in less
+	 * than limit seconds. The search stops at the limit, so its cost depends only on the
+	 * part of the map within the limit.
+	 *
+	 * @param source the pathTableIndex of the source
+	 * @param limit the travel time limit in seconds (exclusive)
+	 */
+	public void run(int source, long limit) {
+		start(source, limit);
+		while (settleNext() >= 0) {
+			// Settle all nodes within the limit.
+		}
+	}
+
+	/**
+	 * Start a run like run(source, limit) without settling any node yet, e.g., to settle the
+	 * nodes one by one with settleNext and stop as soon as the nodes settled so far suffice.
+	 *
+	 * @param source the pathTableIndex of the source
+	 * @param limit the travel time limit in seconds (exclusive)
+	 */
+	public void start(int source, long limit) {
+		reset();
+		this.limit = limit;
+		if (limit <= 0) {
+			return;
+		}
+		touch(source, 0L, source);
+		queue.addOrDecrease(source, 0L);
+	}
+
+	/**
+	 * Settle the next node of the current run, i.e., the reached node with the smallest travel
+	 * time from the source.
+	 *
+	 * @return the pathTableIndex of the settled node, or -1 if all nodes within the limit are settled
+	 */
+	public int settleNext() {
+		if (queue.isEmpty()) {
+			return -1;
+		}
+		int node = queue.poll();
+		settled[settledCount++] = node;
+		long distance = distances[node];
+		int end = graph.firstEdge(node + 1);
+		for (int edge = graph.firstEdge(node); edge < end; edge++) {
+			int target = graph.target(edge);
+			long newDistance = distance + graph.travelTime(edge);
+			if (newDistance < distances[target] && newDistance < limit) {
+				touch(target, newDistance, node);
+				queue.addOrDecrease(target, newDistance);
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * @return the number of nodes settled by the last run
+	 */
+	public int settledCount() {
+		return settledCount;
+	}
+
+	/**
+	 * Get a node settled by the last run. Nodes are settled in increasing order of their
+	 * travel time from the source.
+	 *
+	 * @param i the position of the node in the settle order, 0 <= i < settledCount()
+	 * @return the pathTableIndex of the node
+	 */
+	public int settled(int i) {
+		return settled[i];
+	}
+
+	/**
+	 * @param node the pathTableIndex of a node
+	 * @return the shortest travel time from the source of the last run to the node, or
+	 * Long.MAX_VALUE if the node was not reached; only final once the node is settled
+	 */
+	public long distance(int node) {
+		return distances[node];
+	}
+
+	/**
+	 * @param node the pathTableIndex of a node
+	 * @return the predecessor of the node on the shortest path from the source of the last run;
+	 * the source itself for the source; -1 if the node was not reached
+	 */
+	public int predecessor(int node) {
+		return predecessors[node];
+	}
+
+	/**
+	 * @param node the pathTableIndex of a node
+	 * @return the intersection of the node
+	 */
+	public Intersection intersection(int node) {
+		return graph.intersection(node);
+	}
+
+	private void touch(int node, long distance, int predecessor) {
+		if (distances[node] == Long.MAX_VALUE) {
+			touched[touchedCount++] = node;
+		}
+		distances[node] = distance;
+		predecessors[node] = predecessor;
+	}
+
+	private void reset() {
+		for (int i = 0; i < touchedCount; i++) {
+			distances[touched[i]] = Long.MAX_VALUE;
+			predecessors[touched[i]] = -1;
+		}
+		touchedCount = 0;
+		settledCount = 0;
+		queue.clear();
+	}
+}
@@ -0,0 +1,67 @@
+package COMSETsystem;
+
+/**
+ * The EmptyAgentGrid is an EmptyAgentIndex whose buckets are the cells of a MapGrid.
+ *
+ * An agent leaves the end intersection of the road it is on at the earliest when it reaches it,
+ * so its travel time to a pickup location is at least the travel time from that intersection to
+ * the start intersection of the road of the pickup location, plus the travel time from there to
+ * the pickup location, which gives a lower bound for each cell (see MapGrid).
+ *
+ * A search visits the cells in rings of growing distance around the start intersection of the
+ * road of the pickup location, computes the travel time of the agents in each cell whose lower
+ * bound is not after the earliest arrival found so far, and stops at the first ring whose lower
+ * bound is after it or after the expiration time of the resource. Agents on the road of the
+ * pickup location may reach it without passing the start intersection, so the cell of the end
+ * intersection of that road is visited first. Ties are broken by the smallest agent id, as by
+ * the scan in id order.
+ */
+class EmptyAgentGrid extends EmptyAgentIndex {
+
+	// The cells of the map.
+	private final MapGrid grid;
+
+	// The number of searches so far; marks the agents whose travel time a search computed.
+	private int searches = 0;
+
+	/**
+	 * Create an empty index over the cells of a grid.
+	 *
+	 * @param grid the cells of the map
+	 */
+	EmptyAgentGrid(MapGrid grid) {
+		super(grid.cellCount());
+		this.grid = grid;
+	}
+
+	@Override
+	int bucketOf(Intersection intersection) {
+		return grid.cellOf(intersection);
+	}
+
+	@Override
+	AgentEvent earliestAgent(ResourceEvent resource, long deadline) {
+		searches++;
+		LocationOnRoad pickupLoc = resource.pickupLoc;
+		Best best = new Best();
+		visit(grid.cellOf(pickupLoc.road.to), resource, best);
+
+		// The earliest time at which an agent at the start intersection reaches the pickup location.
+		double offset = resource.time + pickupLoc.travelTimeFromStartIntersection;
+		grid.visitCells(pickupLoc.road.from, offset, () -> Math.min(best.earliest, deadline), cell -> visit(cell, resource, best));
+		return best.earliest <= deadline ? best.agent : null;
+	}
+
+	/**
+	 * Compute the arrival times of the agents of a cell that the current search has not seen yet.
+	 */
+	private void visit(int cell, ResourceEvent resource, Best best) {
+		for (AgentEvent agent : bucket(cell)) {
+			if (agent.indexSearch == searches) {
+				continue;
+			}
+			agent.indexSearch = searches;
+			best.offer(agent, resource.arrivalTime(agent));
+		}
+	}
+}
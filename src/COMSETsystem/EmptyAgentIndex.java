@@ -0,0 +1,151 @@
+package COMSETsystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An EmptyAgentIndex keeps the empty agents in buckets by location to find the empty agent that
+ * reaches a resource the earliest, i.e., the agent a linear scan of all empty agents would
+ * assign to the resource, without computing the travel time of every empty agent.
+ *
+ * An empty agent is kept in the buckets of the end intersections of the roads it may be on until
+ * its next event: the road of its location, or all the roads of the route it committed to (see
+ * BaseAgent.commitRoute). Which bucket an intersection belongs to is up to the subclass, e.g., a
+ * cell of the map (see EmptyAgentGrid) or the intersection itself (see ReverseSearchIndex).
+ *
+ * The index is updated when an agent becomes empty or occupied and when it moves; the updates
+ * are synchronized because agents move in parallel (see Simulator.setAgentEventParallelism).
+ */
+abstract class EmptyAgentIndex {
+
+	// The agents of each bucket, in no particular order.
+	private final List<List<AgentEvent>> buckets;
+
+	/**
+	 * Create an empty index.
+	 *
+	 * @param bucketCount the number of buckets
+	 */
+	EmptyAgentIndex(int bucketCount) {
+		buckets = new ArrayList<>(bucketCount);
+		for (int i = 0; i < bucketCount; i++) {
+			buckets.add(new ArrayList<>());
+		}
+	}
+
+	/**
+	 * @param intersection an intersection of the map
+	 * @return the bucket of the agents on roads that end at the intersection
+	 */
+	abstract int bucketOf(Intersection intersection);
+
+	/**
+	 * Find the empty agent that reaches the pickup location of a resource the earliest, breaking
+	 * ties by the smallest agent id, if it reaches it not after a deadline.
+	 *
+	 * @param resource the resource that becomes available
+	 * @param deadline the latest time at which the agent may reach the pickup location
+	 * @return the agent, or null if no empty agent reaches the pickup location by the deadline
+	 */
+	abstract AgentEvent earliestAgent(ResourceEvent resource, long deadline);
+
+	/**
+	 * @param bucket a bucket
+	 * @return the agents of the bucket; must not be modified
+	 */
+	List<AgentEvent> bucket(int bucket) {
+		return buckets.get(bucket);
+	}
+
+	/**
+	 * Add an empty agent to the index.
+	 *
+	 * @param agent the agent
+	 */
+	synchronized void add(AgentEvent agent) {
+		if (agent.indexBuckets != null) {
+			return;
+		}
+		// The road of the location of the agent, and the roads of its committed route if any.
+		int steps = agent.committedSteps();
+		int[] agentBuckets = new int[steps + 1];
+		for (int step = -1; step < steps; step++) {
+			agentBuckets[step + 1] = bucketOf(agent.roadAt(step).to);
+		}
+		// Keep each bucket once.
+		Arrays.sort(agentBuckets);
+		int count = 0;
+		for (int i = 0; i < agentBuckets.length; i++) {
+			if (i == 0 || agentBuckets[i] != agentBuckets[i - 1]) {
+				agentBuckets[count++] = agentBuckets[i];
+			}
+		}
+		agent.indexBuckets = count == agentBuckets.length ? agentBuckets : Arrays.copyOf(agentBuckets, count);
+		for (int bucket : agent.indexBuckets) {
+			buckets.get(bucket).add(agent);
+		}
+	}
+
+	/**
+	 * Remove an agent from the index if it is in the index.
+	 *
+	 * @param agent the agent
+	 */
+	synchronized void remove(AgentEvent agent) {
+		if (agent.indexBuckets == null) {
+			return;
+		}
+		for (int bucket : agent.indexBuckets) {
+			List<AgentEvent> agents = buckets.get(bucket);
+			int position = agents.indexOf(agent);
+			// The order within a bucket does not matter, so the last agent takes the place of the removed one.
+			agents.set(position, agents.get(agents.size() - 1));
+			agents.remove(agents.size() - 1);
+		}
+		agent.indexBuckets = null;
+	}
+
+	/**
+	 * Move an agent to the buckets of its current location or route if it is in the index.
+	 *
+	 * @param agent the agent
+	 */
+	synchronized void update(AgentEvent agent) {
+		if (agent.indexBuckets != null) {
+			remove(agent);
+			add(agent);
+		}
+	}
+
+	/**
+	 * Remove all agents from the index.
+	 */
+	synchronized void clear() {
+		for (List<AgentEvent> agents : buckets) {
+			for (AgentEvent agent : agents) {
+				agent.indexBuckets = null;
+			}
+			agents.clear();
+		}
+	}
+
+	/**
+	 * The best agent found by a search so far.
+	 */
+	static class Best {
+		AgentEvent agent;
+		long earliest = Long.MAX_VALUE;
+
+		/**
+		 * Make an agent the best agent if it arrives earlier than the best agent so far, or at the
+		 * same time and has a smaller id.
+		 */
+		void offer(AgentEvent candidate, long arrivalTime) {
+			if (arrivalTime < earliest || (agent != null && arrivalTime == earliest && candidate.id < agent.id)) {
+				agent = candidate;
+				earliest = arrivalTime;
+			}
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package COMSETsystem;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  *
  * @author TijanaKlimovic
@@ -12,7 +14,9 @@ package COMSETsystem;
  */
 public abstract class Event implements Comparable<Event> {
 
-	private static int maxId = 0;
+	// The id of the next event. Events are created by the threads that trigger events in
+	// parallel, so ids are taken atomically.
+	private static final AtomicLong nextId = new AtomicLong(0);
 
 	// The time at which the event is to be triggered
 	long time;
@@ -25,6 +29,12 @@ public abstract class Event implements Comparable<Event> {
 	 */
 	long id;  
 
+	// The position of this event in the EventQueue holding it, or -1 if it is not queued.
+	int queueIndex = -1;
+
+	// The bucket of the TimingWheelEventQueue holding this event, or a negative value.
+	int queueBucket = -1;
+
 	/**
 	 * Constructor for class Event
 	 *
@@ -33,11 +43,35 @@ public abstract class Event implements Comparable<Event> {
 	 * @param simulator a reference to simulator
 	 */
 	Event(long time, Simulator simulator) {
-		this.id = maxId++;
+		this.id = nextId.getAndIncrement();
+		this.time = time;
+		this.simulator = simulator;
+	}
+
+	/**
+	 * Constructor for class Event with an id reserved before (see reserveIds).
+	 *
+	 * @param id the unique id among all events
+	 * @param time core to this class, indicates when this event will trigger.
+	 * @param simulator a reference to simulator
+	 */
+	Event(long id, long time, Simulator simulator) {
+		this.id = id;
 		this.time = time;
 		this.simulator = simulator;
 	}
 
+	/**
+	 * Reserve ids for events that are created later, so that they are ordered as if they were
+	 * created now.
+	 *
+	 * @param count the number of ids to reserve
+	 * @return the first of the reserved ids
+	 */
+	static long reserveIds(int count) {
+		return nextId.getAndAdd(count);
+	}
+
 	/**
 	 * Function called when the Event needs to be executed.
 	 *
@@ -46,7 +80,7 @@ public abstract class Event implements Comparable<Event> {
 	abstract Event trigger() throws Exception;
 
 	/**
-	 * To be used by the PriorityQueue to order the Events
+	 * To be used by the EventQueue to order the Events
 	 *
 	 * @param o the event being compared to this one
 	 * @return -1, 0, or 1 according to whether the value of expression is
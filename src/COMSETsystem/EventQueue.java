@@ -0,0 +1,66 @@
+package COMSETsystem;
+
+/**
+ * The EventQueue holds the pending events of a simulation ordered by their trigger time, ties
+ * broken by event id (see Event.compareTo). Besides taking the first event, an event can be
+ * removed from the middle of the queue, e.g., an empty agent that gets assigned to a resource,
+ * or be rescheduled to another time, in O(log n) instead of the linear scan of
+ * java.util.PriorityQueue.
+ *
+ * An event can be in at most one queue at a time; the queue keeps track of where the event is
+ * stored in Event.queueIndex.
+ */
+public interface EventQueue {
+
+	/**
+	 * Add an event that is not in the queue.
+	 *
+	 * @param event the event to add
+	 */
+	void add(Event event);
+
+	/**
+	 * @return the first event, i.e., the event with the earliest time, or null if the queue is empty
+	 */
+	Event peek();
+
+	/**
+	 * Remove the first event.
+	 *
+	 * @return the removed event, or null if the queue is empty
+	 */
+	Event poll();
+
+	/**
+	 * Remove an event from the queue.
+	 *
+	 * @param event the event to remove
+	 * @return true if the event was in the queue
+	 */
+	boolean remove(Event event);
+
+	/**
+	 * Change the time of an event that is in the queue, or set the time of an event and add it to
+	 * the queue if it is not.
+	 *
+	 * @param event the event
+	 * @param time the new trigger time of the event
+	 */
+	void reschedule(Event event, long time);
+
+	/**
+	 * @param event an event
+	 * @return true if the event is in the queue
+	 */
+	boolean contains(Event event);
+
+	/**
+	 * @return the number of events in the queue
+	 */
+	int size();
+
+	/**
+	 * @return true if the queue has no events
+	 */
+	boolean isEmpty();
+}
@@ -0,0 +1,87 @@
+package COMSETsystem;
+
+import java.util.Random;
+
+/**
+ * The EventQueueBenchmark compares the EventQueue implementations on the workload of a
+ * simulation: every taken event is added again a road's travel time (a few seconds to minutes)
+ * later, and now and then a pending event is removed and added again later, like an agent that
+ * gets assigned to a resource. It prints the time per operation of each implementation for
+ * several numbers of pending events, and a checksum of the order in which the events were taken,
+ * which must be the same for all implementations.
+ *
+ * Usage: java COMSETsystem.EventQueueBenchmark [operations]
+ */
+public class EventQueueBenchmark {
+
+	// The numbers of pending events that are benchmarked.
+	private final static int[] SIZES = {1000, 10000, 100000};
+
+	// Every REMOVE_INTERVAL-th operation additionally removes and re-adds a pending event.
+	private final static int REMOVE_INTERVAL = 4;
+
+	public static void main(String[] args) {
+		int operations = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+		for (int size : SIZES) {
+			for (int round = 0; round < 2; round++) {
+				// The first round warms up the JIT.
+				String heap = run(new IndexedEventHeap(), size, operations);
+				String wheel = run(new TimingWheelEventQueue(), size, operations);
+				if (round == 1) {
+					System.out.println(size + " pending events, " + operations + " operations");
+					System.out.println("  heap:  " + heap);
+					System.out.println("  wheel: " + wheel);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Run the workload on a queue.
+	 *
+	 * @return the time per operation and the checksum of the order of the taken events
+	 */
+	private static String run(EventQueue queue, int size, int operations) {
+		Random random = new Random(1);
+		Event[] events = new Event[size];
+		long start = 1464782400L;
+		for (int i = 0; i < size; i++) {
+			events[i] = new BenchmarkEvent(start + random.nextInt(300));
+			queue.add(events[i]);
+		}
+		// Event ids are unique over all runs, so the checksum uses the ids relative to the first event.
+		long firstId = events[0].id;
+		long checksum = 0;
+		long begin = System.nanoTime();
+		for (int i = 0; i < operations; i++) {
+			Event event = queue.poll();
+			checksum = 31 * checksum + (event.id - firstId);
+			event.time += 1 + random.nextInt(300);
+			queue.add(event);
+			if (i % REMOVE_INTERVAL == 0) {
+				Event removed = events[random.nextInt(size)];
+				if (queue.remove(removed)) {
+					removed.time += 1 + random.nextInt(3600);
+					queue.add(removed);
+				}
+			}
+		}
+		long elapsed = System.nanoTime() - begin;
+		return String.format("%.1f ns/operation, checksum %d", (double) elapsed / operations, checksum);
+	}
+
+	/**
+	 * An event that does nothing when triggered.
+	 */
+	private static class BenchmarkEvent extends Event {
+
+		BenchmarkEvent(long time) {
+			super(time, null);
+		}
+
+		@Override
+		Event trigger() {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+
+/**
+ * The HungarianAssignment solves the assignment problem: given a matrix of costs with no more
+ * rows than columns, assign every row to a distinct column so that the total cost is minimal.
+ *
+ * It is the Hungarian algorithm with potentials, which adds the rows one by one and finds an
+ * augmenting path of least reduced cost for each, in O(rows^2 * columns) time. Costs are exact
+ * integers, so there are no rounding errors.
+ */
+class HungarianAssignment {
+
+	/**
+	 * Solve the assignment problem.
+	 *
+	 * @param cost the costs; cost[i][j] is the cost of assigning row i to column j. All rows must
+	 * have the same number of columns, at least the number of rows
+	 * @return the column assigned to each row
+	 */
+	static int[] solve(long[][] cost) {
+		int rows = cost.length;
+		int columns = rows == 0 ? 0 : cost[0].length;
+		if (rows > columns) {
+			throw new IllegalArgumentException("More rows than columns: " + rows + " > " + columns);
+		}
+
+		// Potentials of the rows and columns; index 0 of the columns is a virtual column.
+		long[] rowPotential = new long[rows + 1];
+		long[] columnPotential = new long[columns + 1];
+		// The row assigned to each column, 1-based, 0 if none.
+		int[] rowOf = new int[columns + 1];
+		// The previous column on the augmenting path of each column.
+		int[] way = new int[columns + 1];
+		long[] minReduced = new long[columns + 1];
+		boolean[] used = new boolean[columns + 1];
+
+		for (int row = 1; row <= rows; row++) {
+			rowOf[0] = row;
+			int column0 = 0;
+			Arrays.fill(minReduced, Long.MAX_VALUE);
+			Arrays.fill(used, false);
+			do {
+				used[column0] = true;
+				int row0 = rowOf[column0];
+				long delta = Long.MAX_VALUE;
+				int column1 = 0;
+				long[] costs = cost[row0 - 1];
+				for (int column = 1; column <= columns; column++) {
+					if (!used[column]) {
+						long reduced = costs[column - 1] - rowPotential[row0] - columnPotential[column];
+						if (reduced < minReduced[column]) {
+							minReduced[column] = reduced;
+							way[column] = column0;
+						}
+						if (minReduced[column] < delta) {
+							delta = minReduced[column];
+							column1 = column;
+						}
+					}
+				}
+				for (int column = 0; column <= columns; column++) {
+					if (used[column]) {
+						rowPotential[rowOf[column]] += delta;
+						columnPotential[column] -= delta;
+					} else {
+						minReduced[column] -= delta;
+					}
+				}
+				column0 = column1;
+			} while (rowOf[column0] != 0);
+
+			// Flip the augmenting path.
+			do {
+				int column1 = way[column0];
+				rowOf[column0] = rowOf[column1];
+				column0 = column1;
+			} while (column0 != 0);
+		}
+
+		int[] assignment = new int[rows];
+		for (int column = 1; column <= columns; column++) {
+			if (rowOf[column] != 0) {
+				assignment[rowOf[column] - 1] = column - 1;
+			}
+		}
+		return assignment;
+	}
+}
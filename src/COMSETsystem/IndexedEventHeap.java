@@ -0,0 +1,155 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+
+/**
+ * The IndexedEventHeap is an EventQueue implemented as a binary min-heap of events. Every event
+ * stores its position in the heap in Event.queueIndex, so that an event can be removed or
+ * rescheduled by sifting it from its position in O(log n) without searching for it.
+ *
+ * Events are ordered by Event.compareTo, so the events are taken in exactly the same order as
+ * from a java.util.PriorityQueue.
+ */
+public class IndexedEventHeap implements EventQueue {
+
+	// The events in heap order.
+	private Event[] heap;
+
+	// The number of events in the heap.
+	private int size = 0;
+
+	/**
+	 * Create an empty heap.
+	 */
+	public IndexedEventHeap() {
+		heap = new Event[64];
+	}
+
+	@Override
+	public void add(Event event) {
+		if (event.queueIndex >= 0) {
+			throw new IllegalArgumentException("Event " + event.id + " is in a queue already.");
+		}
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, 2 * heap.length);
+		}
+		heap[size] = event;
+		event.queueIndex = size;
+		size++;
+		siftUp(event.queueIndex);
+	}
+
+	@Override
+	public Event peek() {
+		return size == 0 ? null : heap[0];
+	}
+
+	@Override
+	public Event poll() {
+		if (size == 0) {
+			return null;
+		}
+		Event first = heap[0];
+		removeAt(0);
+		return first;
+	}
+
+	@Override
+	public boolean remove(Event event) {
+		if (!contains(event)) {
+			return false;
+		}
+		removeAt(event.queueIndex);
+		return true;
+	}
+
+	@Override
+	public void reschedule(Event event, long time) {
+		if (!contains(event)) {
+			event.time = time;
+			add(event);
+			return;
+		}
+		long oldTime = event.time;
+		event.time = time;
+		if (time < oldTime) {
+			siftUp(event.queueIndex);
+		} else {
+			siftDown(event.queueIndex);
+		}
+	}
+
+	@Override
+	public boolean contains(Event event) {
+		int position = event.queueIndex;
+		return position >= 0 && position < size && heap[position] == event;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Remove the event at a position of the heap by moving the last event into its place.
+	 */
+	private void removeAt(int position) {
+		Event removed = heap[position];
+		removed.queueIndex = -1;
+		size--;
+		Event last = heap[size];
+		heap[size] = null;
+		if (position < size) {
+			heap[position] = last;
+			last.queueIndex = position;
+			siftDown(position);
+			if (heap[position] == last) {
+				siftUp(position);
+			}
+		}
+	}
+
+	private void siftUp(int position) {
+		Event event = heap[position];
+		while (position > 0) {
+			int parentPosition = (position - 1) >>> 1;
+			Event parent = heap[parentPosition];
+			if (event.compareTo(parent) >= 0) {
+				break;
+			}
+			heap[position] = parent;
+			parent.queueIndex = position;
+			position = parentPosition;
+		}
+		heap[position] = event;
+		event.queueIndex = position;
+	}
+
+	private void siftDown(int position) {
+		Event event = heap[position];
+		while (true) {
+			int childPosition = 2 * position + 1;
+			if (childPosition >= size) {
+				break;
+			}
+			Event child = heap[childPosition];
+			if (childPosition + 1 < size && heap[childPosition + 1].compareTo(child) < 0) {
+				childPosition++;
+				child = heap[childPosition];
+			}
+			if (child.compareTo(event) >= 0) {
+				break;
+			}
+			heap[position] = child;
+			child.queueIndex = position;
+			position = childPosition;
+		}
+		heap[position] = event;
+		event.queueIndex = position;
+	}
+}
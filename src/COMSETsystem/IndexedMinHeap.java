@@ -0,0 +1,146 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+
+/**
+ * The IndexedMinHeap is a binary min-heap over the integers 0..capacity-1 with long keys.
+ * Every element knows its position in the heap, so that the key of an element can be
+ * decreased in O(log n) instead of removing and re-adding it. Elements with equal keys
+ * are ordered by the element itself, i.e., the smaller element comes first.
+ *
+ * The heap does not allocate after construction.
+ */
+class IndexedMinHeap {
+
+	// The elements in heap order.
+	private final int[] heap;
+
+	// The key of each element; only valid while the element is in the heap.
+	private final long[] keys;
+
+	// The position of each element in heap, or -1 if the element is not in the heap.
+	private final int[] positions;
+
+	// The number of elements in the heap.
+	private int size = 0;
+
+	/**
+	 * Create an empty heap for the elements 0..capacity-1.
+	 *
+	 * @param capacity the number of possible elements
+	 */
+	IndexedMinHeap(int capacity) {
+		heap = new int[capacity];
+		keys = new long[capacity];
+		positions = new int[capacity];
+		Arrays.fill(positions, -1);
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	boolean contains(int element) {
+		return positions[element] >= 0;
+	}
+
+	/**
+	 * Add an element with the given key, or decrease its key if it is in the heap already.
+	 * The key of an element in the heap is never increased.
+	 *
+	 * @param element the element
+	 * @param key the key
+	 */
+	void addOrDecrease(int element, long key) {
+		int position = positions[element];
+		if (position < 0) {
+			position = size++;
+			heap[position] = element;
+			positions[element] = position;
+			keys[element] = key;
+		} else if (key < keys[element]) {
+			keys[element] = key;
+		} else {
+			return;
+		}
+		siftUp(position);
+	}
+
+	/**
+	 * @return the key of the first element
+	 */
+	long peekKey() {
+		return keys[heap[0]];
+	}
+
+	/**
+	 * Remove the first element, i.e., the element with the smallest key.
+	 *
+	 * @return the removed element
+	 */
+	int poll() {
+		int first = heap[0];
+		positions[first] = -1;
+		size--;
+		if (size > 0) {
+			int last = heap[size];
+			heap[0] = last;
+			positions[last] = 0;
+			siftDown(0);
+		}
+		return first;
+	}
+
+	/**
+	 * Remove all elements.
+	 */
+	void clear() {
+		for (int i = 0; i < size; i++) {
+			positions[heap[i]] = -1;
+		}
+		size = 0;
+	}
+
+	private boolean less(int a, int b) {
+		return keys[a] < keys[b] || (keys[a] == keys[b] && a < b);
+	}
+
+	private void siftUp(int position) {
+		int element = heap[position];
+		while (position > 0) {
+			int parentPosition = (position - 1) >>> 1;
+			int parent = heap[parentPosition];
+			if (!less(element, parent)) {
+				break;
+			}
+			heap[position] = parent;
+			positions[parent] = position;
+			position = parentPosition;
+		}
+		heap[position] = element;
+		positions[element] = position;
+	}
+
+	private void siftDown(int position) {
+		int element = heap[position];
+		while (true) {
+			int childPosition = 2 * position + 1;
+			if (childPosition >= size) {
+				break;
+			}
+			int child = heap[childPosition];
+			if (childPosition + 1 < size && less(heap[childPosition + 1], child)) {
+				childPosition++;
+				child = heap[childPosition];
+			}
+			if (!less(child, element)) {
+				break;
+			}
+			heap[position] = child;
+			positions[child] = position;
+			position = childPosition;
+		}
+		heap[position] = element;
+		positions[element] = position;
+	}
+}
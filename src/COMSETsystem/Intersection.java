@@ -12,49 +12,74 @@ public class Intersection implements Comparable<Intersection> {
 
 	final public double longitude, latitude;
 	
-	// projected 2D coordinates
-	final public Point2D xy; 
+	// projected 2D coordinates, see getXY()
+	private final Point2D xy; 
 	
 	// a unique id
 	final public long id;
 	
-	// the index used to look up the shortest travel time path table (pathTable) in CityMap
-	public int pathTableIndex; 
+	// the index used to look up the shortest travel time path table (pathTable) in CityMap,
+	// set by CityMap; see pathTableIndex()
+	int pathTableIndex; 
 	
-	// the vertex at which the intersection is located
-	public Vertex vertex; 
+	// the vertex at which the intersection is located; not exposed to agents, see MapBuilder
+	final Vertex vertex; 
 
 	// The roads that end at this intersection, i.e., the roads for which this intersection is
-	// the downstream intersection, also called incoming roads.
-	public Map<Intersection, Road> roadsMapTo = new TreeMap<>();
+	// the downstream intersection, also called incoming roads. See Road.connect().
+	final Map<Intersection, Road> roadsMapTo = new TreeMap<>();
 
 	// The roads that start at this intersection, i.e., the roads for which this intersection is
-	// the upstream intersection, also called outgoing roads.
-	public Map<Intersection, Road> roadsMapFrom = new TreeMap<>();
+	// the upstream intersection, also called outgoing roads. See Road.connect().
+	final Map<Intersection, Road> roadsMapFrom = new TreeMap<>();
 
 	/**
 	 * Constructor of Intersection.
 	 * @param vertex the vertex at which the intersection is located
 	 */
-	public Intersection (Vertex vertex) {
+	Intersection (Vertex vertex) {
 		this.longitude = vertex.longitude;
 		this.latitude = vertex.latitude;
-		this.id = vertex.id;
-		this.xy = vertex.xy;
+		this.id = vertex.getId();
+		this.xy = vertex.getXY();
 		this.vertex =vertex;
+		vertex.intersection = this;
+	}
+
+	/**
+	 * @return the projected 2D coordinates of the intersection; a copy, so changing it does not
+	 * move the intersection
+	 */
+	public Point2D getXY() {
+		return new Point2D.Double(xy.getX(), xy.getY());
+	}
+
+	/**
+	 * returns the Euclidean distance from this intersection to a point
+	 * @param x the x-coordinate of the point
+	 * @param y the y-coordinate of the point
+	 * @return distance between this intersection and the point
+	 */
+	public double distance(double x, double y) {
+		return this.xy.distance(x, y);
+	}
+
+	/**
+	 * returns the Euclidean distance from this intersection to the specified intersection
+	 * @param intersection specified intersection
+	 * @return distance between this intersection and specified intersection
+	 */
+	public double distance(Intersection intersection) {
+		return this.xy.distance(intersection.xy);
 	}
 	
 	/**
-	 * Constructing from an existing intersection
-	 * @param anIntersection
+	 * Returns the index of the intersection in the shortest travel time path table of the map,
+	 * i.e., the index of the intersection in the RoadGraph of the map.
+	 * @return the path table index
 	 */
-	public Intersection(Intersection anIntersection) {
-		this.longitude = anIntersection.longitude;
-		this.latitude = anIntersection.latitude;
-		this.id = anIntersection.id;
-		this.xy = new Point2D.Double(anIntersection.xy.getX(), anIntersection.xy.getY());
-		this.pathTableIndex = anIntersection.pathTableIndex;
-		this.vertex = null;
+	public int pathTableIndex() {
+		return pathTableIndex;
 	}
 
 	/**
@@ -109,10 +134,10 @@ public class Intersection implements Comparable<Intersection> {
 	 * this intersection, i.e. there exists a road from this intersection 
 	 * to every intersection in the returned set
 	 * 
-	 * @return a set of intersections that you can go to from this intersection
+	 * @return a read-only set of intersections that you can go to from this intersection
 	 */
 	public Set<Intersection> getAdjacentFrom () {
-		return roadsMapFrom.keySet();
+		return Collections.unmodifiableSet(roadsMapFrom.keySet());
 	}
 
 	/**
@@ -120,11 +145,11 @@ public class Intersection implements Comparable<Intersection> {
 	 * this intersection, i.e. there exists a road from every intersection
 	 * in the returned set to this intersection
 	 * 
-	 * @return a set of intersections from which you can directly go to 
+	 * @return a read-only set of intersections from which you can directly go to 
 	 *          this intersection
 	 */
 	public Set<Intersection> getAdjacentTo () {
-		return roadsMapTo.keySet();
+		return Collections.unmodifiableSet(roadsMapTo.keySet());
 	}
 
 	/**
@@ -0,0 +1,225 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+
+/**
+ * The LandmarkRouter answers shortest travel time queries on demand with A* search guided by
+ * landmark lower bounds (ALT: A*, landmarks and the triangle inequality).
+ *
+ * For a few landmark intersections L the router precomputes the travel times d(L, v) from
+ * and d(v, L) to every intersection v. By the triangle inequality, for every landmark
+ *
+ * <pre>
+ * d(v, t) &gt;= d(L, t) - d(L, v)   and   d(v, t) &gt;= d(v, L) - d(t, L),
+ * </pre>
+ *
+ * and the maximum of these bounds is a consistent A* heuristic. A* with it settles the same
+ * travel times as Dijkstra while exploring only a fraction of the map. Landmarks are chosen
+ * by farthest-point selection, so that they lie on the periphery of the map where the bounds
+ * are tightest.
+ *
+ * Memory: 8 * k * n bytes for k landmarks and n intersections, plus O(n) scratch space per
+ * querying thread, compared to 8 * n^2 bytes for the PathTable. Latency: a query is an A*
+ * search, typically microseconds to a millisecond depending on the distance between the
+ * intersections, compared to a single array access for the PathTable. When several shortest
+ * paths have the same travel time, the router may return a different one than the PathTable.
+ */
+public class LandmarkRouter implements RoutingBackend {
+
+	// The graph that is searched.
+	private final RoadGraph graph;
+
+	// The number of landmarks.
+	private final int landmarkCount;
+
+	// The landmarks as nodes of the graph.
+	private final int[] landmarks;
+
+	// d(L, v) for landmark i and node v at index v * landmarkCount + i; UNREACHABLE if there is no path.
+	private final int[] fromLandmark;
+
+	// d(v, L) for landmark i and node v at index v * landmarkCount + i; UNREACHABLE if there is no path.
+	private final int[] toLandmark;
+
+	// The scratch space of each querying thread.
+	private final ThreadLocal<Search> searches;
+
+	/**
+	 * Create a router and precompute the landmark travel times.
+	 *
+	 * @param graph the graph of the map
+	 * @param landmarkCount the number of landmarks; more landmarks give tighter bounds and thus
+	 * faster queries at the cost of memory
+	 */
+	public LandmarkRouter(RoadGraph graph, int landmarkCount) {
+		this.graph = graph;
+		int size = graph.size();
+		this.landmarkCount = Math.max(1, Math.min(landmarkCount, size));
+		landmarks = new int[this.landmarkCount];
+		fromLandmark = new int[size * this.landmarkCount];
+		toLandmark = new int[size * this.landmarkCount];
+
+		DijkstraEngine forward = new DijkstraEngine(graph);
+		DijkstraEngine backward = new DijkstraEngine(graph.reverse());
+
+		// Farthest-point selection: start with the node farthest from node 0, then repeatedly
+		// take the node farthest (round trip) from all landmarks chosen so far.
+		long[] nearest = new long[size];
+		Arrays.fill(nearest, Long.MAX_VALUE);
+		forward.run(0);
+		int landmark = forward.settled(forward.settledCount() - 1);
+		for (int i = 0; i < this.landmarkCount; i++) {
+			landmarks[i] = landmark;
+			forward.run(landmark);
+			backward.run(landmark);
+			for (int v = 0; v < size; v++) {
+				long from = forward.distance(v);
+				long to = backward.distance(v);
+				fromLandmark[v * this.landmarkCount + i] = from >= PathTable.UNREACHABLE ? PathTable.UNREACHABLE : (int) from;
+				toLandmark[v * this.landmarkCount + i] = to >= PathTable.UNREACHABLE ? PathTable.UNREACHABLE : (int) to;
+				if (from < Long.MAX_VALUE && to < Long.MAX_VALUE) {
+					nearest[v] = Math.min(nearest[v], from + to);
+				}
+			}
+			long farthest = -1;
+			for (int v = 0; v < size; v++) {
+				if (nearest[v] != Long.MAX_VALUE && nearest[v] > farthest) {
+					farthest = nearest[v];
+					landmark = v;
+				}
+			}
+		}
+
+		searches = ThreadLocal.withInitial(() -> new Search(size));
+	}
+
+	/**
+	 * @return the landmarks as path table indices
+	 */
+	public int[] landmarks() {
+		return landmarks.clone();
+	}
+
+	@Override
+	public long travelTime(int source, int destination) {
+		Search search = searches.get();
+		search.run(source, destination);
+		long distance = search.distances[destination];
+		return distance == Long.MAX_VALUE ? PathTable.UNREACHABLE : distance;
+	}
+
+	@Override
+	public int[] path(int source, int destination) {
+		Search search = searches.get();
+		search.run(source, destination);
+		if (search.distances[destination] == Long.MAX_VALUE) {
+			return null;
+		}
+		int length = 1;
+		for (int current = destination; current != source; current = search.predecessors[current]) {
+			length++;
+		}
+		int[] path = new int[length];
+		int current = destination;
+		for (int i = length - 1; i >= 0; i--) {
+			path[i] = current;
+			current = search.predecessors[current];
+		}
+		return path;
+	}
+
+	/**
+	 * Lower bound of the travel time from a node to a destination.
+	 */
+	private long lowerBound(int node, int destination) {
+		long bound = 0;
+		int v = node * landmarkCount;
+		int t = destination * landmarkCount;
+		for (int i = 0; i < landmarkCount; i++) {
+			int fromV = fromLandmark[v + i];
+			int fromT = fromLandmark[t + i];
+			if (fromV != PathTable.UNREACHABLE && fromT != PathTable.UNREACHABLE) {
+				bound = Math.max(bound, (long) fromT - fromV);
+			}
+			int toV = toLandmark[v + i];
+			int toT = toLandmark[t + i];
+			if (toV != PathTable.UNREACHABLE && toT != PathTable.UNREACHABLE) {
+				bound = Math.max(bound, (long) toV - toT);
+			}
+		}
+		return bound;
+	}
+
+	/**
+	 * The scratch space of an A* search. Only the entries touched by a search are reset
+	 * before the next one. The result of the last search is kept, so that asking for the
+	 * travel time and then for the path of the same pair searches only once.
+	 */
+	private class Search {
+		final long[] distances;
+		final int[] predecessors;
+		final boolean[] settled;
+		final int[] touched;
+		int touchedCount = 0;
+		final IndexedMinHeap queue;
+		int lastSource = -1;
+		int lastDestination = -1;
+
+		Search(int size) {
+			distances = new long[size];
+			Arrays.fill(distances, Long.MAX_VALUE);
+			predecessors = new int[size];
+			Arrays.fill(predecessors, -1);
+			settled = new boolean[size];
+			touched = new int[size];
+			queue = new IndexedMinHeap(size);
+		}
+
+		void run(int source, int destination) {
+			if (source == lastSource && destination == lastDestination) {
+				return;
+			}
+			for (int i = 0; i < touchedCount; i++) {
+				int node = touched[i];
+				distances[node] = Long.MAX_VALUE;
+				predecessors[node] = -1;
+				settled[node] = false;
+			}
+			touchedCount = 0;
+			queue.clear();
+			lastSource = source;
+			lastDestination = destination;
+
+			touch(source, 0L, source);
+			queue.addOrDecrease(source, lowerBound(source, destination));
+			while (!queue.isEmpty()) {
+				int node = queue.poll();
+				if (node == destination) {
+					return;
+				}
+				settled[node] = true;
+				long distance = distances[node];
+				int end = graph.firstEdge(node + 1);
+				for (int edge = graph.firstEdge(node); edge < end; edge++) {
+					int target = graph.target(edge);
+					if (settled[target]) {
+						continue;
+					}
+					long newDistance = distance + graph.travelTime(edge);
+					if (newDistance < distances[target]) {
+						touch(target, newDistance, node);
+						queue.addOrDecrease(target, newDistance + lowerBound(target, destination));
+					}
+				}
+			}
+		}
+
+		private void touch(int node, long distance, int predecessor) {
+			if (distances[node] == Long.MAX_VALUE) {
+				touched[touchedCount++] = node;
+			}
+			distances[node] = distance;
+			predecessors[node] = predecessor;
+		}
+	}
+}
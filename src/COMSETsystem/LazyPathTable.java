@@ -0,0 +1,150 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The LazyPathTable computes the rows of the path table on demand. The row of a source, i.e.,
+ * the travel times and predecessors from the source to all intersections, is computed with a
+ * single Dijkstra search the first time the source is queried and kept in a least recently used
+ * cache bounded by a memory budget. Since a simulation queries routes from a small part of the
+ * intersections only (agent positions, pickup and drop-off points), startup is near-instant and
+ * most queries are answered from the cache.
+ *
+ * A row takes 8 * n bytes for n intersections, so the cache keeps budget / (8 * n) rows (at
+ * least one). The answers are identical to those of the PathTable computed by
+ * CityMap.calcTravelTimes, including the choice among several shortest paths.
+ *
+ * The lazy table does not offer next hops: the next hop from every intersection of a route would
+ * need the row of that intersection. A RouteCursor therefore materializes the route from the row
+ * of its source once per route.
+ */
+public class LazyPathTable implements RoutingBackend {
+
+	// The graph that is searched.
+	private final RoadGraph graph;
+
+	// The maximum number of cached rows.
+	private final int capacity;
+
+	// The cached rows by source, in access order.
+	private final LinkedHashMap<Integer, Row> rows;
+
+	// The Dijkstra engine of each querying thread.
+	private final ThreadLocal<DijkstraEngine> engines;
+
+	// The number of queries answered from a cached row.
+	private final AtomicLong hits = new AtomicLong();
+
+	// The number of queries that computed a row.
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Create a lazy table with an empty cache.
+	 *
+	 * @param graph the graph of the map
+	 * @param megabytes the memory budget of the row cache in megabytes
+	 */
+	public LazyPathTable(RoadGraph graph, long megabytes) {
+		this.graph = graph;
+		long rowBytes = 8L * graph.size();
+		this.capacity = (int) Math.max(1, Math.min(graph.size(), megabytes * 1024 * 1024 / rowBytes));
+		this.rows = new LinkedHashMap<Integer, Row>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Row> eldest) {
+				return size() > capacity;
+			}
+		};
+		this.engines = ThreadLocal.withInitial(() -> new DijkstraEngine(graph));
+	}
+
+	@Override
+	public long travelTime(int source, int destination) {
+		return row(source).travelTimes[destination];
+	}
+
+	@Override
+	public int[] path(int source, int destination) {
+		Row row = row(source);
+		int length = 1;
+		for (int current = destination; current != source; current = row.predecessors[current]) {
+			if (current < 0) {
+				return null;
+			}
+			length++;
+		}
+		int[] path = new int[length];
+		int current = destination;
+		for (int i = length - 1; i >= 0; i--) {
+			path[i] = current;
+			current = row.predecessors[current];
+		}
+		return path;
+	}
+
+	/**
+	 * @return the maximum number of cached rows
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the number of queries answered from a cached row
+	 */
+	public long hits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of queries that computed a row
+	 */
+	public long misses() {
+		return misses.get();
+	}
+
+	/**
+	 * Get the row of a source, computing it if it is not cached. The row is computed outside
+	 * the lock of the cache, so threads querying different sources do not wait for each other.
+	 */
+	private Row row(int source) {
+		Row row;
+		synchronized (rows) {
+			row = rows.get(source);
+		}
+		if (row != null) {
+			hits.incrementAndGet();
+			return row;
+		}
+		misses.incrementAndGet();
+		row = new Row(graph.size());
+		DijkstraEngine engine = engines.get();
+		engine.run(source);
+		for (int i = 0; i < engine.settledCount(); i++) {
+			int node = engine.settled(i);
+			row.travelTimes[node] = (int) engine.distance(node);
+			row.predecessors[node] = engine.predecessor(node);
+		}
+		synchronized (rows) {
+			rows.put(source, row);
+		}
+		return row;
+	}
+
+	/**
+	 * The travel times and predecessors from a source to all intersections.
+	 */
+	private static class Row {
+		final int[] travelTimes;
+		final int[] predecessors;
+
+		Row(int size) {
+			travelTimes = new int[size];
+			predecessors = new int[size];
+			Arrays.fill(travelTimes, PathTable.UNREACHABLE);
+			Arrays.fill(predecessors, -1);
+		}
+	}
+}
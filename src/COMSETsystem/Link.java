@@ -8,9 +8,9 @@ import java.awt.geom.Point2D;
 public class Link implements Comparable<Link> {
 
 	// The start (upstream) vertex of the link
-	public Vertex from;
+	private final Vertex from;
 	// The end (downstream) vertex of the link
-	public Vertex to;
+	private final Vertex to;
 	// length of the link segment in meters
 	public final double length;
 	// travel time of the link segment in seconds
@@ -19,16 +19,16 @@ public class Link implements Comparable<Link> {
 	public final double speed;
 	// a unique id
 	public final long id;
-	// reference to a Road object that contains this link
-	public Road road;
+	// reference to a Road object that contains this link; set by the Road, see setRoad()
+	private Road road;
 	// the amount of time it takes to travel from the start of the road to the start vertex of this link 
-	public long beginTime = -1;
+	private long beginTime = -1;
 
 	// min and max coordinates of the link
-	public double minX;
-	public double minY;
-	public double maxX;
-	public double maxY;
+	private final double minX;
+	private final double minY;
+	private final double maxX;
+	private final double maxY;
 	
 	// an ID counter to get a unique id
 	private static long maxId = 0;
@@ -52,10 +52,10 @@ public class Link implements Comparable<Link> {
 		this.speed = speed;
 		this.travelTime = (int)(Math.ceil(length/speed));
 		this.road = null;
-		minX = Math.min(from.xy.getX(), to.getX());
-		minY = Math.min(from.xy.getY(), to.getY());
-		maxX = Math.max(from.xy.getX(), to.getX());
-		maxY = Math.max(from.xy.getY(), to.getY());
+		minX = Math.min(from.getX(), to.getX());
+		minY = Math.min(from.getY(), to.getY());
+		maxX = Math.max(from.getX(), to.getX());
+		maxY = Math.max(from.getY(), to.getY());
 	}
 	
 	/**
@@ -79,6 +79,72 @@ public class Link implements Comparable<Link> {
 		maxY = aLink.maxY;
 	}
 
+	/**
+	 * Set the road that contains this link. Called by the Road when it is created.
+	 * @param road the road that contains this link
+	 * @param beginTime the travel time from the start of the road to the start vertex of this link
+	 */
+	void setRoad(Road road, long beginTime) {
+		this.road = road;
+		this.beginTime = beginTime;
+	}
+
+	/**
+	 * @return the start (upstream) vertex of the link
+	 */
+	public Vertex getFrom() {
+		return from;
+	}
+
+	/**
+	 * @return the end (downstream) vertex of the link
+	 */
+	public Vertex getTo() {
+		return to;
+	}
+
+	/**
+	 * @return the road that contains this link
+	 */
+	public Road getRoad() {
+		return road;
+	}
+
+	/**
+	 * @return the travel time from the start of the road to the start vertex of this link
+	 */
+	public long getBeginTime() {
+		return beginTime;
+	}
+
+	/**
+	 * @return the minimum x-coordinate of the link
+	 */
+	public double getMinX() {
+		return minX;
+	}
+
+	/**
+	 * @return the minimum y-coordinate of the link
+	 */
+	public double getMinY() {
+		return minY;
+	}
+
+	/**
+	 * @return the maximum x-coordinate of the link
+	 */
+	public double getMaxX() {
+		return maxX;
+	}
+
+	/**
+	 * @return the maximum y-coordinate of the link
+	 */
+	public double getMaxY() {
+		return maxY;
+	}
+
 	/**
 	 * checks whether this is the same link as some specified link
 	 * 
@@ -119,13 +185,21 @@ public class Link implements Comparable<Link> {
 	 * @return distance square
 	 */
 	public double distanceSq(Point2D p) {
+		return distanceSq(p.getX(), p.getY());
+	}
+
+	/**
+	 * squared distance from point (x, y) to this link
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public double distanceSq(double x, double y) {
 		double distSq;
 		double x1 = this.from.getX();
 		double y1 = this.from.getY();
 		double x2 = this.to.getX();
 		double y2 = this.to.getY();
-		double x = p.getX();
-		double y = p.getY();
 		double length = (x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2);
 
 		if (length == 0.0) {
@@ -145,6 +219,38 @@ public class Link implements Comparable<Link> {
 		return distSq;
 	}
 	
+	/**
+	 * The travel time from the start intersection of the road of this link to point (x, y)
+	 * snapped to this link, i.e., to the point of this link closest to (x, y).
+	 * @param x
+	 * @param y
+	 * @return travel time in seconds
+	 */
+	public long travelTimeFromStartIntersection(double x, double y) {
+		double x1 = this.from.getX();
+		double y1 = this.from.getY();
+		double x2 = this.to.getX();
+		double y2 = this.to.getY();
+		double snapX = x1;
+		double snapY = y1;
+		double lengthSq = (x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2);
+		if (lengthSq != 0.0) {
+			double t = ((x - x1) * (x2 - x1) + (y - y1) * (y2 - y1)) / lengthSq;
+			if (t < 0.0) {
+				// the start vertex is closest
+			} else if (t > 1.0) {
+				snapX = x2;
+				snapY = y2;
+			} else {
+				snapX = x1 + t * (x2 - x1);
+				snapY = y1 + t * (y2 - y1);
+			}
+		}
+		double distanceFromStartVertex = Math.sqrt(distanceSq(snapX, snapY, x1, y1));
+		long travelTimeFromStartVertex = Math.round(distanceFromStartVertex / length * travelTime);
+		return beginTime + travelTimeFromStartVertex;
+	}
+
 	/**
 	 * squared distance between two points
 	 * @param x1
@@ -2,11 +2,12 @@ package COMSETsystem;
 
 /**
  * Location on a road represented by the travel time from the start intersection of the road.
+ * A location cannot be changed, so the simulator hands its locations to agents as they are.
  */
 public class LocationOnRoad {
 
-	public Road road;
-	public long travelTimeFromStartIntersection;
+	public final Road road;
+	public final long travelTimeFromStartIntersection;
 
 	public LocationOnRoad(Road road, long travelTimeFromStartIntersection) {
 		this.road = road;
@@ -21,17 +22,17 @@ public class LocationOnRoad {
 	public double[] toLatLon() {
 		double latLon[] = new double[2];
 		int i;
-		for (i = 0; i < road.links.size() && road.links.get(i).beginTime <= this.travelTimeFromStartIntersection; i++);
+		for (i = 0; i < road.links.size() && road.links.get(i).getBeginTime() <= this.travelTimeFromStartIntersection; i++);
 		i--;
 		// interpolate
 		Link link = road.links.get(i);
-		long travelTimeFromStartVertex = this.travelTimeFromStartIntersection - link.beginTime;
+		long travelTimeFromStartVertex = this.travelTimeFromStartIntersection - link.getBeginTime();
 		if (link.travelTime == 0) {
-			latLon[0] = (link.from.latitude + link.to.latitude) / 2;
-			latLon[1] = (link.from.longitude + link.to.longitude) / 2;
+			latLon[0] = (link.getFrom().latitude + link.getTo().latitude) / 2;
+			latLon[1] = (link.getFrom().longitude + link.getTo().longitude) / 2;
 		} else {
-			latLon[0] = link.from.latitude + (link.to.latitude - link.from.latitude) * (((double)travelTimeFromStartVertex) / link.travelTime);
-			latLon[1] = link.from.longitude + (link.to.longitude - link.from.longitude) * (((double)travelTimeFromStartVertex) / link.travelTime);    		
+			latLon[0] = link.getFrom().latitude + (link.getTo().latitude - link.getFrom().latitude) * (((double)travelTimeFromStartVertex) / link.travelTime);
+			latLon[1] = link.getFrom().longitude + (link.getTo().longitude - link.getFrom().longitude) * (((double)travelTimeFromStartVertex) / link.travelTime);    		
 		}
 
 		return latLon;     
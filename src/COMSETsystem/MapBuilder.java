@@ -0,0 +1,77 @@
+package COMSETsystem;
+
+import java.util.List;
+
+/**
+ * The MapBuilder makes the changes to the vertices, intersections and roads that building a map
+ * takes (see MapCreation.MapCreator). These changes are package-private in the classes of the
+ * map, so that agents, which get the same objects through a CityMapView, can only read them.
+ * A builder can only be created in this package; the Simulator hands one to the MapCreator.
+ */
+public final class MapBuilder {
+
+	MapBuilder() {
+	}
+
+	/**
+	 * Add a link between two vertices. See Vertex.addEdge.
+	 *
+	 * @param from the start vertex of the link
+	 * @param to the end vertex of the link
+	 * @param distance the length of the link
+	 * @param speed the speed limit on the link
+	 */
+	public void addEdge(Vertex from, Vertex to, double distance, double speed) {
+		from.addEdge(to, distance, speed);
+	}
+
+	/**
+	 * Remove a vertex and reconnect its neighbors. See Vertex.cutVertex.
+	 *
+	 * @param vertex the vertex to remove
+	 */
+	public void cutVertex(Vertex vertex) {
+		vertex.cutVertex();
+	}
+
+	/**
+	 * Remove a vertex by cutting all its links. See Vertex.severVertex.
+	 *
+	 * @param vertex the vertex to remove
+	 */
+	public void severVertex(Vertex vertex) {
+		vertex.severVertex();
+	}
+
+	/**
+	 * Promote a vertex to an intersection.
+	 *
+	 * @param vertex the vertex to promote
+	 * @return the intersection at the vertex
+	 */
+	public Intersection promoteIntersection(Vertex vertex) {
+		return new Intersection(vertex);
+	}
+
+	/**
+	 * @param intersection an intersection
+	 * @return the vertex at which the intersection is located
+	 */
+	public Vertex vertexOf(Intersection intersection) {
+		return intersection.vertex;
+	}
+
+	/**
+	 * Create a road from its links and connect it to its intersections. See Road.connect.
+	 *
+	 * @param from the start intersection
+	 * @param to the end intersection
+	 * @param links the links that constitute the road, from the start to the end intersection
+	 * @return the road
+	 */
+	public Road createRoad(Intersection from, Intersection to, List<Link> links) {
+		Road road = new Road(from, to, links);
+		road.connect();
+		return road;
+	}
+}
@@ -0,0 +1,168 @@
+package COMSETsystem;
+
+import java.util.function.IntConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * The MapGrid divides a map into square cells for the spatial indexes of the simulator (see
+ * EmptyAgentGrid and WaitingResourceGrid) and gives lower bounds of travel times between cells.
+ *
+ * A route between two intersections that are d apart is at least d / maxSpeed long, where
+ * maxSpeed is the highest straight-line speed of any road, i.e., the distance between its
+ * intersections divided by its travel time. The bound holds for any speed reduction and
+ * rounding of the travel times of the roads.
+ */
+class MapGrid {
+
+	// The average number of intersections per cell the grid is sized for.
+	private final static int INTERSECTIONS_PER_CELL = 16;
+
+	// The tolerance in seconds of the lower bounds for rounding errors.
+	private final static double SLACK = 1e-6;
+
+	// The projected coordinates of the lower left corner of the grid.
+	private final double minX, minY;
+
+	// The side of a cell in projected coordinate units.
+	private final double cellSize;
+
+	// The number of columns and rows of the grid.
+	private final int columns, rows;
+
+	// The highest straight-line speed of any road in projected coordinate units per second.
+	private final double maxSpeed;
+
+	// The cell of each intersection, by path table index.
+	private final int[] cellOfIntersection;
+
+	/**
+	 * Create a grid covering the intersections of a map.
+	 *
+	 * @param map the map
+	 */
+	MapGrid(CityMap map) {
+		RoadGraph graph = map.graph();
+		int size = graph.size();
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (int node = 0; node < size; node++) {
+			Intersection intersection = graph.intersection(node);
+			minX = Math.min(minX, intersection.getX());
+			minY = Math.min(minY, intersection.getY());
+			maxX = Math.max(maxX, intersection.getX());
+			maxY = Math.max(maxY, intersection.getY());
+		}
+		int side = Math.max(1, (int) Math.ceil(Math.sqrt((double) size / INTERSECTIONS_PER_CELL)));
+		double extent = Math.max(maxX - minX, maxY - minY);
+		this.minX = minX;
+		this.minY = minY;
+		this.cellSize = extent > 0 ? extent / side : 1;
+		this.columns = Math.max(1, (int) Math.ceil((maxX - minX) / cellSize));
+		this.rows = Math.max(1, (int) Math.ceil((maxY - minY) / cellSize));
+
+		double maxSpeed = 0;
+		for (Road road : map.roads()) {
+			double distance = road.from.distance(road.to);
+			if (road.travelTime > 0) {
+				maxSpeed = Math.max(maxSpeed, distance / road.travelTime);
+			} else if (distance > 0) {
+				// A road that takes no time gives no lower bound; every cell has to be searched.
+				maxSpeed = Double.POSITIVE_INFINITY;
+			}
+		}
+		// Without roads that cover a distance there is no lower bound either.
+		this.maxSpeed = maxSpeed > 0 ? maxSpeed : Double.POSITIVE_INFINITY;
+
+		cellOfIntersection = new int[size];
+		for (int node = 0; node < size; node++) {
+			Intersection intersection = graph.intersection(node);
+			cellOfIntersection[node] = cell(column(intersection.getX()), row(intersection.getY()));
+		}
+	}
+
+	/**
+	 * @return the number of cells of the grid
+	 */
+	int cellCount() {
+		return columns * rows;
+	}
+
+	/**
+	 * @param intersection an intersection of the map
+	 * @return the cell of the intersection
+	 */
+	int cellOf(Intersection intersection) {
+		return cellOfIntersection[intersection.pathTableIndex];
+	}
+
+	/**
+	 * Visit the cells in rings of growing distance around an intersection, skipping the cells
+	 * whose lower bound is after the cutoff and stopping at the first ring whose lower bound is
+	 * after the cutoff. The lower bound of a cell is the offset plus the least travel time between
+	 * the intersection and the cell. The cutoff is read again before every cell, so the visitor
+	 * may lower it.
+	 *
+	 * @param center the intersection to start from
+	 * @param offset the time added to the travel times
+	 * @param cutoff the latest lower bound of the cells to visit
+	 * @param visitor called with every cell to visit
+	 */
+	void visitCells(Intersection center, double offset, LongSupplier cutoff, IntConsumer visitor) {
+		double x = center.getX();
+		double y = center.getY();
+		int centerColumn = column(x);
+		int centerRow = row(y);
+		int rings = Math.max(Math.max(centerColumn, columns - 1 - centerColumn), Math.max(centerRow, rows - 1 - centerRow));
+		for (int ring = 0; ring <= rings; ring++) {
+			// The cells of a ring are at least ring - 1 cells away from the cell of the center.
+			if (lowerBound(offset, Math.max(0, ring - 1) * cellSize) > cutoff.getAsLong()) {
+				break;
+			}
+			for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+				if (row < 0 || row >= rows) {
+					continue;
+				}
+				boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+				int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+				for (int column = centerColumn - ring; column <= centerColumn + ring; column += step) {
+					if (column < 0 || column >= columns) {
+						continue;
+					}
+					if (lowerBound(offset, distanceToCell(x, y, column, row)) <= cutoff.getAsLong()) {
+						visitor.accept(cell(column, row));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return a lower bound of the offset plus the travel time over a distance
+	 */
+	private double lowerBound(double offset, double distance) {
+		return offset + distance / maxSpeed - SLACK;
+	}
+
+	/**
+	 * @return the distance between a point and the nearest point of a cell
+	 */
+	private double distanceToCell(double x, double y, int column, int row) {
+		double left = minX + column * cellSize;
+		double bottom = minY + row * cellSize;
+		double dx = Math.max(0, Math.max(left - x, x - (left + cellSize)));
+		double dy = Math.max(0, Math.max(bottom - y, y - (bottom + cellSize)));
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	private int column(double x) {
+		return Math.min(columns - 1, Math.max(0, (int) ((x - minX) / cellSize)));
+	}
+
+	private int row(double y) {
+		return Math.min(rows - 1, Math.max(0, (int) ((y - minY) / cellSize)));
+	}
+
+	private int cell(int column, int row) {
+		return row * columns + column;
+	}
+}
@@ -0,0 +1,57 @@
+package COMSETsystem;
+
+import java.util.List;
+
+/**
+ * The MapMatches are the locations on the map of a batch of points matched at once (see
+ * CityMap.mapMatch), kept in primitive arrays indexed like the points instead of one
+ * LocationOnRoad per point: the points projected to xy coordinates, the index in CityMap.roads
+ * of the road of each location, and the travel time of each location from the start
+ * intersection of its road.
+ */
+public class MapMatches {
+
+	// The projected points.
+	public final double[] x;
+	public final double[] y;
+
+	// The index in CityMap.roads of the road of each location.
+	public final int[] roads;
+
+	// The travel time of each location from the start intersection of its road.
+	public final long[] offsets;
+
+	// The roads of the map.
+	private final List<Road> roadList;
+
+	MapMatches(List<Road> roadList, int size) {
+		this.roadList = roadList;
+		this.x = new double[size];
+		this.y = new double[size];
+		this.roads = new int[size];
+		this.offsets = new long[size];
+	}
+
+	/**
+	 * @return the number of points
+	 */
+	public int size() {
+		return roads.length;
+	}
+
+	/**
+	 * @param i the index of a point
+	 * @return the road of the location of the point
+	 */
+	public Road road(int i) {
+		return roadList.get(roads[i]);
+	}
+
+	/**
+	 * @param i the index of a point
+	 * @return the location of the point
+	 */
+	public LocationOnRoad location(int i) {
+		return new LocationOnRoad(roadList.get(roads[i]), offsets[i]);
+	}
+}
@@ -0,0 +1,51 @@
+package COMSETsystem;
+
+/**
+ * A NextHopTable is a RoutingBackend that knows, for every pair of intersections, the next hop,
+ * i.e., the first intersection after the source on a shortest path to the destination, in
+ * constant time. The next hops towards a destination must form a tree, so that following them
+ * from any intersection walks a shortest path to the destination. A RouteCursor uses the next
+ * hops to follow a route without materializing it.
+ */
+public interface NextHopTable extends RoutingBackend {
+
+	/**
+	 * Get the next hop from the source on the shortest path to the destination.
+	 *
+	 * @param source path table index of the source intersection
+	 * @param destination path table index of the destination intersection
+	 * @return the path table index of the next hop; the destination itself if destination == source;
+	 * -1 if the destination cannot be reached
+	 */
+	int nextHop(int source, int destination);
+
+	/**
+	 * Materialize a path by following the next hops of a table.
+	 *
+	 * @param table the table
+	 * @param source path table index of the source intersection
+	 * @param destination path table index of the destination intersection
+	 * @param size the number of intersections, which bounds the length of a path
+	 * @return the path table indices of the intersections on the path, starting with source
+	 * and ending with destination, or null if there is no path
+	 */
+	static int[] path(NextHopTable table, int source, int destination, int size) {
+		int length = 1;
+		for (int current = source; current != destination; current = table.nextHop(current, destination)) {
+			if (current < 0) {
+				return null;
+			}
+			if (length > size) {
+				throw new IllegalStateException("The next hops towards " + destination + " contain a cycle.");
+			}
+			length++;
+		}
+		int[] path = new int[length];
+		int current = source;
+		for (int i = 0; i < length; i++) {
+			path[i] = current;
+			current = table.nextHop(current, destination);
+		}
+		return path;
+	}
+}
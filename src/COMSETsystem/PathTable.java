@@ -0,0 +1,131 @@
+package COMSETsystem;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * The PathTable stores the shortest travel time between every pair of intersections of a map
+ * together with the next hop, i.e., the first intersection after the source on a shortest path
+ * from the source to the destination.
+ *
+ * Both quantities are kept in dense primitive arrays indexed by
+ * {@code source * size + destination}, where source and destination are the pathTableIndex
+ * values of the intersections, so that the entries of one source towards all destinations are
+ * adjacent. CityMap.calcTravelTimes fills the table one source at a time, so each worker writes
+ * a contiguous row of its own. A pair costs 8 bytes (an int travel time and an int next hop)
+ * and a lookup is a single array access.
+ *
+ * The next hop of a pair is the first move on the path to the destination in the shortest path
+ * tree of a Dijkstra search from the source (see CityMap.calcTravelTimes), i.e., the route starts
+ * as the route reconstructed from the predecessors of that search. Following the next hops from
+ * any intersection walks a shortest path, and the path from an intersection on that path onwards
+ * is the same as when starting there. A route can thus be followed one intersection at a time
+ * without materializing it, see RouteCursor.
+ *
+ * The arrays are accessed through IntBuffers so that a table can equally live on the heap
+ * (see CityMap.calcTravelTimes) or in a memory-mapped cache file (see PathTableCache).
+ * The CompactPathTable holds the same table in 3 bytes per pair.
+ */
+public class PathTable implements DensePathTable {
+
+	// The travel time stored for a destination that cannot be reached from the source.
+	public final static int UNREACHABLE = Integer.MAX_VALUE;
+
+	// The number of intersections, i.e., the number of rows and columns of the table.
+	private final int size;
+
+	// Shortest travel times in seconds, one row per source.
+	private final IntBuffer travelTimes;
+
+	// Path table index of the next hop from the source towards the destination, one row per source.
+	private final IntBuffer nextHops;
+
+	/**
+	 * Create a table for a map with the given number of intersections. Every destination
+	 * is initially unreachable.
+	 *
+	 * @param size the number of intersections
+	 */
+	PathTable(int size) {
+		if ((long) size * size > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("A map with " + size + " intersections is too large for a path table.");
+		}
+		this.size = size;
+		int[] travelTimeArray = new int[size * size];
+		int[] nextHopArray = new int[size * size];
+		Arrays.fill(travelTimeArray, UNREACHABLE);
+		Arrays.fill(nextHopArray, -1);
+		travelTimes = IntBuffer.wrap(travelTimeArray);
+		nextHops = IntBuffer.wrap(nextHopArray);
+	}
+
+	/**
+	 * Create a table on top of existing buffers, e.g., buffers mapped from a cache file.
+	 *
+	 * @param size the number of intersections
+	 * @param travelTimes the travel times, size * size entries, one row per source
+	 * @param nextHops the next hops, size * size entries, one row per source
+	 */
+	PathTable(int size, IntBuffer travelTimes, IntBuffer nextHops) {
+		if (travelTimes.limit() != size * size || nextHops.limit() != size * size) {
+			throw new IllegalArgumentException("The buffers do not match a path table of size " + size);
+		}
+		this.size = size;
+		this.travelTimes = travelTimes;
+		this.nextHops = nextHops;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the shortest travel time between two intersections.
+	 *
+	 * @param source path table index of the source intersection
+	 * @param destination path table index of the destination intersection
+	 * @return the travel time in seconds, or UNREACHABLE
+	 */
+	@Override
+	public long travelTime(int source, int destination) {
+		return travelTimes.get(source * size + destination);
+	}
+
+	@Override
+	public int nextHop(int source, int destination) {
+		return nextHops.get(source * size + destination);
+	}
+
+	/**
+	 * Get the shortest path between two intersections by following the next hops from the
+	 * source to the destination.
+	 */
+	@Override
+	public int[] path(int source, int destination) {
+		return NextHopTable.path(this, source, destination, size);
+	}
+
+	@Override
+	public void set(int source, int destination, long travelTime, int nextHop) {
+		if (travelTime >= UNREACHABLE) {
+			throw new IllegalArgumentException("Travel time " + travelTime + " does not fit in the path table.");
+		}
+		travelTimes.put(source * size + destination, (int) travelTime);
+		nextHops.put(source * size + destination, nextHop);
+	}
+
+	/**
+	 * @return a read-only view of the travel times, one row per source
+	 */
+	IntBuffer travelTimes() {
+		return travelTimes.asReadOnlyBuffer();
+	}
+
+	/**
+	 * @return a read-only view of the next hops, one row per source
+	 */
+	IntBuffer nextHops() {
+		return nextHops.asReadOnlyBuffer();
+	}
+}
@@ -0,0 +1,346 @@
+package COMSETsystem;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * The PathTableCache keeps the path table of a map on disk so that it is computed only once per map.
+ *
+ * A cache entry is keyed by a fingerprint, i.e., a SHA-256 hash of the map JSON file, the bounding
+ * polygon KML file and the speed reduction, which together determine the map and thus the table.
+ * The entry is a binary file with a 64-byte header followed by the travel times and the next hops
+ * of the table, each as size * size ints in native byte order. Loading an entry maps the file
+ * read-only with FileChannel.map instead of reading it, so a warm start neither recomputes nor copies
+ * the table onto the heap, and simulator processes that load the same entry share the page cache.
+ *
+ * A CompactPathTable is cached in a separate file of the same map with the same header, followed by
+ * the encoded travel times as size * size chars, the ranks of the next hops as size * size bytes and
+ * the overflowing travel times as pairs of int index and int travel time in ascending order of
+ * index. The overflow is read onto the heap; it holds the few pairs whose travel time does not fit
+ * in a char.
+ *
+ * Entries are written to a temporary file first and then atomically renamed, so a concurrent reader
+ * never sees a partially written entry.
+ */
+public class PathTableCache {
+
+	// Identifies a path table cache file. Written in native byte order, so that a file written on a
+	// machine of different endianness is rejected.
+	private final static int MAGIC = 0x434d5054;
+
+	// Identifies a compact path table cache file.
+	private final static int COMPACT_MAGIC = 0x434d5043;
+
+	// The version of the file layout and of the meaning of its next hops.
+	private final static int VERSION = 4;
+
+	// The size of the file header in bytes.
+	private final static int HEADER_SIZE = 64;
+
+	// The directory where cache files are kept.
+	private final File directory;
+
+	// The fingerprint of the map whose table is cached.
+	private final byte[] fingerprint;
+
+	/**
+	 * Constructor of PathTableCache.
+	 *
+	 * @param directory the directory where cache files are kept; created if it does not exist
+	 * @param mapJSONFile the map file
+	 * @param boundingPolygonKMLFile the KML file defining the bounding polygon of the map
+	 * @param speedReduction the speed reduction applied to the map
+	 * @throws IOException if one of the files cannot be read
+	 */
+	public PathTableCache(String directory, String mapJSONFile, String boundingPolygonKMLFile, double speedReduction) throws IOException {
+		this.directory = new File(directory);
+		this.fingerprint = fingerprint(mapJSONFile, boundingPolygonKMLFile, speedReduction);
+	}
+
+	/**
+	 * Compute the fingerprint of a map, i.e., a SHA-256 hash of everything that determines the map.
+	 *
+	 * @param mapJSONFile the map file
+	 * @param boundingPolygonKMLFile the KML file defining the bounding polygon of the map
+	 * @param speedReduction the speed reduction applied to the map
+	 * @return the fingerprint
+	 * @throws IOException if one of the files cannot be read
+	 */
+	public static byte[] fingerprint(String mapJSONFile, String boundingPolygonKMLFile, double speedReduction) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		byte[] buffer = new byte[1 << 16];
+		for (String file : new String[] {mapJSONFile, boundingPolygonKMLFile}) {
+			try (InputStream in = new FileInputStream(file)) {
+				int read;
+				while ((read = in.read(buffer)) > 0) {
+					digest.update(buffer, 0, read);
+				}
+			}
+		}
+		ByteBuffer speed = ByteBuffer.allocate(8);
+		speed.putDouble(0, speedReduction);
+		digest.update(speed);
+		return digest.digest();
+	}
+
+	/**
+	 * @return the fingerprint of the map
+	 */
+	byte[] fingerprint() {
+		return fingerprint.clone();
+	}
+
+	/**
+	 * @return the cache file of the path table of the fingerprinted map
+	 */
+	public File file() {
+		return file("pathtable");
+	}
+
+	/**
+	 * @return the cache file of the compact path table of the fingerprinted map
+	 */
+	public File compactFile() {
+		return file("pathtable-compact");
+	}
+
+	/**
+	 * Get a cache file of the fingerprinted map, e.g., for other precomputed routing data.
+	 *
+	 * @param kind the kind of data kept in the file
+	 * @return the cache file
+	 */
+	public File file(String kind) {
+		StringBuilder name = new StringBuilder(kind).append('-');
+		for (byte b : fingerprint) {
+			name.append(String.format("%02x", b));
+		}
+		name.append(".bin");
+		return new File(directory, name.toString());
+	}
+
+	/**
+	 * Map the cached table of the fingerprinted map.
+	 *
+	 * @param size the number of intersections of the map
+	 * @return the mapped table, or null if there is no valid cache entry
+	 * @throws IOException if the cache file exists but cannot be read
+	 */
+	public PathTable load(int size) throws IOException {
+		File file = file();
+		if (!file.exists()) {
+			return null;
+		}
+		long sectionSize = 4L * size * size;
+		if (sectionSize > Integer.MAX_VALUE) {
+			return null;
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			if (channel.size() != HEADER_SIZE + 2 * sectionSize) {
+				return null;
+			}
+			if (!validHeader(channel, MAGIC, size)) {
+				return null;
+			}
+			IntBuffer travelTimes = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, sectionSize)
+					.order(ByteOrder.nativeOrder()).asIntBuffer();
+			IntBuffer nextHops = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + sectionSize, sectionSize)
+					.order(ByteOrder.nativeOrder()).asIntBuffer();
+			// The mappings stay valid after the channel is closed.
+			return new PathTable(size, travelTimes, nextHops);
+		}
+	}
+
+	/**
+	 * Write a table to the cache as the entry of the fingerprinted map.
+	 *
+	 * @param table the table to write
+	 * @throws IOException if the entry cannot be written
+	 */
+	public void store(PathTable table) throws IOException {
+		if (4L * table.size() * table.size() > Integer.MAX_VALUE) {
+			throw new IOException("A path table of size " + table.size() + " is too large to be memory-mapped.");
+		}
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Could not create the cache directory " + directory);
+		}
+		File file = file();
+		File temporary = File.createTempFile(file.getName(), ".tmp", directory);
+		try {
+			try (RandomAccessFile raf = new RandomAccessFile(temporary, "rw"); FileChannel channel = raf.getChannel()) {
+				writeHeader(channel, MAGIC, table.size(), 0);
+				ByteBuffer chunk = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.nativeOrder());
+				for (IntBuffer section : new IntBuffer[] {table.travelTimes(), table.nextHops()}) {
+					section.clear();
+					while (section.hasRemaining()) {
+						chunk.clear();
+						IntBuffer ints = chunk.asIntBuffer();
+						int count = Math.min(ints.capacity(), section.remaining());
+						IntBuffer slice = section.slice();
+						slice.limit(count);
+						ints.put(slice);
+						section.position(section.position() + count);
+						chunk.limit(4 * count);
+						write(channel, chunk);
+					}
+				}
+				channel.force(true);
+			}
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			temporary.delete();
+		}
+	}
+
+	/**
+	 * Map the cached compact table of the fingerprinted map.
+	 *
+	 * @param graph the graph of the map
+	 * @return the mapped table, or null if there is no valid cache entry
+	 * @throws IOException if the cache file exists but cannot be read
+	 */
+	public CompactPathTable loadCompact(RoadGraph graph) throws IOException {
+		File file = compactFile();
+		if (!file.exists()) {
+			return null;
+		}
+		int size = graph.size();
+		long sectionSize = (long) size * size;
+		if (2 * sectionSize > Integer.MAX_VALUE) {
+			return null;
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			if (channel.size() < HEADER_SIZE + 3 * sectionSize || !validHeader(channel, COMPACT_MAGIC, size)) {
+				return null;
+			}
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.nativeOrder());
+			int overflowCount = header.getInt(12);
+			long overflowPosition = HEADER_SIZE + 3 * sectionSize;
+			if (channel.size() != overflowPosition + 8L * overflowCount) {
+				return null;
+			}
+			CharBuffer travelTimes = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, 2 * sectionSize)
+					.order(ByteOrder.nativeOrder()).asCharBuffer();
+			ByteBuffer hopRanks = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + 2 * sectionSize, sectionSize);
+			int[] overflowIndices = new int[overflowCount];
+			int[] overflowTravelTimes = new int[overflowCount];
+			if (overflowCount > 0) {
+				ByteBuffer entries = channel.map(FileChannel.MapMode.READ_ONLY, overflowPosition, 8L * overflowCount)
+						.order(ByteOrder.nativeOrder());
+				for (int i = 0; i < overflowCount; i++) {
+					overflowIndices[i] = entries.getInt();
+					overflowTravelTimes[i] = entries.getInt();
+					if (i > 0 && overflowIndices[i] <= overflowIndices[i - 1]) {
+						return null;
+					}
+				}
+			}
+			// The mappings stay valid after the channel is closed.
+			return new CompactPathTable(graph, travelTimes, hopRanks, overflowIndices, overflowTravelTimes);
+		}
+	}
+
+	/**
+	 * Write a compact table to the cache as the entry of the fingerprinted map.
+	 *
+	 * @param table the table to write
+	 * @throws IOException if the entry cannot be written
+	 */
+	public void store(CompactPathTable table) throws IOException {
+		if (2L * table.size() * table.size() > Integer.MAX_VALUE) {
+			throw new IOException("A path table of size " + table.size() + " is too large to be memory-mapped.");
+		}
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Could not create the cache directory " + directory);
+		}
+		File file = compactFile();
+		File temporary = File.createTempFile(file.getName(), ".tmp", directory);
+		try {
+			try (RandomAccessFile raf = new RandomAccessFile(temporary, "rw"); FileChannel channel = raf.getChannel()) {
+				int[] overflowIndices = table.overflowIndices();
+				int[] overflowTravelTimes = table.overflowTravelTimes();
+				writeHeader(channel, COMPACT_MAGIC, table.size(), overflowIndices.length);
+				ByteBuffer chunk = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.nativeOrder());
+				CharBuffer travelTimes = table.travelTimes();
+				travelTimes.clear();
+				while (travelTimes.hasRemaining()) {
+					chunk.clear();
+					CharBuffer chars = chunk.asCharBuffer();
+					int count = Math.min(chars.capacity(), travelTimes.remaining());
+					CharBuffer slice = travelTimes.slice();
+					slice.limit(count);
+					chars.put(slice);
+					travelTimes.position(travelTimes.position() + count);
+					chunk.limit(2 * count);
+					write(channel, chunk);
+				}
+				ByteBuffer hopRanks = table.hopRanks();
+				hopRanks.clear();
+				write(channel, hopRanks);
+				chunk.clear();
+				for (int i = 0; i < overflowIndices.length; i++) {
+					if (chunk.remaining() < 8) {
+						chunk.flip();
+						write(channel, chunk);
+						chunk.clear();
+					}
+					chunk.putInt(overflowIndices[i]).putInt(overflowTravelTimes[i]);
+				}
+				chunk.flip();
+				write(channel, chunk);
+				channel.force(true);
+			}
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			temporary.delete();
+		}
+	}
+
+	/**
+	 * Check the header of a cache file.
+	 *
+	 * @return true if the file has the given magic number and belongs to a table of the given size of the fingerprinted map
+	 */
+	private boolean validHeader(FileChannel channel, int magic, int size) throws IOException {
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.nativeOrder());
+		byte[] storedFingerprint = new byte[fingerprint.length];
+		header.position(16);
+		header.get(storedFingerprint);
+		return header.getInt(0) == magic && header.getInt(4) == VERSION && header.getInt(8) == size
+				&& Arrays.equals(storedFingerprint, fingerprint);
+	}
+
+	/**
+	 * Write the header of a cache file.
+	 */
+	private void writeHeader(FileChannel channel, int magic, int size, int count) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.nativeOrder());
+		header.putInt(magic).putInt(VERSION).putInt(size).putInt(count).put(fingerprint);
+		header.clear();
+		write(channel, header);
+	}
+
+	private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+}
@@ -38,6 +38,9 @@ public class ResourceEvent extends Event {
 	// The shortest travel time from pickupLoc to dropoffLoc
 	public long tripTime;
 
+	// The cell of the WaitingResourceGrid that the resource is in, or -1 if it is not in the grid.
+	int gridCell = -1;
+
 	/**
 	 * Constructor for class ResourceEvent.
 	 *
@@ -56,6 +59,26 @@ public class ResourceEvent extends Event {
 		this.tripTime = simulator.map.travelTimeBetween(pickupLoc, dropoffLoc);
 	}
 
+	/**
+	 * Constructor for class ResourceEvent with an id reserved before (see Event.reserveIds).
+	 *
+	 * @param id the unique id among all events
+	 * @param availableTime time when this agent is introduced to the system.
+	 * @param pickupLoc this resource's location when it becomes available.
+	 * @param dropoffLoc this resource's destination location.
+	 * @param tripTime the shortest travel time from pickupLoc to dropoffLoc.
+	 * @param simulator the simulator object.
+	 */
+	ResourceEvent(long id, LocationOnRoad pickupLoc, LocationOnRoad dropoffLoc, long availableTime, long tripTime, Simulator simulator) {
+		super(id, availableTime, simulator);
+		this.pickupLoc = pickupLoc;
+		this.dropoffLoc = dropoffLoc;
+		this.availableTime = availableTime;
+		this.eventCause = BECOME_AVAILABLE;
+		this.expirationTime = availableTime + simulator.ResourceMaximumLifeTime;
+		this.tripTime = tripTime;
+	}
+
 	/**
 	 * Whenever a resource arrives/becomes available an event corresponding to
 	 * it gets triggered. When it triggers it checks for all the active agents
@@ -65,7 +88,7 @@ public class ResourceEvent extends Event {
 	 * waitingResources such that once an agent gets available it will check if
 	 * it can get to the resource in time. Furthermore, calculate the score of
 	 * this assignment according to the scoring rules. Also remove the assigned
-	 * agent from the PriorityQueue and from activeAgents.
+	 * agent from the EventQueue and from activeAgents.
 	 */
 	@Override
 	Event trigger() throws Exception {
@@ -98,71 +121,103 @@ public class ResourceEvent extends Event {
 		// finds the agent with least travel time between itself and this resource
 		AgentEvent bestAgent = null;
 		long earliest = Long.MAX_VALUE;
-		LocationOnRoad bestAgentLocationOnRoad = null;
-		for (AgentEvent agent : simulator.emptyAgents) {
-
-			// Calculate the travel time from the agent's current location to resource.
-			// Assumption: agent.time is the arrival time at the end intersection of agent.loc.road. 
-			// This assumption is true for empty agents. Notice that when agents are initially introduced
-			// to the system, they are empty and agent.time is not necessarily the time to arrive at the end intersection.
-			// However, all the agents are triggered once before the earliest resource (see MapWithData.createMapWithData).
-			// When that happens, agent.time is updated to the end intersection arrival time. 
-			// Thus the assumption is still true.
-			long travelTimeToEndIntersection = agent.time - time;
-			long travelTimeFromStartIntersection = agent.loc.road.travelTime - travelTimeToEndIntersection;
-			LocationOnRoad agentLocationOnRoad = new LocationOnRoad(agent.loc.road, travelTimeFromStartIntersection);
-			long travelTime = simulator.map.travelTimeBetween(agentLocationOnRoad, pickupLoc);
-			long arriveTime = travelTime + time;
-			if (arriveTime < earliest) {
-				bestAgent = agent;
-				earliest = arriveTime;
-				bestAgentLocationOnRoad = agentLocationOnRoad;
+		if (simulator.batchWindow > 0) {
+			// The resource waits for the next batch (see BatchEvent).
+		} else if (simulator.emptyAgentIndex != null) {
+			// Only the agents that may reach the resource earlier than the best one so far are considered.
+			bestAgent = simulator.emptyAgentIndex.earliestAgent(this, expirationTime);
+			if (bestAgent != null) {
+				earliest = arrivalTime(bestAgent);
+			}
+		} else {
+			for (AgentEvent agent : simulator.emptyAgents) {
+				long arriveTime = arrivalTime(agent);
+				if (arriveTime < earliest) {
+					bestAgent = agent;
+					earliest = arriveTime;
+				}
 			}
 		}
 
 		if (earliest > availableTime + simulator.ResourceMaximumLifeTime) {
-			simulator.waitingResources.add(this);
+			simulator.addWaitingResource(this);
 			this.time += simulator.ResourceMaximumLifeTime;
 			this.eventCause = EXPIRED;
 			Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Setup expiration event at time " + this.time, this);
 			return this;
 		} else { // make assignment
-			// update the statistics       	
-			long cruiseTime = time - bestAgent.startSearchTime;
-			long approachTime = earliest - time;
-			long searchTime = cruiseTime + approachTime;
-			long waitTime = earliest - availableTime;
-
-			simulator.totalAgentCruiseTime += cruiseTime;
-			simulator.totalAgentApproachTime += approachTime;
-			simulator.totalAgentSearchTime += searchTime;
-			simulator.totalResourceWaitTime += waitTime;
-			simulator.totalResourceTripTime += tripTime;
-			simulator.totalAssignments++;
-
-
-			// Inform the assignment to the agent.
-			bestAgent.assignedTo(bestAgentLocationOnRoad, time, id, pickupLoc, dropoffLoc);
-
-			// "Label" the agent as occupied.
-			simulator.emptyAgents.remove(bestAgent);
-
-			simulator.events.remove(bestAgent);
-			Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Assigned to agent id = " + bestAgent.id + " currently at " + bestAgent.loc, this);
+			return assignTo(bestAgent, bestAgent.locationAt(this), time, earliest);
+		}
+	}
 
-			bestAgent.setEvent(earliest + tripTime, dropoffLoc, AgentEvent.DROPPING_OFF);
+	/**
+	 * Assign this resource to an empty agent: update the statistics, inform the agent and set
+	 * the agent event to the drop-off of the resource. The agent event is removed from the event
+	 * queue and has to be added back by the caller.
+	 * 
+	 * @param agent the agent event of the agent
+	 * @param agentLocation the location of the agent at the current time
+	 * @param now the current time
+	 * @param arrivalTime the time at which the agent reaches the pickup location
+	 * @return the agent event
+	 */
+	AgentEvent assignTo(AgentEvent agent, LocationOnRoad agentLocation, long now, long arrivalTime) {
+		// update the statistics       	
+		long cruiseTime = now - agent.startSearchTime();
+		long approachTime = arrivalTime - now;
+		long searchTime = cruiseTime + approachTime;
+		long waitTime = arrivalTime - availableTime;
+
+		simulator.totalAgentCruiseTime += cruiseTime;
+		simulator.totalAgentApproachTime += approachTime;
+		simulator.totalAgentSearchTime += searchTime;
+		simulator.totalResourceWaitTime += waitTime;
+		simulator.totalResourceTripTime += tripTime;
+		simulator.totalAssignments++;
+
+
+		// Inform the assignment to the agent.
+		agent.assignedTo(agentLocation, now, id, pickupLoc, dropoffLoc);
+
+		// "Label" the agent as occupied.
+		simulator.removeEmptyAgent(agent);
+
+		simulator.events.remove(agent);
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Assigned to agent id = " + agent.id + " currently at " + agent.loc, this);
+
+		agent.setEvent(arrivalTime + tripTime, dropoffLoc, AgentEvent.DROPPING_OFF);
+
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "From agent to resource = " + approachTime + " seconds.", this);
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "From pickupLoc to dropoffLoc = " + tripTime + " seconds.", this);            
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "cruise time = " + cruiseTime + " seconds.", this);
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "approach time = " + approachTime + " seconds.", this);
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "search time = " + searchTime + " seconds.", this);
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "wait time = " + waitTime + " seconds.", this);
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Next agent trigger time = " + agent.time, this);
+
+		// Add the event back to the event queue.
+		return agent;
+	}
 
-			Logger.getLogger(this.getClass().getName()).log(Level.INFO, "From agent to resource = " + approachTime + " seconds.", this);
-			Logger.getLogger(this.getClass().getName()).log(Level.INFO, "From pickupLoc to dropoffLoc = " + tripTime + " seconds.", this);            
-			Logger.getLogger(this.getClass().getName()).log(Level.INFO, "cruise time = " + cruiseTime + " seconds.", this);
-			Logger.getLogger(this.getClass().getName()).log(Level.INFO, "approach time = " + approachTime + " seconds.", this);
-			Logger.getLogger(this.getClass().getName()).log(Level.INFO, "search time = " + searchTime + " seconds.", this);
-			Logger.getLogger(this.getClass().getName()).log(Level.INFO, "wait time = " + waitTime + " seconds.", this);
-			Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Next agent trigger time = " + bestAgent.time, this);
+	/**
+	 * The latest time at which an agent that becomes empty while this resource is waiting must
+	 * reach the pickup location to be assigned to the resource (see AgentEvent.dropoffHandler),
+	 * i.e., the agent must reach it ResourceMaximumLifeTime before the expiration time.
+	 * 
+	 * @return the pickup deadline
+	 */
+	long pickupDeadline() {
+		return expirationTime - simulator.ResourceMaximumLifeTime;
+	}
 
-			// Add the event back to the event queue.
-			return bestAgent;
-		}
+	/**
+	 * Calculate the time at which an empty agent can reach the pickup location of this resource.
+	 * 
+	 * @param agent an empty agent
+	 * @return the arrival time of the agent at the pickup location
+	 */
+	long arrivalTime(AgentEvent agent) {
+		return time + simulator.map.travelTimeBetween(agent.locationAt(this), pickupLoc);
 	}
 
 	/*
@@ -171,7 +226,7 @@ public class ResourceEvent extends Event {
 	public void expireHandler() {
 		simulator.expiredResources ++;
 		simulator.totalResourceWaitTime += simulator.ResourceMaximumLifeTime;
-		simulator.waitingResources.remove(this);
+		simulator.removeWaitingResource(this);
 		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Expired.", this);
 
 	}
@@ -0,0 +1,162 @@
+package COMSETsystem;
+
+import java.io.IOException;
+
+import DataParsing.CSVNewYorkParser;
+import DataParsing.MapWithData;
+import DataParsing.Resource;
+
+/**
+ * The ResourceEventSource streams the resources of a dataset file into the event queue while
+ * the simulation runs, instead of map matching all of them and adding all their events before
+ * it starts (see Simulator.setResourceStreaming). The resources are read and map-matched in the
+ * order of the file, only up to a look-ahead after the next event to be triggered, so the event
+ * queue holds the resources of that window only.
+ *
+ * The file is read twice: once before the simulation to count the resources and to find the
+ * earliest one, which map matches nothing, and once while the simulation runs. The events of the
+ * resources get ids reserved before the agents are placed, in the order of the file, so the
+ * events are created with the same ids and triggered in the same order as when all of them are
+ * added before the simulation starts.
+ *
+ * The resources may also be streamed from their compiled file (see CompiledResources), which
+ * needs neither the counting pass nor map matching.
+ *
+ * The file must be sorted by time, except for resources that are out of order by less than the
+ * look-ahead; a resource that would have to be triggered before the events already triggered is
+ * an error.
+ */
+class ResourceEventSource {
+
+	// The simulator.
+	private final Simulator simulator;
+
+	// The map matching of the resources.
+	private final MapWithData mapWD;
+
+	// The resources of the file, in the order of the file, or null if they are compiled.
+	private final CSVNewYorkParser.ResourceStream stream;
+
+	// The compiled resources, or null if the resources are read from the file.
+	private final CompiledResources compiled;
+
+	// The time in seconds after the next event up to which resources are read.
+	private final long lookAhead;
+
+	// The number of resources of the file, and the earliest time of a resource.
+	private final int count;
+	private final long earliestTime;
+
+	// The reserved id of the first resource, and the number of resources read so far.
+	private final long firstId;
+	private int read = 0;
+
+	// The time of the next event when resources were last read, before which no resource may be read.
+	private long readUntil = Long.MIN_VALUE;
+
+	// The resource read from the file whose event is not created yet, or null.
+	private Resource pending;
+
+	/**
+	 * Open the dataset file, count its resources and reserve the ids of their events.
+	 *
+	 * @param simulator the simulator
+	 * @param mapWD the map matching of the resources
+	 * @param parser the parser of the dataset file
+	 * @param lookAhead the time in seconds after the next event up to which resources are read
+	 * @throws IOException if the file cannot be read
+	 */
+	ResourceEventSource(Simulator simulator, MapWithData mapWD, CSVNewYorkParser parser, long lookAhead) throws IOException {
+		this.simulator = simulator;
+		this.mapWD = mapWD;
+		this.lookAhead = lookAhead;
+		int count = 0;
+		long earliestTime = Long.MAX_VALUE;
+		try (CSVNewYorkParser.ResourceStream counting = parser.stream()) {
+			while (counting.hasNext()) {
+				earliestTime = Math.min(earliestTime, counting.next().getTime());
+				count++;
+			}
+		}
+		this.count = count;
+		this.earliestTime = earliestTime;
+		this.firstId = Event.reserveIds(count);
+		this.stream = count > 0 ? parser.stream() : null;
+		this.compiled = null;
+	}
+
+	/**
+	 * Reserve the ids of the events of compiled resources.
+	 *
+	 * @param simulator the simulator
+	 * @param compiled the compiled resources
+	 * @param lookAhead the time in seconds after the next event up to which resources are read
+	 */
+	ResourceEventSource(Simulator simulator, CompiledResources compiled, long lookAhead) {
+		this.simulator = simulator;
+		this.mapWD = null;
+		this.lookAhead = lookAhead;
+		this.count = compiled.size();
+		this.earliestTime = compiled.earliestTime();
+		this.firstId = Event.reserveIds(count);
+		this.stream = null;
+		this.compiled = compiled;
+	}
+
+	/**
+	 * @return the earliest time of a resource, or Long.MAX_VALUE if there are no resources
+	 */
+	long earliestTime() {
+		return earliestTime;
+	}
+
+	/**
+	 * @return true if there are resources whose events are not created yet
+	 */
+	boolean hasMore() {
+		return read < count;
+	}
+
+	/**
+	 * Create the events of the resources up to the look-ahead after the next event and add them
+	 * to the event queue. The simulation end time is extended to the latest possible time that
+	 * one of these resources is dropped off.
+	 *
+	 * @param events the event queue
+	 * @param nextTime the time of the next event to be triggered
+	 * @throws IOException if the file cannot be read
+	 */
+	void fill(EventQueue events, long nextTime) throws IOException {
+		while (read < count) {
+			if (compiled == null && pending == null) {
+				pending = stream.next();
+			}
+			long time = compiled != null ? compiled.time(read) : pending.getTime();
+			if (time > nextTime + lookAhead) {
+				break;
+			}
+			if (time <= readUntil) {
+				throw new IllegalStateException("Resource " + read + " of the dataset at time " + time
+						+ " is out of time order by more than the look-ahead of " + lookAhead + " seconds");
+			}
+			ResourceEvent ev;
+			if (compiled != null) {
+				ev = compiled.event(read, firstId + read, simulator);
+			} else {
+				// map matching
+				LocationOnRoad pickupMatch = mapWD.mapMatch(pending.getPickupLon(), pending.getPickupLat());
+				LocationOnRoad dropoffMatch = mapWD.mapMatch(pending.getDropoffLon(), pending.getDropoffLat());
+
+				ev = new ResourceEvent(firstId + read, pickupMatch, dropoffMatch, time,
+						simulator.map.travelTimeBetween(pickupMatch, dropoffMatch), simulator);
+				pending = null;
+			}
+			events.add(ev);
+			simulator.simulationEndTime = Math.max(simulator.simulationEndTime, time + simulator.ResourceMaximumLifeTime + ev.tripTime);
+			if (++read == count && stream != null) {
+				stream.close();
+			}
+		}
+		readUntil = nextTime;
+	}
+}
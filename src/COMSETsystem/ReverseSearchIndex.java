@@ -0,0 +1,87 @@
+package COMSETsystem;
+
+/**
+ * The ReverseSearchIndex is an EmptyAgentIndex with a bucket per intersection that finds the
+ * empty agent that reaches a resource the earliest with a single Dijkstra search towards the
+ * pickup location on the reverse graph of the map, instead of a shortest travel time query per
+ * agent. It does not need the all-pair path table, so it suits the routing backends whose
+ * queries are expensive (see RoutingBackend).
+ *
+ * An agent that is not on the road of the pickup location before the pickup location reaches it
+ * through the end intersection of the road it is on, so its travel time is the time to the end
+ * of its road plus the travel time from there to the start intersection of the road of the
+ * pickup location, plus the travel time from there to the pickup location. The search settles
+ * the intersections in increasing travel time towards the start intersection, and each settled
+ * intersection gives the exact travel times of the agents on roads that end there. It stops at
+ * the first intersection that cannot give an earlier agent than the best one so far, and is
+ * bounded by the expiration time of the resource. Agents on the road of the pickup location
+ * before the pickup location are considered first. Ties are broken by the smallest agent id, as
+ * by the scan in id order.
+ *
+ * The travel times of the search are the same as those of the routing backends, which are all
+ * exact, so the search finds the same agent as the scan.
+ */
+class ReverseSearchIndex extends EmptyAgentIndex {
+
+	// The search towards the pickup location.
+	private final DijkstraEngine engine;
+
+	/**
+	 * Create an empty index for a map.
+	 *
+	 * @param map the map
+	 */
+	ReverseSearchIndex(CityMap map) {
+		super(map.graph().size());
+		engine = new DijkstraEngine(map.graph().reverse());
+	}
+
+	@Override
+	int bucketOf(Intersection intersection) {
+		return intersection.pathTableIndex;
+	}
+
+	@Override
+	AgentEvent earliestAgent(ResourceEvent resource, long deadline) {
+		LocationOnRoad pickupLoc = resource.pickupLoc;
+		Road pickupRoad = pickupLoc.road;
+		long time = resource.time;
+		long pickupOffset = pickupLoc.travelTimeFromStartIntersection;
+		Best best = new Best();
+
+		// The agents that reach the pickup location on its road.
+		for (AgentEvent agent : bucket(bucketOf(pickupRoad.to))) {
+			int step = agent.stepAt(resource);
+			long travelTimeToEndIntersection = agent.arrivalTimeAt(step) - time;
+			if (agent.roadAt(step) == pickupRoad && pickupRoad.travelTime - travelTimeToEndIntersection <= pickupOffset) {
+				best.offer(agent, time + pickupOffset - (pickupRoad.travelTime - travelTimeToEndIntersection));
+			}
+		}
+
+		// The agents that reach the pickup location through the start intersection of its road.
+		engine.start(pickupRoad.from.pathTableIndex, deadline - time - pickupOffset + 1);
+		int node;
+		while ((node = engine.settleNext()) >= 0) {
+			// The time at which an agent at the settled intersection now reaches the pickup location.
+			long arrivalFromNode = time + engine.distance(node) + pickupOffset;
+			if (arrivalFromNode > Math.min(best.earliest, deadline)) {
+				break;
+			}
+			for (AgentEvent agent : bucket(node)) {
+				int step = agent.stepAt(resource);
+				Road agentRoad = agent.roadAt(step);
+				if (agentRoad.to.pathTableIndex != node) {
+					// The agent is on another road of its committed route.
+					continue;
+				}
+				long travelTimeToEndIntersection = agent.arrivalTimeAt(step) - time;
+				if (agentRoad == pickupRoad && pickupRoad.travelTime - travelTimeToEndIntersection <= pickupOffset) {
+					// Considered above.
+					continue;
+				}
+				best.offer(agent, arrivalFromNode + travelTimeToEndIntersection);
+			}
+		}
+		return best.earliest <= deadline ? best.agent : null;
+	}
+}
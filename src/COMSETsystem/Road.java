@@ -1,6 +1,8 @@
 package COMSETsystem;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /*
  * The Road class defines a directed road segment between two intersections.
@@ -10,58 +12,62 @@ import java.util.ArrayList;
 public class Road implements Comparable<Road> {
 
 	// The start (upstream) intersection of the road
-	public Intersection from;
+	public final Intersection from;
 	// The end (downstream) intersection of the road
-	public Intersection to;
+	public final Intersection to;
 	// length of the road segment in meters
-	public double length;
+	public final double length;
 	// travel time of the road segment in seconds
-	public long travelTime;
+	public final long travelTime;
 	// a unique id
-	public long id;
+	public final long id;
+
+	// the index of the road in CityMap.roads; set by CityMap, see index()
+	int index = -1;
 
 	// an ID counter to get a unique id
 	private static long maxId = 0;
 	
-	// links that constitute the road
-	public ArrayList<Link> links;
+	// links that constitute the road, read-only
+	public final List<Link> links;
 
-    /**
-     * Constructing an "empty" road object.
-     */
-	public Road() {
-		this.id = maxId++;
-		this.length = 0;
-		this.travelTime = 0;
-		links = new ArrayList<>();
-	}
-	
 	/**
-	 * Creating a copy of a road
-	 * @param road the road to copy
+	 * Constructing a road from its links. The road is not connected to its intersections yet,
+	 * see connect().
 	 * @param from the start intersection
 	 * @param to the end intersection
-	 * @param links a list of links
+	 * @param links the links that constitute the road, from the start to the end intersection
 	 */
-	public Road(Road road, Intersection from, Intersection to, ArrayList<Link> links) {
-		this.id = road.id;
-		this.length = road.length;
-		this.travelTime = road.travelTime;
+	Road(Intersection from, Intersection to, List<Link> links) {
+		this.id = maxId++;
 		this.from = from;
-		this.to= to;
-		this.links = links;
+		this.to = to;
+		double length = 0;
+		long travelTime = 0;
+		for (Link link : links) {
+			link.setRoad(this, travelTime);
+			length += link.length;
+			travelTime += link.travelTime;
+		}
+		this.length = length;
+		this.travelTime = travelTime;
+		this.links = Collections.unmodifiableList(new ArrayList<>(links));
 	}
-	
+
+	/**
+	 * @return the index of the road in CityMap.roads
+	 */
+	public int index() {
+		return index;
+	}
+
 	/**
-	 * Add a link to the road
-	 * @param link
+	 * Add the road to the outgoing roads of its start intersection and to the incoming roads
+	 * of its end intersection.
 	 */
-	public void addLink(Link link) {
-		links.add(link);
-		link.road = this;
-		link.beginTime = this.travelTime;
-		this.length += link.length;
-		this.travelTime += link.travelTime;
+	void connect() {
+		from.roadsMapFrom.put(to, this);
+		to.roadsMapTo.put(from, this);
 	}
 
 	/**
@@ -0,0 +1,220 @@
+package COMSETsystem;
+
+import java.util.Collection;
+
+/**
+ * The RoadGraph is a frozen, int-indexed view of the road network of a CityMap in compressed
+ * sparse row (CSR) form, meant for graph algorithms that would otherwise walk the TreeMaps of
+ * the intersections.
+ *
+ * Nodes are identified by the pathTableIndex of the intersections, edges by an index
+ * 0..edgeCount()-1. The edges leaving node u are firstEdge(u) .. firstEdge(u+1)-1, ordered by
+ * road id, i.e., in the same order as Intersection.getRoadsFrom(). For every edge the graph
+ * holds the target node, the travel time and the id of the road, so a typical loop is
+ *
+ * <pre>
+ * for (int e = graph.firstEdge(u); e &lt; graph.firstEdge(u + 1); e++) {
+ *     relax(graph.target(e), graph.travelTime(e));
+ * }
+ * </pre>
+ *
+ * which does not allocate. The graph is built once per map and never changes afterwards.
+ */
+public final class RoadGraph {
+
+	// The intersections by node.
+	private final Intersection[] intersections;
+
+	// The edges leaving node u are offsets[u] .. offsets[u+1]-1.
+	private final int[] offsets;
+
+	// The target node of each edge.
+	private final int[] targets;
+
+	// The source node of each edge.
+	private final int[] sources;
+
+	// The travel time of each edge in seconds.
+	private final long[] travelTimes;
+
+	// The road id of each edge.
+	private final long[] roadIds;
+
+	// The road of each edge.
+	private final Road[] roads;
+
+	// The graph with all edges reversed, created on demand. See reverse().
+	private RoadGraph reverse;
+
+	/**
+	 * Build the graph of a set of intersections. Every intersection must have a unique
+	 * pathTableIndex in 0..intersections.size()-1.
+	 *
+	 * @param intersections the intersections of the map
+	 */
+	RoadGraph(Collection<Intersection> intersections) {
+		int size = intersections.size();
+		this.intersections = new Intersection[size];
+		int edgeCount = 0;
+		for (Intersection intersection : intersections) {
+			this.intersections[intersection.pathTableIndex] = intersection;
+			edgeCount += intersection.roadsMapFrom.size();
+		}
+		offsets = new int[size + 1];
+		targets = new int[edgeCount];
+		sources = new int[edgeCount];
+		travelTimes = new long[edgeCount];
+		roadIds = new long[edgeCount];
+		roads = new Road[edgeCount];
+		int edge = 0;
+		for (int node = 0; node < size; node++) {
+			offsets[node] = edge;
+			for (Road road : this.intersections[node].getRoadsFrom()) {
+				targets[edge] = road.to.pathTableIndex;
+				sources[edge] = node;
+				travelTimes[edge] = road.travelTime;
+				roadIds[edge] = road.id;
+				roads[edge] = road;
+				edge++;
+			}
+		}
+		offsets[size] = edge;
+	}
+
+	/**
+	 * Build the reverse of a graph. The edges entering node v in the given graph leave v in
+	 * the reverse graph, ordered by road id.
+	 */
+	private RoadGraph(RoadGraph forward) {
+		int size = forward.size();
+		int edgeCount = forward.edgeCount();
+		intersections = forward.intersections;
+		offsets = new int[size + 1];
+		targets = new int[edgeCount];
+		sources = new int[edgeCount];
+		travelTimes = new long[edgeCount];
+		roadIds = new long[edgeCount];
+		roads = new Road[edgeCount];
+		int edge = 0;
+		for (int node = 0; node < size; node++) {
+			offsets[node] = edge;
+			for (Road road : intersections[node].getRoadsTo()) {
+				targets[edge] = road.from.pathTableIndex;
+				sources[edge] = node;
+				travelTimes[edge] = road.travelTime;
+				roadIds[edge] = road.id;
+				roads[edge] = road;
+				edge++;
+			}
+		}
+		offsets[size] = edge;
+		reverse = forward;
+	}
+
+	/**
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return intersections.length;
+	}
+
+	/**
+	 * @return the number of edges
+	 */
+	public int edgeCount() {
+		return targets.length;
+	}
+
+	/**
+	 * @param node a node, 0 <= node <= size()
+	 * @return the first edge leaving the node; firstEdge(node + 1) is one past its last edge
+	 */
+	public int firstEdge(int node) {
+		return offsets[node];
+	}
+
+	/**
+	 * @param node a node
+	 * @return the number of edges leaving the node
+	 */
+	public int degree(int node) {
+		return offsets[node + 1] - offsets[node];
+	}
+
+	/**
+	 * @param edge an edge
+	 * @return the node the edge leads to
+	 */
+	public int target(int edge) {
+		return targets[edge];
+	}
+
+	/**
+	 * @param edge an edge
+	 * @return the node the edge leaves
+	 */
+	public int source(int edge) {
+		return sources[edge];
+	}
+
+	/**
+	 * @param edge an edge
+	 * @return the travel time of the edge in seconds
+	 */
+	public long travelTime(int edge) {
+		return travelTimes[edge];
+	}
+
+	/**
+	 * @param edge an edge
+	 * @return the id of the road of the edge
+	 */
+	public long roadId(int edge) {
+		return roadIds[edge];
+	}
+
+	/**
+	 * @param edge an edge
+	 * @return the road of the edge
+	 */
+	public Road road(int edge) {
+		return roads[edge];
+	}
+
+	/**
+	 * @param node a node
+	 * @return the intersection of the node
+	 */
+	public Intersection intersection(int node) {
+		return intersections[node];
+	}
+
+	/**
+	 * Find the edge leaving a node towards another node.
+	 *
+	 * @param from the node the edge leaves
+	 * @param to the node the edge leads to
+	 * @return the edge, or -1 if there is no such edge
+	 */
+	public int edge(int from, int to) {
+		for (int e = offsets[from]; e < offsets[from + 1]; e++) {
+			if (targets[e] == to) {
+				return e;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the graph with all edges reversed, e.g., for searches towards a destination. The
+	 * reverse graph has the same nodes; its edge indices differ from those of this graph.
+	 *
+	 * @return the reverse graph
+	 */
+	public synchronized RoadGraph reverse() {
+		if (reverse == null) {
+			reverse = new RoadGraph(this);
+		}
+		return reverse;
+	}
+}
@@ -0,0 +1,118 @@
+package COMSETsystem;
+
+/**
+ * A RouteCursor follows a shortest travel time route on a map one intersection at a time,
+ * e.g., to feed BaseAgent.nextIntersection:
+ *
+ * <pre>
+ * cursor.reset(currentLocation.road.to, destination);
+ * ...
+ * if (cursor.hasNext()) {
+ *     return cursor.next();
+ * }
+ * </pre>
+ *
+ * The route is the one returned by CityMap.shortestTravelTimePath without its first
+ * intersection. With a NextHopTable backend (the path table in either encoding) the cursor
+ * asks the table for the next hop on every step, so neither reset nor next allocates and each
+ * step takes constant time. With other backends the route is computed once by reset.
+ *
+ * A cursor is created with CityMap.routeCursor() and can be reused for any number of routes.
+ * It is not thread-safe.
+ */
+public final class RouteCursor {
+
+	// The map whose routes are followed.
+	private final CityMap map;
+
+	// The path table index of the intersection the cursor is at, or -1 if there is no route.
+	private int current = -1;
+
+	// The path table index of the destination of the route.
+	private int destination = -1;
+
+	// The route computed by reset for backends without next hops, or null.
+	private int[] path;
+
+	// The position of current in path.
+	private int position;
+
+	// The number of steps taken on the route.
+	private int steps;
+
+	RouteCursor(CityMap map) {
+		this.map = map;
+	}
+
+	/**
+	 * Start following the shortest travel time route between two intersections.
+	 *
+	 * @param from the intersection to start from; not returned by next
+	 * @param to the destination, returned by the last call of next
+	 * @throws IllegalArgumentException if the destination cannot be reached
+	 */
+	public void reset(Intersection from, Intersection to) {
+		current = from.pathTableIndex;
+		destination = to.pathTableIndex;
+		steps = 0;
+		RoutingBackend backend = map.routingBackend();
+		if (backend instanceof NextHopTable) {
+			path = null;
+			if (current != destination && ((NextHopTable) backend).nextHop(current, destination) < 0) {
+				clear();
+				throw new IllegalArgumentException("Intersection " + to.id + " cannot be reached from intersection " + from.id);
+			}
+		} else {
+			path = backend.path(current, destination);
+			position = 0;
+			if (path == null) {
+				clear();
+				throw new IllegalArgumentException("Intersection " + to.id + " cannot be reached from intersection " + from.id);
+			}
+		}
+	}
+
+	/**
+	 * Drop the current route.
+	 */
+	public void clear() {
+		current = -1;
+		destination = -1;
+		path = null;
+	}
+
+	/**
+	 * @return true if the destination of the route has not been reached yet
+	 */
+	public boolean hasNext() {
+		return current != destination;
+	}
+
+	/**
+	 * Move to the next intersection of the route.
+	 *
+	 * @return the next intersection
+	 * @throws IllegalStateException if the destination has been reached already
+	 */
+	public Intersection next() {
+		if (!hasNext()) {
+			throw new IllegalStateException("The route has no more intersections.");
+		}
+		if (path != null) {
+			current = path[++position];
+		} else {
+			if (++steps > map.intersections().size()) {
+				throw new IllegalStateException("The next hops towards " + destination + " contain a cycle.");
+			}
+			current = ((NextHopTable) map.routingBackend()).nextHop(current, destination);
+		}
+		return map.intersectionByPathTableIndex(current);
+	}
+
+	/**
+	 * @return the destination of the current route, or null if there is no route
+	 */
+	public Intersection destination() {
+		return destination < 0 ? null : map.intersectionByPathTableIndex(destination);
+	}
+}
@@ -0,0 +1,38 @@
+package COMSETsystem;
+
+/**
+ * A RoutingBackend answers shortest travel time queries between intersections of a map for
+ * CityMap.travelTimeBetween and CityMap.shortestTravelTimePath. Intersections are identified
+ * by their pathTableIndex.
+ *
+ * Backends differ in how much they precompute:
+ * <ul>
+ * <li>PathTable precomputes all pairs. A query is a single array access, but the table takes
+ * 8 * n^2 bytes for n intersections.</li>
+ * <li>LandmarkRouter precomputes travel times to and from a few landmarks (8 * k * n bytes for k
+ * landmarks) and answers every query with an A* search guided by them.</li>
+ * </ul>
+ *
+ * A backend must be safe to query from several threads at once.
+ */
+public interface RoutingBackend {
+
+	/**
+	 * Get the shortest travel time between two intersections.
+	 *
+	 * @param source path table index of the source intersection
+	 * @param destination path table index of the destination intersection
+	 * @return the travel time in seconds, or PathTable.UNREACHABLE if there is no path
+	 */
+	long travelTime(int source, int destination);
+
+	/**
+	 * Get a shortest travel time path between two intersections.
+	 *
+	 * @param source path table index of the source intersection
+	 * @param destination path table index of the destination intersection
+	 * @return the path table indices of the intersections on the path, starting with source
+	 * and ending with destination, or null if there is no path
+	 */
+	int[] path(int source, int destination);
+}
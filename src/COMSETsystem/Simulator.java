@@ -2,8 +2,13 @@ package COMSETsystem;
 
 import MapCreation.*;
 
+import java.io.IOException;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import me.tongfei.progressbar.*;
 
 
@@ -13,7 +18,7 @@ import DataParsing.*;
  * The Simulator class defines the major steps of the simulation. It is
  * responsible for loading the map, creating the necessary number of agents,
  * creating a respective AgentEvent for each of them such that they are added
- * to the events PriorityQueue. Furthermore it is also responsible for dealing 
+ * to the events EventQueue. Furthermore it is also responsible for dealing 
  * with the arrival of resources, map matching them to the map, and assigning  
  * them to agents. This produces the score according to the scoring rules.
  * <p>
@@ -21,7 +26,7 @@ import DataParsing.*;
  * corresponds to when something will be empty and thus needs some
  * interaction (triggering). There's an event corresponding to every existent
  * Agent and for every resource that hasn't arrived yet. All of this events are
- * in a PriorityQueue called events which is ordered by their time in an
+ * in an EventQueue called events which is ordered by their time in an
  * increasing way.
  */
 public class Simulator {
@@ -29,19 +34,30 @@ public class Simulator {
 	// The map that everything will happen on.
 	protected CityMap map;
 
-	// A deep copy of map to be passed to agents. 
+	// A read-only view of map to be passed to agents. 
 	// This is a way to make map unmodifiable.
-	protected CityMap mapForAgents;
+	protected CityMapView mapForAgents;
 
 	// The event queue.
-	protected PriorityQueue<Event> events = new PriorityQueue<>();
+	protected EventQueue events = new IndexedEventHeap();
 
-	// The set of empty agents.
-	protected TreeSet<AgentEvent> emptyAgents = new TreeSet<>(new AgentEventComparator());
+	// The state of the agents in parallel arrays by agent index.
+	final AgentStateStore agentStates = new AgentStateStore();
+
+	// The set of empty agents, in id order; a read-only view of the empty agents of agentStates.
+	// Agents are labeled as empty or occupied through addEmptyAgent and removeEmptyAgent only, which
+	// keep emptyAgentIndex in sync.
+	protected final Set<AgentEvent> emptyAgents = Collections.unmodifiableSet(agentStates.emptyAgents());
+
+	// The index of the empty agents, or null to scan all of them. See setDispatchMode.
+	EmptyAgentIndex emptyAgentIndex;
 
 	// The set of resources that with no agent assigned to it yet.
 	protected TreeSet<ResourceEvent> waitingResources = new TreeSet<>(new ResourceEventComparator());
 
+	// The index of the waiting resources, or null to scan all of them. See setDispatchMode.
+	WaitingResourceGrid waitingResourceGrid;
+
 	// The maximum life time of a resource in seconds. This is a parameter of the simulator. 
 	public long ResourceMaximumLifeTime; 
 
@@ -55,6 +71,61 @@ public class Simulator {
 	// Full path to a KML defining the bounding polygon to crop the map
 	protected String boundingPolygonKMLFile;
 
+	// Directory where the path table of the map is cached between runs; null disables the cache.
+	protected String cacheDirectory = null;
+
+	// The number of threads used to pre-compute the path table; 0 uses all available processors.
+	protected int pathTableParallelism = 1;
+
+	// The number of threads that map-match the resources; 0 uses all available processors.
+	protected int mapMatchingParallelism = 1;
+
+	// Whether agents may commit to routes of several intersections, see BaseAgent.commitRoute.
+	protected boolean routeCommit = true;
+
+	// The smallest number of INTERSECTION_REACHED agent events of the same time that are triggered in parallel.
+	private final static int MINIMUM_PARALLEL_RUN = 16;
+
+	// The number of threads that trigger the INTERSECTION_REACHED agent events of the same time; 1 triggers them one by one.
+	protected int agentEventParallelism = 1;
+
+	// The event queue implementation: "heap" for the IndexedEventHeap, "wheel" for the TimingWheelEventQueue.
+	protected String eventQueue = "heap";
+
+	// How resources and agents find each other: "grid" for the EmptyAgentGrid and the WaitingResourceGrid,
+	// "reverse" for the ReverseSearchIndex and the WaitingResourceGrid, "scan" to scan all.
+	protected String dispatchMode = "grid";
+
+	// The time between two batches of assignments in seconds (see BatchEvent); 0 assigns each
+	// resource and agent when it becomes available or empty.
+	protected long batchWindow = 0;
+
+	// How the resource dataset file is parsed: "mapped" to parse it memory-mapped in place, "scanner" to read it through a Scanner.
+	protected String datasetParser = "mapped";
+
+	// Whether the resources are streamed into the event queue while the simulation runs (see ResourceEventSource),
+	// and how far ahead of the next event in seconds.
+	protected boolean resourceStreaming = false;
+	protected long resourceLookAhead = 600;
+
+	// Whether the resources are loaded from their compiled file in the cache directory (see CompiledResources).
+	protected boolean compiledResources = false;
+
+	// The source of the resource events if they are streamed, or null.
+	ResourceEventSource resourceSource;
+
+	// The encoding of the path table: "int" for the PathTable, "compact" for the CompactPathTable.
+	protected String pathTableEncoding = "int";
+
+	// The routing backend answering shortest travel time queries: "table", "lazy", "alt" or "ch". See RoutingBackend.
+	protected String routingBackend = "table";
+
+	// The number of landmarks of the "alt" routing backend.
+	protected int landmarkCount = 16;
+
+	// The memory budget in megabytes of the row cache of the "lazy" routing backend.
+	protected long lazyPathTableMegabytes = 256;
+
 	// The simulation end time is the expiration time of the last resource.
 	protected long simulationEndTime; 
 
@@ -108,6 +179,238 @@ public class Simulator {
 		this.agentClass = agentClass;
 	}
 
+	/**
+	 * Set the directory where the path table of the map is cached between runs. Must be called
+	 * before configure to take effect. See PathTableCache.
+	 *
+	 * @param cacheDirectory the cache directory, or null to always compute the path table
+	 */
+	public void setCacheDirectory(String cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	/**
+	 * Set the number of threads used to pre-compute the all-pair travel times. Must be called
+	 * before configure to take effect. See CityMap.calcTravelTimes.
+	 *
+	 * @param pathTableParallelism the number of threads; 0 to use all available processors
+	 */
+	public void setPathTableParallelism(int pathTableParallelism) {
+		this.pathTableParallelism = pathTableParallelism;
+	}
+
+	/**
+	 * Set the number of threads that map-match the resources of the dataset file. Must be
+	 * called before configure to take effect. See CityMap.mapMatch.
+	 *
+	 * @param mapMatchingParallelism the number of threads; 0 to use all available processors
+	 */
+	public void setMapMatchingParallelism(int mapMatchingParallelism) {
+		this.mapMatchingParallelism = mapMatchingParallelism;
+	}
+
+	/**
+	 * Set the encoding of the all-pair path table of the "table" routing backend. Must be called
+	 * before configure to take effect. See CompactPathTable.
+	 *
+	 * @param pathTableEncoding "int" for the PathTable, "compact" for the CompactPathTable
+	 */
+	public void setPathTableEncoding(String pathTableEncoding) {
+		this.pathTableEncoding = checkOption("path table encoding", pathTableEncoding, "int", "compact");
+	}
+
+	/**
+	 * Set whether agents may commit to routes of several intersections, see BaseAgent.commitRoute.
+	 * If not, every agent is asked for one intersection at a time. The results are the same.
+	 *
+	 * @param routeCommit whether agents may commit to routes
+	 */
+	public void setRouteCommit(boolean routeCommit) {
+		this.routeCommit = routeCommit;
+	}
+
+	/**
+	 * Set the number of threads that trigger the INTERSECTION_REACHED agent events of the same
+	 * time in parallel. Must be called before run to take effect. The events are triggered in
+	 * parallel only if every agent is thread safe (see BaseAgent.isThreadSafe), so the results
+	 * are the same as with a single thread.
+	 *
+	 * @param agentEventParallelism the number of threads; 1 to trigger all events one by one;
+	 * 0 to use all available processors
+	 */
+	public void setAgentEventParallelism(int agentEventParallelism) {
+		this.agentEventParallelism = agentEventParallelism;
+	}
+
+	/**
+	 * Set the implementation of the event queue. Must be called before configure to take effect.
+	 * Both implementations trigger the events in the same order.
+	 *
+	 * @param eventQueue "heap" for the IndexedEventHeap, "wheel" for the TimingWheelEventQueue
+	 */
+	public void setEventQueue(String eventQueue) {
+		this.eventQueue = checkOption("event queue", eventQueue, "heap", "wheel");
+	}
+
+	/**
+	 * Set how a resource that becomes available finds the empty agent that reaches it the
+	 * earliest, and how an agent that becomes empty finds the waiting resource that it reaches
+	 * the earliest. Must be called before configure to take effect. All make the same assignments.
+	 *
+	 * @param dispatchMode "grid" to search the EmptyAgentGrid and the WaitingResourceGrid,
+	 * "reverse" to search the ReverseSearchIndex and the WaitingResourceGrid, "scan" to compute
+	 * the travel time of every empty agent or waiting resource
+	 */
+	public void setDispatchMode(String dispatchMode) {
+		this.dispatchMode = checkOption("dispatch mode", dispatchMode, "grid", "reverse", "scan");
+	}
+
+	/**
+	 * Set the time between two batches of assignments. With a window of 0, a resource that
+	 * becomes available is assigned to the empty agent that reaches it the earliest, and an
+	 * agent that becomes empty to the waiting resource that it reaches the earliest, one by one.
+	 * With a larger window, resources wait and agents cruise until the end of the window, when
+	 * the waiting resources are assigned to the empty agents together so that the total
+	 * approach time is the least (see BatchEvent). Must be called before configure to take effect.
+	 *
+	 * @param batchWindow the time between two batches in seconds, or 0
+	 */
+	public void setBatchWindow(long batchWindow) {
+		if (batchWindow < 0) {
+			throw new IllegalArgumentException("Invalid batch window " + batchWindow + "; must not be negative.");
+		}
+		this.batchWindow = batchWindow;
+	}
+
+	/**
+	 * Set how the resource dataset file is parsed. Must be called before configure to take
+	 * effect. Both give the same resources.
+	 *
+	 * @param datasetParser "mapped" to memory-map the file and parse it in place, "scanner" to
+	 * read it through a Scanner
+	 */
+	public void setDatasetParser(String datasetParser) {
+		this.datasetParser = checkOption("dataset parser", datasetParser, "mapped", "scanner");
+	}
+
+	/**
+	 * Set whether the resources are streamed into the event queue while the simulation runs,
+	 * instead of being map-matched and added to the event queue all before it starts, so that the
+	 * memory used depends on the simulated window rather than on the size of the dataset file.
+	 * The dataset file must then be sorted by time, except for resources that are out of order
+	 * by less than the look-ahead. Both give the same results. Must be called before configure
+	 * to take effect.
+	 *
+	 * @param resourceStreaming true to stream the resources
+	 * @param resourceLookAhead the time in seconds after the next event up to which resources are read
+	 */
+	public void setResourceStreaming(boolean resourceStreaming, long resourceLookAhead) {
+		if (resourceLookAhead < 0) {
+			throw new IllegalArgumentException("Invalid resource look-ahead " + resourceLookAhead + "; must not be negative.");
+		}
+		this.resourceStreaming = resourceStreaming;
+		this.resourceLookAhead = resourceLookAhead;
+	}
+
+	/**
+	 * Set whether the resources are loaded from a compiled file in the cache directory that holds
+	 * them already map-matched, instead of parsing and map-matching the dataset file. The file is
+	 * compiled from the dataset file on the first run, and again when the map or the dataset file
+	 * changes. Both give the same results. Takes effect only with a cache directory (see
+	 * setCacheDirectory); must be called before configure to take effect.
+	 *
+	 * @param compiledResources true to load the compiled resources
+	 */
+	public void setCompiledResources(boolean compiledResources) {
+		this.compiledResources = compiledResources;
+	}
+
+	/**
+	 * Set the routing backend answering shortest travel time queries. Must be called before
+	 * configure to take effect.
+	 *
+	 * @param routingBackend "table" for the all-pair PathTable, "lazy" for the LazyPathTable,
+	 * "alt" for the LandmarkRouter, "ch" for the ContractionHierarchy
+	 * @param landmarkCount the number of landmarks of the LandmarkRouter
+	 */
+	public void setRoutingBackend(String routingBackend, int landmarkCount) {
+		this.routingBackend = checkOption("routing backend", routingBackend, "table", "lazy", "alt", "ch");
+		this.landmarkCount = landmarkCount;
+	}
+
+	/**
+	 * Set the memory budget of the row cache of the "lazy" routing backend. Must be called
+	 * before configure to take effect. See LazyPathTable.
+	 *
+	 * @param lazyPathTableMegabytes the memory budget in megabytes
+	 */
+	public void setLazyPathTableMegabytes(long lazyPathTableMegabytes) {
+		this.lazyPathTableMegabytes = lazyPathTableMegabytes;
+	}
+
+	/**
+	 * Set the optional settings of the simulator from the properties of a configuration file
+	 * (see etc/config.properties). A setting whose property is missing keeps its value. Must be
+	 * called before configure to take effect.
+	 *
+	 * @param properties the properties of the configuration file
+	 * @throws IllegalArgumentException if a property has an invalid value
+	 */
+	public void setOptions(Properties properties) {
+		String cacheDirectoryArg = properties.getProperty("comset.cache_directory");
+		if (cacheDirectoryArg != null) {
+			setCacheDirectory(cacheDirectoryArg.trim().isEmpty() ? null : cacheDirectoryArg.trim());
+		}
+		setPathTableParallelism(Integer.parseInt(property(properties, "comset.path_table_parallelism", pathTableParallelism)));
+		setMapMatchingParallelism(Integer.parseInt(property(properties, "comset.map_matching_parallelism", mapMatchingParallelism)));
+		setPathTableEncoding(property(properties, "comset.path_table_encoding", pathTableEncoding));
+		setEventQueue(property(properties, "comset.event_queue", eventQueue));
+		setAgentEventParallelism(Integer.parseInt(property(properties, "comset.agent_event_parallelism", agentEventParallelism)));
+		setRouteCommit(booleanProperty(properties, "route commit", "comset.route_commit", routeCommit));
+		setDispatchMode(property(properties, "comset.dispatch_mode", dispatchMode));
+		setBatchWindow(Long.parseLong(property(properties, "comset.batch_window", batchWindow)));
+		setDatasetParser(property(properties, "comset.dataset_parser", datasetParser));
+		setResourceStreaming(booleanProperty(properties, "resource streaming", "comset.resource_streaming", resourceStreaming),
+				Long.parseLong(property(properties, "comset.resource_look_ahead", resourceLookAhead)));
+		setCompiledResources(booleanProperty(properties, "compiled resources", "comset.compiled_resources", compiledResources));
+		if (compiledResources && cacheDirectory == null) {
+			throw new IllegalArgumentException("comset.compiled_resources requires comset.cache_directory.");
+		}
+		setRoutingBackend(property(properties, "comset.routing_backend", routingBackend),
+				Integer.parseInt(property(properties, "comset.alt_landmarks", landmarkCount)));
+		setLazyPathTableMegabytes(Long.parseLong(property(properties, "comset.lazy_path_table_megabytes", lazyPathTableMegabytes)));
+	}
+
+	/**
+	 * @return the trimmed value of a property, or the given default value if it is missing
+	 */
+	private static String property(Properties properties, String name, Object defaultValue) {
+		String value = properties.getProperty(name);
+		return value != null ? value.trim() : String.valueOf(defaultValue);
+	}
+
+	/**
+	 * @return the value of a boolean property, or the given default value if it is missing
+	 * @throws IllegalArgumentException if the value is neither true nor false
+	 */
+	private static boolean booleanProperty(Properties properties, String setting, String name, boolean defaultValue) {
+		return Boolean.parseBoolean(checkOption(setting, property(properties, name, defaultValue), "true", "false"));
+	}
+
+	/**
+	 * Check that the value of a setting is one of its valid values.
+	 *
+	 * @return the value
+	 * @throws IllegalArgumentException if the value is not valid
+	 */
+	private static String checkOption(String setting, String value, String... validValues) {
+		if (!Arrays.asList(validValues).contains(value)) {
+			throw new IllegalArgumentException("Unknown " + setting + " " + value + "; must be one of "
+					+ String.join(", ", validValues) + ".");
+		}
+		return value;
+	}
+
 	/**
 	 * Configure the simulation system including:
 	 * 
@@ -137,7 +440,7 @@ public class Simulator {
 
 		this.resourceFile = resourceFile;
 
-		MapCreator creator = new MapCreator(this.mapJSONFile, this.boundingPolygonKMLFile, speedReduction);
+		MapCreator creator = new MapCreator(new MapBuilder(), this.mapJSONFile, this.boundingPolygonKMLFile, speedReduction);
 		System.out.println("Creating the map...");
 
 		creator.createMap();
@@ -145,22 +448,89 @@ public class Simulator {
 		// Output the map
 		map = creator.outputCityMap();
 
-		// Pre-compute shortest travel times between all pairs of intersections.
-		System.out.println("Pre-computing all pair travel times...");
-		map.calcTravelTimes();
+		PathTableCache cache = null;
+		if (cacheDirectory != null) {
+			try {
+				cache = new PathTableCache(cacheDirectory, this.mapJSONFile, this.boundingPolygonKMLFile, speedReduction);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		if (routingBackend.equals("lazy")) {
+			// Shortest travel times are computed per source when the source is first queried.
+			map.setRoutingBackend(new LazyPathTable(map.graph(), lazyPathTableMegabytes));
+		} else if (routingBackend.equals("alt")) {
+			// Pre-compute travel times to and from the landmarks; other travel times are computed on demand.
+			System.out.println("Pre-computing landmark travel times...");
+			map.setRoutingBackend(new LandmarkRouter(map.graph(), landmarkCount));
+		} else if (routingBackend.equals("ch")) {
+			System.out.println("Contracting the map...");
+			map.setRoutingBackend(ContractionHierarchy.loadOrBuild(map.graph(), cache));
+		} else {
+			// Pre-compute shortest travel times between all pairs of intersections.
+			System.out.println("Pre-computing all pair travel times...");
+			boolean compact = pathTableEncoding.equals("compact");
+			if (cache != null) {
+				map.loadOrCalcTravelTimes(cache, pathTableParallelism, compact);
+			} else {
+				map.calcTravelTimes(pathTableParallelism, compact);
+			}
+		}
 
-		// Make a map copy for agents to use so that an agent cannot modify the map used by
-		// the simulator
-		mapForAgents = map.makeCopy();
+		// Give agents a read-only view of the map so that an agent cannot modify the map used
+		// by the simulator
+		mapForAgents = new CityMapView(map);
 
-		MapWithData mapWD = new MapWithData(map, this.resourceFile, agentPlacementRandomSeed);
+		// Batches compute the travel times of all pairs, so they need no index.
+		if (batchWindow == 0 && !dispatchMode.equals("scan")) {
+			MapGrid grid = new MapGrid(map);
+			emptyAgentIndex = dispatchMode.equals("reverse") ? new ReverseSearchIndex(map) : new EmptyAgentGrid(grid);
+			waitingResourceGrid = new WaitingResourceGrid(grid, map);
+		}
 
-		// map match resources
-		System.out.println("Loading and map-matching resources...");
-		long latestResourceTime = mapWD.createMapWithData(this);
+		MapWithData mapWD = new MapWithData(map, this.resourceFile, agentPlacementRandomSeed);
+		mapWD.setMappedParser(datasetParser.equals("mapped"));
+		mapWD.setMapMatchingParallelism(mapMatchingParallelism);
+
+		CompiledResources compiled = null;
+		if (compiledResources && cache == null) {
+			System.out.println("Warning: compiled resources need a cache directory; parsing the dataset file instead.");
+		} else if (compiledResources) {
+			try {
+				compiled = CompiledResources.loadOrCompile(cache, mapWD, this.resourceFile, map);
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.out.println("Warning: could not load the compiled resources; parsing the dataset file instead.");
+			}
+		}
 
-		// The simulation end time is the expiration time of the last resource.
-		this.simulationEndTime = latestResourceTime;
+		if (resourceStreaming) {
+			// Resources are added while the simulation runs; the simulation end time grows as they are.
+			this.simulationEndTime = -1;
+			if (compiled != null) {
+				resourceSource = new ResourceEventSource(this, compiled, resourceLookAhead);
+				mapWD.earliestResourceTime = resourceSource.earliestTime();
+			} else {
+				System.out.println("Counting resources...");
+				try {
+					resourceSource = new ResourceEventSource(this, mapWD, mapWD.parser(), resourceLookAhead);
+					mapWD.earliestResourceTime = resourceSource.earliestTime();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		} else if (compiled != null) {
+			System.out.println("Loading compiled resources...");
+			this.simulationEndTime = compiled.createEvents(this, mapWD);
+		} else {
+			// map match resources
+			System.out.println("Loading and map-matching resources...");
+			long latestResourceTime = mapWD.createMapWithData(this);
+
+			// The simulation end time is the expiration time of the last resource.
+			this.simulationEndTime = latestResourceTime;
+		}
 
 		// Deploy agents at random locations of the map.
 		System.out.println("Randomly placing " + this.totalAgents + " agents on the map...");
@@ -168,6 +538,17 @@ public class Simulator {
 
 		// Initialize the event queue.
 		events = mapWD.getEvents();
+		if (eventQueue.equals("wheel")) {
+			// Fill the wheel in time order so that it starts at the earliest event.
+			EventQueue wheel = new TimingWheelEventQueue();
+			while (!events.isEmpty()) {
+				wheel.add(events.poll());
+			}
+			events = wheel;
+		}
+		if (batchWindow > 0) {
+			events.add(new BatchEvent(events.peek().time + batchWindow, this, batchWindow));
+		}
 	}
 
 	/**
@@ -184,11 +565,22 @@ public class Simulator {
 		if (map == null) {
 			System.out.println("map is null at beginning of run");
 		}
+		int parallelism = agentEventParallelism > 0 ? agentEventParallelism : Runtime.getRuntime().availableProcessors();
+		if (parallelism > 1 && !agents.stream().allMatch(BaseAgent::isThreadSafe)) {
+			System.out.println("The agents are not thread safe; triggering the agent events one by one.");
+			parallelism = 1;
+		}
+		ExecutorService executor = parallelism > 1 ? Executors.newFixedThreadPool(parallelism) : null;
 		try (ProgressBar pb = new ProgressBar("Progress:", 100, ProgressBarStyle.ASCII)) {
 			long beginTime = events.peek().time;
-			while (events.peek().time <= simulationEndTime) {
+			while (hasNextEvent()) {
 				Event toTrigger = events.poll();
 				pb.stepTo((long)(((float)(toTrigger.time - beginTime)) / (simulationEndTime - beginTime) * 100.0));
+				if (executor != null && isIntersectionReached(toTrigger) && isIntersectionReached(events.peek())
+						&& events.peek().time == toTrigger.time) {
+					triggerInParallel(toTrigger, executor, parallelism);
+					continue;
+				}
 				Event e = toTrigger.trigger();
 				if (e != null) { 
 					events.add(e);
@@ -196,6 +588,10 @@ public class Simulator {
 			}
 		} catch (Exception e) {
 			e.printStackTrace();
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
 		}
 
 		System.out.println("Simulation finished.");
@@ -203,6 +599,94 @@ public class Simulator {
 		score.end();
 	}
 
+	/**
+	 * Check whether the simulation goes on, i.e., the next event is not after the simulation end
+	 * time. Streamed resources up to the look-ahead after the next event are added to the event
+	 * queue first, so that the next event in the queue is the next event to be triggered. While
+	 * there are resources left to stream, the simulation goes on: they are after the next event,
+	 * and the simulation ends after them.
+	 *
+	 * @return true if the next event in the event queue is to be triggered
+	 */
+	private boolean hasNextEvent() throws IOException {
+		if (resourceSource != null) {
+			resourceSource.fill(events, events.peek().time);
+			if (resourceSource.hasMore()) {
+				return true;
+			}
+		}
+		return events.peek().time <= simulationEndTime;
+	}
+
+	/**
+	 * @return true if the event is an agent event triggered because the agent reached an intersection
+	 */
+	private static boolean isIntersectionReached(Event event) {
+		return event instanceof AgentEvent && ((AgentEvent) event).eventCause == AgentEvent.INTERSECTION_REACHED;
+	}
+
+	/**
+	 * Trigger a run of INTERSECTION_REACHED agent events of the same time in parallel: the given
+	 * event and all events following it in the queue up to the first event of another time or
+	 * kind. Triggering such an event only asks its agent where to go next and moves the agent
+	 * there, so the events of a run do not affect each other, and no other event is
+	 * triggered in between when they are triggered one by one. The triggered events are then
+	 * added back to the queue in id order, i.e., the order in which they were taken, and if
+	 * triggering fails, the events before the first failing one are added back and its exception
+	 * is thrown, as when triggering them one by one.
+	 *
+	 * @param first the first event of the run, taken from the queue
+	 * @param executor the threads to trigger the events with
+	 * @param parallelism the number of threads of the executor
+	 * @throws Exception the exception of the first event whose triggering failed
+	 */
+	private void triggerInParallel(Event first, ExecutorService executor, int parallelism) throws Exception {
+		List<Event> run = new ArrayList<>();
+		run.add(first);
+		while (isIntersectionReached(events.peek()) && events.peek().time == first.time) {
+			run.add(events.poll());
+		}
+		if (run.size() < MINIMUM_PARALLEL_RUN) {
+			// Not worth handing to the threads.
+			for (Event event : run) {
+				Event e = event.trigger();
+				if (e != null) {
+					events.add(e);
+				}
+			}
+			return;
+		}
+		Event[] results = new Event[run.size()];
+		Exception[] failures = new Exception[run.size()];
+		int chunkSize = (run.size() + parallelism - 1) / parallelism;
+		List<Callable<Void>> chunks = new ArrayList<>();
+		for (int start = 0; start < run.size(); start += chunkSize) {
+			int from = start;
+			int to = Math.min(run.size(), start + chunkSize);
+			chunks.add(() -> {
+				for (int i = from; i < to; i++) {
+					try {
+						results[i] = run.get(i).trigger();
+					} catch (Exception e) {
+						failures[i] = e;
+					}
+				}
+				return null;
+			});
+		}
+		for (Future<Void> chunk : executor.invokeAll(chunks)) {
+			chunk.get();
+		}
+		for (int i = 0; i < run.size(); i++) {
+			if (failures[i] != null) {
+				throw failures[i];
+			}
+			if (results[i] != null) {
+				events.add(results[i]);
+			}
+		}
+	}
+
 	/**
 	 * This class is used to give a performance report and the score. It prints
 	 * the total running time of the simulation, the used memory and the score.
@@ -284,6 +768,7 @@ public class Simulator {
 			System.out.println("Number of resources: " + totalResources);
 			System.out.println("Resource Maximum Life Time: " + ResourceMaximumLifeTime + " seconds");
 			System.out.println("Agent class: " + agentClass.getName());
+			System.out.println("Routing backend: " + routingBackend);
 
 			System.out.println("\n***Statistics***");
 		
@@ -293,7 +778,7 @@ public class Simulator {
 				// searching until the end of the simulation should be counted toward the total search time.
 				long totalRemainTime = 0;
 				for (AgentEvent ae: emptyAgents) {
-					totalRemainTime += (simulationEndTime - ae.startSearchTime); 
+					totalRemainTime += (simulationEndTime - ae.startSearchTime()); 
 				}
 
 				sb.append("average agent search time: " + Math.floorDiv(totalAgentSearchTime + totalRemainTime, (totalAssignments + emptyAgents.size())) + " seconds \n");
@@ -304,6 +789,12 @@ public class Simulator {
 				sb.append("average agent approach time: " + Math.floorDiv(totalAgentApproachTime, totalAssignments) + " seconds \n");
 				sb.append("average resource trip time: " + Math.floorDiv(totalResourceTripTime, totalAssignments) + " seconds \n");
 				sb.append("total number of assignments: " + totalAssignments + "\n");
+				if (map.routingBackend() instanceof LazyPathTable) {
+					LazyPathTable lazy = (LazyPathTable) map.routingBackend();
+					sb.append("\n");
+					sb.append("path table row cache hits: " + lazy.hits() + "\n");
+					sb.append("path table row cache misses: " + lazy.misses() + " (capacity " + lazy.capacity() + " rows)\n");
+				}
 			} else {
 				sb.append("No resources.\n");
 			}
@@ -312,30 +803,6 @@ public class Simulator {
 		}
 	}
 
-	/**
-	 * Compares agent events
-	 */
-	class AgentEventComparator implements Comparator<AgentEvent> {
-
-		/**
-		 * Checks if two agentEvents are the same by checking their ids.
-		 * 
-		 * @param a1 The first agent event
-		 * @param a2 The second agent event
-		 * @return returns 0 if the two agent events are the same, 1 if the id of
-		 * the first agent event is bigger than the id of the second agent event,
-		 * -1 otherwise
-		 */
-		public int compare(AgentEvent a1, AgentEvent a2) {
-			if (a1.id == a2.id)
-				return 0;
-			else if (a1.id > a2.id)
-				return 1;
-			else
-				return -1;
-		}
-	}
-
 	/**
 	 * Compares resource events
 	 */
@@ -380,9 +847,9 @@ public class Simulator {
 	/**
 	 * Sets the events of the simulation.
 	 * 
-	 * @param events The PriorityQueue of events
+	 * @param events The EventQueue of events
 	 */
-	public void setEvents(PriorityQueue<Event> events) {
+	public void setEvents(EventQueue events) {
 		this.events = events;
 	}
 
@@ -391,39 +858,84 @@ public class Simulator {
 	 * 
 	 * @return {@code events }
 	 */
-	public PriorityQueue<Event> getEvents() {
+	public EventQueue getEvents() {
 		return events;
 	}
 
 	/**
 	 * Gets the empty agents in the simulation
 	 * 
-	 * @return {@code emptyAgents }
+	 * @return {@code emptyAgents }, a read-only view; see setEmptyAgents, addEmptyAgent and removeEmptyAgent
 	 */
-	public TreeSet<AgentEvent> getEmptyAgents() {
+	public Set<AgentEvent> getEmptyAgents() {
 		return emptyAgents;
 	}
 
 	/**
 	 * Sets the empty agents in the simulation
 	 * 
-	 * @param emptyAgents The TreeSet of agent events to set.
+	 * @param emptyAgents The agent events of the agents to label as empty; all other agents are labeled as occupied.
 	 */
-	public void setEmptyAgents(TreeSet<AgentEvent> emptyAgents) {
-		this.emptyAgents = emptyAgents;
+	public void setEmptyAgents(Collection<AgentEvent> emptyAgents) {
+		// Copy first: the collection may be a view of the empty agents, e.g., getEmptyAgents().
+		List<AgentEvent> agents = new ArrayList<>(emptyAgents);
+		agentStates.clearEmpty();
+		for (AgentEvent agent : agents) {
+			agentStates.setEmpty(agent.index, true);
+		}
+		if (emptyAgentIndex != null) {
+			emptyAgentIndex.clear();
+			for (AgentEvent agent : agents) {
+				emptyAgentIndex.add(agent);
+			}
+		}
 	}
 
 	/**
-	 * Make an agent copy of locationOnRoad so that an agent cannot modify the attributes of the road.
+	 * "Label" an agent as empty, i.e., add it to the empty agents.
 	 * 
-	 * @param locationOnRoad the location to make a copy for
-	 * @return an agent copy of the location 
-	 */
-	public LocationOnRoad agentCopy(LocationOnRoad locationOnRoad) {
-		Intersection from = mapForAgents.intersections().get(locationOnRoad.road.from.id);
-		Intersection to = mapForAgents.intersections().get(locationOnRoad.road.to.id);
-		Road roadAgentCopy = from.roadsMapFrom.get(to);
-		LocationOnRoad locationOnRoadAgentCopy = new LocationOnRoad(roadAgentCopy, locationOnRoad.travelTimeFromStartIntersection);
-		return locationOnRoadAgentCopy;
+	 * @param agent the agent event of the agent
+	 */
+	void addEmptyAgent(AgentEvent agent) {
+		agentStates.setEmpty(agent.index, true);
+		if (emptyAgentIndex != null) {
+			emptyAgentIndex.add(agent);
+		}
+	}
+
+	/**
+	 * "Label" an agent as occupied, i.e., remove it from the empty agents.
+	 * 
+	 * @param agent the agent event of the agent
+	 */
+	void removeEmptyAgent(AgentEvent agent) {
+		agentStates.setEmpty(agent.index, false);
+		if (emptyAgentIndex != null) {
+			emptyAgentIndex.remove(agent);
+		}
+	}
+
+	/**
+	 * Add a resource to the waiting resources, i.e., the resources with no agent assigned yet.
+	 * 
+	 * @param resource the resource event of the resource
+	 */
+	void addWaitingResource(ResourceEvent resource) {
+		waitingResources.add(resource);
+		if (waitingResourceGrid != null) {
+			waitingResourceGrid.add(resource);
+		}
+	}
+
+	/**
+	 * Remove a resource from the waiting resources.
+	 * 
+	 * @param resource the resource event of the resource
+	 */
+	void removeWaitingResource(ResourceEvent resource) {
+		waitingResources.remove(resource);
+		if (waitingResourceGrid != null) {
+			waitingResourceGrid.remove(resource);
+		}
 	}
 }
@@ -0,0 +1,258 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+
+/**
+ * The TimingWheelEventQueue is an EventQueue for event times in whole seconds, implemented as a
+ * hierarchical timing wheel. Adding, removing and rescheduling an event take O(1), and taking the
+ * first event takes O(1) amortized, independent of the number of pending events, whereas the
+ * IndexedEventHeap takes O(log n) for each of them.
+ *
+ * The wheel has LEVELS levels of SLOTS slots. The slot of an event at level L is digit L of its
+ * time in base SLOTS, where L is the lowest level such that the time agrees with the current time
+ * of the wheel in all digits above L. Events of level 0 in a slot thus all have the same time.
+ * When the events of the current time are used up, the wheel advances to the next non-empty slot
+ * of level 0, or of the lowest level with one, whose events are then redistributed to the levels
+ * below ("cascading"). An event is cascaded at most once per level. Events at least
+ * SLOTS^LEVELS seconds in the future are kept in a heap until the wheel gets close to them.
+ *
+ * The events of the current time are kept in an IndexedEventHeap, which orders them by id, so
+ * the events are taken in exactly the same (time, id) order as from the IndexedEventHeap alone.
+ * Events must not be added with a time before the time of the last event taken.
+ */
+public class TimingWheelEventQueue implements EventQueue {
+
+	// The number of bits of a digit of the time, i.e., of a slot index.
+	private final static int SLOT_BITS = 8;
+
+	// The number of slots per level.
+	private final static int SLOTS = 1 << SLOT_BITS;
+
+	// The number of levels of the wheel.
+	private final static int LEVELS = 4;
+
+	// Event.queueBucket of an event in due.
+	private final static int DUE = -2;
+
+	// Event.queueBucket of an event in far.
+	private final static int FAR = -3;
+
+	// The events of each slot of each level, unordered, at index level * SLOTS + slot.
+	private final Event[][] buckets = new Event[LEVELS * SLOTS][];
+
+	// The number of events in each bucket.
+	private final int[] bucketSizes = new int[LEVELS * SLOTS];
+
+	// A bit per bucket that is set if the bucket is not empty; SLOTS / 64 longs per level.
+	private final long[] occupied = new long[LEVELS * SLOTS / 64];
+
+	// The events whose time is not after now, ordered by (time, id).
+	private final IndexedEventHeap due = new IndexedEventHeap();
+
+	// The events that are too far in the future for the wheel.
+	private final IndexedEventHeap far = new IndexedEventHeap();
+
+	// The current time of the wheel. The events in the buckets are all after now.
+	private long now = Long.MIN_VALUE;
+
+	// The number of events in the queue.
+	private int size = 0;
+
+	/**
+	 * Create an empty queue.
+	 */
+	public TimingWheelEventQueue() {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new Event[4];
+		}
+	}
+
+	@Override
+	public void add(Event event) {
+		if (event.queueIndex >= 0) {
+			throw new IllegalArgumentException("Event " + event.id + " is in a queue already.");
+		}
+		if (size == 0 && now == Long.MIN_VALUE) {
+			now = event.time;
+		}
+		place(event);
+		size++;
+	}
+
+	@Override
+	public Event peek() {
+		advance();
+		return due.peek();
+	}
+
+	@Override
+	public Event poll() {
+		advance();
+		Event first = due.poll();
+		if (first != null) {
+			first.queueBucket = -1;
+			size--;
+		}
+		return first;
+	}
+
+	@Override
+	public boolean remove(Event event) {
+		if (!contains(event)) {
+			return false;
+		}
+		if (event.queueBucket == DUE) {
+			due.remove(event);
+		} else if (event.queueBucket == FAR) {
+			far.remove(event);
+		} else {
+			removeFromBucket(event);
+		}
+		event.queueBucket = -1;
+		size--;
+		return true;
+	}
+
+	@Override
+	public void reschedule(Event event, long time) {
+		remove(event);
+		event.time = time;
+		add(event);
+	}
+
+	@Override
+	public boolean contains(Event event) {
+		int bucket = event.queueBucket;
+		if (bucket == DUE) {
+			return due.contains(event);
+		} else if (bucket == FAR) {
+			return far.contains(event);
+		} else if (bucket >= 0) {
+			int position = event.queueIndex;
+			return position >= 0 && position < bucketSizes[bucket] && buckets[bucket][position] == event;
+		}
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Put an event into due, the bucket of its level and slot relative to now, or far.
+	 */
+	private void place(Event event) {
+		long time = event.time;
+		if (time <= now) {
+			event.queueBucket = DUE;
+			due.add(event);
+			return;
+		}
+		for (int level = 0; level < LEVELS; level++) {
+			int shift = SLOT_BITS * (level + 1);
+			if ((time >>> shift) == (now >>> shift)) {
+				int bucket = level * SLOTS + (int) ((time >>> (SLOT_BITS * level)) & (SLOTS - 1));
+				addToBucket(event, bucket);
+				return;
+			}
+		}
+		event.queueBucket = FAR;
+		far.add(event);
+	}
+
+	private void addToBucket(Event event, int bucket) {
+		int position = bucketSizes[bucket]++;
+		if (position == buckets[bucket].length) {
+			buckets[bucket] = Arrays.copyOf(buckets[bucket], 2 * position);
+		}
+		buckets[bucket][position] = event;
+		event.queueIndex = position;
+		event.queueBucket = bucket;
+		occupied[bucket >>> 6] |= 1L << bucket;
+	}
+
+	/**
+	 * Remove an event from its bucket by moving the last event of the bucket into its place.
+	 */
+	private void removeFromBucket(Event event) {
+		int bucket = event.queueBucket;
+		int last = --bucketSizes[bucket];
+		Event lastEvent = buckets[bucket][last];
+		buckets[bucket][event.queueIndex] = lastEvent;
+		lastEvent.queueIndex = event.queueIndex;
+		buckets[bucket][last] = null;
+		event.queueIndex = -1;
+		if (last == 0) {
+			occupied[bucket >>> 6] &= ~(1L << bucket);
+		}
+	}
+
+	/**
+	 * Advance now to the time of the next event if there are no due events.
+	 */
+	private void advance() {
+		while (due.isEmpty() && size > 0) {
+			boolean found = false;
+			for (int level = 0; level < LEVELS && !found; level++) {
+				int digit = (int) ((now >>> (SLOT_BITS * level)) & (SLOTS - 1));
+				int slot = nextOccupiedSlot(level, digit + 1);
+				if (slot < 0) {
+					continue;
+				}
+				found = true;
+				// Move now to the start of the slot; all earlier slots are empty.
+				int shift = SLOT_BITS * (level + 1);
+				now = ((now >>> shift) << shift) | ((long) slot << (SLOT_BITS * level));
+				cascade(level * SLOTS + slot);
+			}
+			if (!found) {
+				// Nothing is left in the wheel; jump to the first far event.
+				now = far.peek().time;
+				int shift = SLOT_BITS * LEVELS;
+				while (!far.isEmpty() && (far.peek().time >>> shift) == (now >>> shift)) {
+					Event event = far.poll();
+					place(event);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Redistribute the events of a bucket relative to now, i.e., to due or lower levels.
+	 */
+	private void cascade(int bucket) {
+		int count = bucketSizes[bucket];
+		Event[] events = buckets[bucket];
+		bucketSizes[bucket] = 0;
+		occupied[bucket >>> 6] &= ~(1L << bucket);
+		for (int i = 0; i < count; i++) {
+			Event event = events[i];
+			events[i] = null;
+			event.queueIndex = -1;
+			place(event);
+		}
+	}
+
+	/**
+	 * @return the first occupied slot of a level at or after the given slot, or -1 if there is none
+	 */
+	private int nextOccupiedSlot(int level, int from) {
+		int bucket = level * SLOTS + from;
+		int end = (level + 1) * SLOTS;
+		while (bucket < end) {
+			long word = occupied[bucket >>> 6] & (-1L << bucket);
+			if (word != 0) {
+				int found = ((bucket >>> 6) << 6) + Long.numberOfTrailingZeros(word);
+				return found < end ? found - level * SLOTS : -1;
+			}
+			bucket = ((bucket >>> 6) + 1) << 6;
+		}
+		return -1;
+	}
+}
@@ -13,21 +13,22 @@ public class Vertex implements Comparable<Vertex> {
 	final public double longitude, latitude;
 	
 	// projected 2D coordinates
-	final public Point2D xy;
+	private final Point2D xy;
 	
 	// a unique id
-	public long id;
+	private final long id;
 	
-	// reference to the intersection at this vertex; null if this vertex is not an intersection
-	public Intersection intersection; 
+	// reference to the intersection at this vertex; null if this vertex is not an intersection.
+	// Set by the Intersection when the vertex is promoted to an intersection.
+	Intersection intersection; 
 
 	// The links that end at this vertex, i.e., the links for which this vertex is
 	// the downstream vertex, also called incoming roads.
-	public Map<Vertex, Link> linksMapTo = new TreeMap<>();
+	private final Map<Vertex, Link> linksMapTo = new TreeMap<>();
 
 	// The links that start at this vertex, i.e., the links for which this vertex is
 	// the upstream vertex, also called outgoing links.
-	public Map<Vertex, Link> linksMapFrom = new TreeMap<>();
+	private final Map<Vertex, Link> linksMapFrom = new TreeMap<>();
 
 	/**
 	 * Constructor of Vertex. Set the location (longitude and latitude)
@@ -58,6 +59,41 @@ public class Vertex implements Comparable<Vertex> {
 		this.xy = new Point2D.Double(aVertex.getX(), aVertex.getY());
 	}
 
+	/**
+	 * @return the id of the vertex
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * @return the intersection at this vertex, or null if this vertex is not an intersection
+	 */
+	public Intersection getIntersection() {
+		return intersection;
+	}
+
+	/**
+	 * @return the projected 2D coordinates of the vertex; a copy, so changing it does not move the vertex
+	 */
+	public Point2D getXY() {
+		return new Point2D.Double(xy.getX(), xy.getY());
+	}
+
+	/**
+	 * @return a read-only map from the vertices this vertex has a link to to these links, in vertex order
+	 */
+	public Map<Vertex, Link> getLinksMapFrom() {
+		return Collections.unmodifiableMap(linksMapFrom);
+	}
+
+	/**
+	 * @return a read-only map from the vertices that have a link to this vertex to these links, in vertex order
+	 */
+	public Map<Vertex, Link> getLinksMapTo() {
+		return Collections.unmodifiableMap(linksMapTo);
+	}
+
 	/**
 	 * Adds an edge () from this vertex to a specified vertex 
 	 * with a specified distance and speed limit.
@@ -67,7 +103,7 @@ public class Vertex implements Comparable<Vertex> {
 	 *                  between the two vertices
 	 * @param speed The speed limit on the  between the vertices
 	 */
-	public void addEdge (Vertex i, double distance, double speed) {
+	void addEdge (Vertex i, double distance, double speed) {
 		if (this.id == i.id) {
 			return;
 		}
@@ -84,7 +120,7 @@ public class Vertex implements Comparable<Vertex> {
 	 * @throws IllegalArgumentException if there is not  between this 
 	 *          vertex and the specified vertex
 	 */
-	public void removeEdge (Vertex inter) throws IllegalArgumentException {
+	void removeEdge (Vertex inter) throws IllegalArgumentException {
 		for (Vertex i : linksMapFrom.keySet()) {
 			if (i.equals(inter)) {
 				linksMapFrom.remove(i);
@@ -100,10 +136,10 @@ public class Vertex implements Comparable<Vertex> {
 	 * Removes this vertex and reconnects all the neighbors such that the
 	 * graph remains the same minus this vertex.
 	 */
-	public void cutVertex () {
+	void cutVertex () {
 		for (Link From : linksMapFrom.values()) {
 			for (Link To : linksMapTo.values()) {
-				To.from.addEdge(From.to, From.length + 
+				To.getFrom().addEdge(From.getTo(), From.length + 
 						To.length, Math.min(From.speed, To.speed));
 			}
 		}
@@ -114,7 +150,7 @@ public class Vertex implements Comparable<Vertex> {
 	/**
 	 * Removes this vertex by cutting all the incoming and outgoing links.
 	 */
-	public void severVertex() {
+	void severVertex() {
 		boolean check = true;
 		while (check) {
 			check = false;
@@ -191,7 +227,7 @@ public class Vertex implements Comparable<Vertex> {
 	 * @return a set of vertices that you can go to from this vertex
 	 */
 	public Set<Vertex> getAdjacentFrom () {
-		return linksMapFrom.keySet();
+		return Collections.unmodifiableSet(linksMapFrom.keySet());
 	}
 
 	/**
@@ -203,7 +239,7 @@ public class Vertex implements Comparable<Vertex> {
 	 *          this vertex
 	 */
 	public Set<Vertex> getAdjacentTo () {
-		return linksMapTo.keySet();
+		return Collections.unmodifiableSet(linksMapTo.keySet());
 	}
 
 	/**
@@ -0,0 +1,144 @@
+package COMSETsystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The WaitingResourceGrid is an index of the waiting resources, by location and by deadline,
+ * that finds the waiting resource an agent that becomes empty reaches the earliest, i.e., the
+ * resource a linear scan of all waiting resources would assign to the agent, without computing
+ * the travel time to every waiting resource.
+ *
+ * A resource can only be assigned if the agent reaches its pickup location not after its pickup
+ * deadline (see ResourceEvent.pickupDeadline), and an agent reaches it at the earliest now. The
+ * resources are therefore also kept in the order of their deadlines, and all resources whose
+ * deadline has passed are dropped from the index at once before a search. They stay waiting
+ * until they expire.
+ *
+ * A waiting resource is kept in the cell of a MapGrid of the start intersection of the road of
+ * its pickup location. An agent that is not on that road before the pickup location reaches it
+ * through the end intersection of the road it is on, so its travel time is at least the time to
+ * the end of its road plus the travel time from there to the cell (see MapGrid). A search visits
+ * the cell of the start intersection of the road of the agent first, for the resources ahead of
+ * it on its road, and then the cells in rings of growing distance around the end intersection of
+ * its road, as long as a resource there may be reached earlier than the best resource so far
+ * and not after the latest deadline. Ties are broken by the smallest resource id, as by the
+ * scan in id order.
+ */
+class WaitingResourceGrid {
+
+	// The cells of the map.
+	private final MapGrid grid;
+
+	// The map, for the travel times.
+	private final CityMap map;
+
+	// The resources of each cell, in no particular order.
+	private final List<List<ResourceEvent>> cells;
+
+	// The resources in the index by pickup deadline and id.
+	private final TreeSet<ResourceEvent> byDeadline = new TreeSet<>((r1, r2) -> {
+		int order = Long.compare(r1.pickupDeadline(), r2.pickupDeadline());
+		return order != 0 ? order : Long.compare(r1.id, r2.id);
+	});
+
+	/**
+	 * Create an empty index over the cells of a grid.
+	 *
+	 * @param grid the cells of the map
+	 * @param map the map
+	 */
+	WaitingResourceGrid(MapGrid grid, CityMap map) {
+		this.grid = grid;
+		this.map = map;
+		cells = new ArrayList<>(grid.cellCount());
+		for (int i = 0; i < grid.cellCount(); i++) {
+			cells.add(new ArrayList<>());
+		}
+	}
+
+	/**
+	 * Add a waiting resource to the index.
+	 *
+	 * @param resource the resource
+	 */
+	void add(ResourceEvent resource) {
+		if (resource.gridCell >= 0) {
+			return;
+		}
+		resource.gridCell = grid.cellOf(resource.pickupLoc.road.from);
+		cells.get(resource.gridCell).add(resource);
+		byDeadline.add(resource);
+	}
+
+	/**
+	 * Remove a resource from the index if it is in the index.
+	 *
+	 * @param resource the resource
+	 */
+	void remove(ResourceEvent resource) {
+		if (resource.gridCell < 0) {
+			return;
+		}
+		List<ResourceEvent> resources = cells.get(resource.gridCell);
+		int position = resources.indexOf(resource);
+		// The order within a cell does not matter, so the last resource takes the place of the removed one.
+		resources.set(position, resources.get(resources.size() - 1));
+		resources.remove(resources.size() - 1);
+		byDeadline.remove(resource);
+		resource.gridCell = -1;
+	}
+
+	/**
+	 * Find the waiting resource whose pickup location an agent reaches the earliest and not after
+	 * the pickup deadline of the resource, breaking ties by the smallest resource id.
+	 *
+	 * @param loc the location of the agent
+	 * @param time the current time
+	 * @return the resource, or null if the agent cannot reach any waiting resource in time
+	 */
+	ResourceEvent earliestResource(LocationOnRoad loc, long time) {
+		// No agent can reach a resource before now.
+		while (!byDeadline.isEmpty() && byDeadline.first().pickupDeadline() < time) {
+			remove(byDeadline.first());
+		}
+		if (byDeadline.isEmpty()) {
+			return null;
+		}
+		long latestDeadline = byDeadline.last().pickupDeadline();
+		Best best = new Best();
+		best.earliest = Long.MAX_VALUE;
+		visit(grid.cellOf(loc.road.from), loc, time, best);
+
+		// The earliest time at which the agent leaves the end intersection of its road.
+		double offset = time + loc.road.travelTime - loc.travelTimeFromStartIntersection;
+		grid.visitCells(loc.road.to, offset, () -> Math.min(best.earliest, latestDeadline), cell -> visit(cell, loc, time, best));
+		return best.resource;
+	}
+
+	/**
+	 * Compute the arrival times of the agent at the resources of a cell.
+	 */
+	private void visit(int cell, LocationOnRoad loc, long time, Best best) {
+		for (ResourceEvent resource : cells.get(cell)) {
+			if (resource.pickupDeadline() < time || resource == best.resource) {
+				continue;
+			}
+			long arriveTime = time + map.travelTimeBetween(loc, resource.pickupLoc);
+			if (arriveTime <= resource.pickupDeadline()
+					&& (arriveTime < best.earliest || (arriveTime == best.earliest && resource.id < best.resource.id))) {
+				best.resource = resource;
+				best.earliest = arriveTime;
+			}
+		}
+	}
+
+	/**
+	 * The best resource found by a search so far.
+	 */
+	private static class Best {
+		ResourceEvent resource;
+		long earliest;
+	}
+}
@@ -1,12 +1,31 @@
 package DataParsing;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.LocalDateTime;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
 import MapCreation.MapCreator;
 
 /**       
@@ -18,6 +37,13 @@ import MapCreation.MapCreator;
  * 2. "pickup_longitude", "pickup_latitude": The location at which the resource (passenger) is introduced.
  * 3. "dropoff_longitude", "dropoff_latitude": The location at which the resource (passenger) is dropped off. 
  *   
+ * The file is either read through a Scanner, or memory-mapped and parsed byte by byte in place (the default),
+ * which is much faster for large files and gives the same resources. The mapped parser decodes the numbers and
+ * the fixed-format time stamps by hand, without a String per field, and converts local times to epochs with
+ * the offset of the time zone of the day, cached per day. Fields that are not in the plain format, e.g.,
+ * numbers with an exponent or too many digits, and the days on which the offset changes, are left to the
+ * library conversions.
+ * 
  * @author TijanaKlimovic
  */
 public class CSVNewYorkParser {
@@ -32,6 +58,38 @@ public class CSVNewYorkParser {
 
 	ZoneId zoneId;
 
+	// true to memory-map the file and parse it in place, false to read it through a Scanner
+	private boolean mapped;
+
+	// The largest part of the file that is mapped at once. Lines are not split between parts.
+	private static final int MAX_REGION = 1 << 28;
+
+	// The part of the file that is mapped beyond the end of a range of lines for the last line of the range.
+	private static final int LINE_SLACK = 1 << 16;
+
+	// The columns of the fields that are extracted from each row, and the number of columns needed.
+	private static final int PICKUP_TIME = 1, PICKUP_LON = 5, PICKUP_LAT = 6, DROPOFF_LON = 9, DROPOFF_LAT = 10;
+	private static final int FIELDS = 11;
+
+	// The start and end offsets of the fields of the current row in the mapped part of the file.
+	private final int[] fieldStarts = new int[FIELDS];
+	private final int[] fieldEnds = new int[FIELDS];
+
+	// The powers of ten that are exact doubles.
+	private static final double[] POWERS_OF_TEN = new double[23];
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	// The cached offsets in seconds of the time zone by local day, direct-mapped by epoch day.
+	private static final int DAY_CACHE = 64;
+	private static final int NO_OFFSET = Integer.MIN_VALUE;
+	private final long[] cachedDays = new long[DAY_CACHE];
+	private final int[] cachedOffsets = new int[DAY_CACHE];
+
 	/**
 	 * Constructor of the CSVNewYorkParser class
 	 * @param path full path to the resource dataset file
@@ -39,10 +97,22 @@ public class CSVNewYorkParser {
 	 */
 	// resource specified in csv file located at path
 	public CSVNewYorkParser(String path, ZoneId zoneId) {
+		this(path, zoneId, true);
+	}
+
+	/**
+	 * Constructor of the CSVNewYorkParser class
+	 * @param path full path to the resource dataset file
+	 * @param zoneId the time zone id of the studied area
+	 * @param mapped true to memory-map the file and parse it in place, false to read it through a Scanner
+	 */
+	public CSVNewYorkParser(String path, ZoneId zoneId, boolean mapped) {
 		this.path = path;
 		dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 		// TLC Trip Record data uses local time. So the zone ID is America/New_York
 		this.zoneId = zoneId;
+		this.mapped = mapped;
+		Arrays.fill(cachedDays, Long.MIN_VALUE);
 	}
 
 	/**
@@ -66,6 +136,9 @@ public class CSVNewYorkParser {
 	 * @return ArrayList<Resource>
 	 */
 	public ArrayList<Resource> parse() {
+		if (mapped) {
+			return parseMapped();
+		}
 
 		try {
 			Scanner sc = new Scanner(new File(path));   //scanner will scan the file specified by path
@@ -103,4 +176,376 @@ public class CSVNewYorkParser {
 		return resources;
 	}
 
+	/**
+	 * Parse the csv file in place through memory-mapped parts of the file.
+	 * 
+	 * @return ArrayList<Resource>
+	 */
+	private ArrayList<Resource> parseMapped() {
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			parseRange(channel, 0, channel.size(), resources::add);
+		} catch (Exception e) {
+
+			e.printStackTrace();
+		}
+		return resources;
+	}
+
+	/**
+	 * Parse the csv file in place in chunks of lines in parallel, and pass the resources within the
+	 * bounding polygon to a consumer instead of collecting them, so that the resources of a file need
+	 * not be held in memory at once. The file is split into chunks of about the given size at line
+	 * boundaries, and each chunk is parsed by one of the threads with a parser of its own. The
+	 * consumer is called from all the threads, in no particular order.
+	 * 
+	 * @param executor the threads to parse the chunks with
+	 * @param chunkSize the size of a chunk in bytes
+	 * @param consumer called with each resource; must be thread-safe
+	 * @throws Exception the exception of a chunk whose parsing failed
+	 */
+	public void parseInParallel(ExecutorService executor, long chunkSize, Consumer<Resource> consumer) throws Exception {
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			long size = channel.size();
+			List<Callable<Void>> chunks = new ArrayList<>();
+			for (long start = 0; start < size; start += chunkSize) {
+				long from = start;
+				long to = Math.min(size, start + chunkSize);
+				chunks.add(() -> {
+					new CSVNewYorkParser(path, zoneId, true).parseRange(channel, from, to, consumer);
+					return null;
+				});
+			}
+			for (Future<Void> chunk : executor.invokeAll(chunks)) {
+				chunk.get();
+			}
+		}
+	}
+
+	/**
+	 * Parse the lines of the csv file that start within a range of bytes, memory-mapped in place. The
+	 * first line of the file is the header; a line that starts before the range belongs to the range before.
+	 * 
+	 * @param channel the file
+	 * @param rangeStart the first byte of the range
+	 * @param rangeEnd the byte after the range
+	 * @param consumer called with each resource within the bounding polygon
+	 */
+	private void parseRange(FileChannel channel, long rangeStart, long rangeEnd, Consumer<Resource> consumer) throws IOException {
+		long size = channel.size();
+		// The first line is skipped: the header, or the end of the line from before the range, which is
+		// empty if a line starts at rangeStart.
+		long regionStart = rangeStart == 0 ? 0 : rangeStart - 1;
+		boolean skip = true;
+		// Map the range and a little more for the line that ends after it.
+		long regionSize = rangeEnd - regionStart + LINE_SLACK;
+		while (regionStart < size) {
+			int limit = (int) Math.min(Math.min(MAX_REGION, regionSize), size - regionStart);
+			boolean last = regionStart + limit == size;
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, limit);
+			int lineStart = 0;
+			while (lineStart < limit) {
+				if (!skip && regionStart + lineStart >= rangeEnd) {
+					return;
+				}
+				int lineEnd = lineStart;
+				while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+					lineEnd++;
+				}
+				if (lineEnd == limit && !last) {
+					// The line continues in the next part.
+					break;
+				}
+				if (skip) {
+					skip = false;
+				} else {
+					parseRow(buffer, lineStart, lineEnd, consumer);
+				}
+				lineStart = lineEnd + 1;
+			}
+			if (lineStart == 0) {
+				if (limit == MAX_REGION) {
+					throw new IOException("Line longer than " + MAX_REGION + " bytes at offset " + regionStart);
+				}
+				// A line longer than the part.
+				regionSize = 2L * limit;
+				continue;
+			}
+			regionStart += Math.min(lineStart, limit);
+			regionSize = Math.max(rangeEnd - regionStart, 0) + LINE_SLACK;
+		}
+	}
+
+	/**
+	 * Open the csv file to read its resources within the bounding polygon one by one, in the order
+	 * of the file, memory-mapped in place, instead of collecting them all.
+	 * 
+	 * @return the resources of the file; must be closed
+	 * @throws IOException if the file cannot be opened
+	 */
+	public ResourceStream stream() throws IOException {
+		return new ResourceStream(FileChannel.open(Paths.get(path), StandardOpenOption.READ));
+	}
+
+	/**
+	 * The resources of the csv file, read one by one through memory-mapped parts of the file.
+	 */
+	public class ResourceStream implements Iterator<Resource>, Closeable {
+
+		private final FileChannel channel;
+		private final long size;
+
+		// The mapped part of the file, where it starts in the file and its size.
+		private MappedByteBuffer buffer;
+		private long regionStart = 0;
+		private int limit = 0;
+
+		// The start of the next line in the mapped part.
+		private int lineStart = 0;
+
+		// true until the header is skipped
+		private boolean header = true;
+
+		// The next resource, or null if it is not read yet.
+		private Resource next;
+		private final Consumer<Resource> setNext = resource -> next = resource;
+
+		private ResourceStream(FileChannel channel) throws IOException {
+			this.channel = channel;
+			this.size = channel.size();
+		}
+
+		@Override
+		public boolean hasNext() {
+			try {
+				while (next == null) {
+					if (regionStart + lineStart >= size) {
+						return false;
+					}
+					int lineEnd = lineStart;
+					while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+						lineEnd++;
+					}
+					if (lineEnd == limit && regionStart + limit < size) {
+						// The line continues after the mapped part; map the part from the line on.
+						if (lineStart == 0 && limit == MAX_REGION) {
+							throw new IOException("Line longer than " + MAX_REGION + " bytes at offset " + regionStart);
+						}
+						regionStart += lineStart;
+						limit = (int) Math.min(MAX_REGION, size - regionStart);
+						buffer = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, limit);
+						lineStart = 0;
+						continue;
+					}
+					if (header) {
+						header = false; // skip the header
+					} else {
+						parseRow(buffer, lineStart, lineEnd, setNext);
+					}
+					lineStart = lineEnd + 1;
+				}
+				return true;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public Resource next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Resource resource = next;
+			next = null;
+			return resource;
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Parse a row of the csv file and pass its resource to a consumer if it is within the bounding polygon.
+	 */
+	private void parseRow(MappedByteBuffer buffer, int start, int end, Consumer<Resource> consumer) {
+		if (end > start && buffer.get(end - 1) == '\r') {
+			end--;
+		}
+		if (end == start) {
+			// an empty line
+			return;
+		}
+		int field = 0;
+		int fieldStart = start;
+		for (int i = start; field < FIELDS && i <= end; i++) {
+			if (i == end || buffer.get(i) == ',') {
+				fieldStarts[field] = fieldStart;
+				fieldEnds[field] = i;
+				field++;
+				fieldStart = i + 1;
+			}
+		}
+		if (field < FIELDS) {
+			throw new IllegalArgumentException("Row with " + field + " fields: " + string(buffer, start, end));
+		}
+		long time = parseTime(buffer, fieldStarts[PICKUP_TIME], fieldEnds[PICKUP_TIME]);
+		double pickupLon = parseDouble(buffer, fieldStarts[PICKUP_LON], fieldEnds[PICKUP_LON]);
+		double pickupLat = parseDouble(buffer, fieldStarts[PICKUP_LAT], fieldEnds[PICKUP_LAT]);
+		double dropoffLon = parseDouble(buffer, fieldStarts[DROPOFF_LON], fieldEnds[DROPOFF_LON]);
+		double dropoffLat = parseDouble(buffer, fieldStarts[DROPOFF_LAT], fieldEnds[DROPOFF_LAT]);
+		// Only keep the resources such that both pickup location and dropoff location are within the bounding polygon.
+		if (!(MapCreator.insidePolygon(pickupLon, pickupLat) && MapCreator.insidePolygon(dropoffLon, dropoffLat))) {
+			return;
+		}
+		consumer.accept(new Resource(pickupLat, pickupLon, dropoffLat, dropoffLon, time)); //create new resource with the above fields
+	}
+
+	/**
+	 * Parse a decimal number without exponent, e.g., -73.97095380273862. The number is the exact
+	 * quotient of its digits and a power of ten if both are exact doubles, so a single rounded
+	 * division gives the same double as Double.parseDouble. Other numbers are left to Double.parseDouble.
+	 */
+	private static double parseDouble(MappedByteBuffer buffer, int start, int end) {
+		int i = start;
+		boolean negative = false;
+		if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+			negative = buffer.get(i) == '-';
+			i++;
+		}
+		long digits = 0;
+		int fractionDigits = 0;
+		boolean fraction = false;
+		boolean any = false;
+		for (; i < end; i++) {
+			byte b = buffer.get(i);
+			if (b >= '0' && b <= '9') {
+				digits = digits * 10 + (b - '0');
+				if (digits >= 1L << 53) {
+					return Double.parseDouble(string(buffer, start, end));
+				}
+				any = true;
+				if (fraction) {
+					fractionDigits++;
+				}
+			} else if (b == '.' && !fraction) {
+				fraction = true;
+			} else {
+				return Double.parseDouble(string(buffer, start, end));
+			}
+		}
+		if (!any || fractionDigits >= POWERS_OF_TEN.length) {
+			return Double.parseDouble(string(buffer, start, end));
+		}
+		double value = digits / POWERS_OF_TEN[fractionDigits];
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parse a time stamp of the format yyyy-MM-dd HH:mm:ss into the Linux epoch. Time stamps
+	 * of another format or on a day on which the offset of the time zone changes are left to dateConversion.
+	 */
+	private long parseTime(MappedByteBuffer buffer, int start, int end) {
+		if (end - start == 19 && buffer.get(start + 4) == '-' && buffer.get(start + 7) == '-' && buffer.get(start + 10) == ' '
+				&& buffer.get(start + 13) == ':' && buffer.get(start + 16) == ':') {
+			int year = digits(buffer, start, 4);
+			int month = digits(buffer, start + 5, 2);
+			int day = digits(buffer, start + 8, 2);
+			int hour = digits(buffer, start + 11, 2);
+			int minute = digits(buffer, start + 14, 2);
+			int second = digits(buffer, start + 17, 2);
+			if (year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= lengthOfMonth(year, month)
+					&& hour >= 0 && hour < 24 && minute >= 0 && minute < 60 && second >= 0 && second < 60) {
+				long epochDay = epochDay(year, month, day);
+				int offset = dayOffset(epochDay);
+				if (offset != NO_OFFSET) {
+					return epochDay * 86400 + hour * 3600 + minute * 60 + second - offset;
+				}
+			}
+		}
+		return dateConversion(string(buffer, start, end));
+	}
+
+	/**
+	 * @return the value of a number of decimal digits, or -1 if one of them is not a digit
+	 */
+	private static int digits(MappedByteBuffer buffer, int start, int count) {
+		int value = 0;
+		for (int i = start; i < start + count; i++) {
+			byte b = buffer.get(i);
+			if (b < '0' || b > '9') {
+				return -1;
+			}
+			value = value * 10 + (b - '0');
+		}
+		return value;
+	}
+
+	/**
+	 * @return the offset in seconds of the time zone on a local day, or NO_OFFSET if it changes on that day
+	 */
+	private int dayOffset(long epochDay) {
+		int slot = (int) (epochDay & (DAY_CACHE - 1));
+		if (cachedDays[slot] != epochDay) {
+			// The offset of a time zone is less than a day, so the day is within a day of the same UTC day.
+			ZoneRules rules = zoneId.getRules();
+			long utcStart = (epochDay - 1) * 86400;
+			long utcEnd = (epochDay + 2) * 86400;
+			ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochSecond(utcStart));
+			if (transition != null && transition.getInstant().getEpochSecond() < utcEnd) {
+				cachedOffsets[slot] = NO_OFFSET;
+			} else {
+				cachedOffsets[slot] = rules.getOffset(Instant.ofEpochSecond(utcStart)).getTotalSeconds();
+			}
+			cachedDays[slot] = epochDay;
+		}
+		return cachedOffsets[slot];
+	}
+
+	/**
+	 * @return the number of days from 1970-01-01 to a date, as LocalDate.toEpochDay
+	 */
+	private static long epochDay(int year, int month, int day) {
+		long y = year;
+		long total = 365 * y + (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+		total += (367 * month - 362) / 12;
+		total += day - 1;
+		if (month > 2) {
+			total--;
+			if (!isLeapYear(year)) {
+				total--;
+			}
+		}
+		// The number of days from 0000-01-01 to 1970-01-01.
+		return total - 719528;
+	}
+
+	private static int lengthOfMonth(int year, int month) {
+		switch (month) {
+		case 2:
+			return isLeapYear(year) ? 29 : 28;
+		case 4:
+		case 6:
+		case 9:
+		case 11:
+			return 30;
+		default:
+			return 31;
+		}
+	}
+
+	private static boolean isLeapYear(int year) {
+		return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+	}
+
+	/**
+	 * @return the bytes of a field as a String, for the fields left to the library conversions
+	 */
+	private static String string(MappedByteBuffer buffer, int start, int end) {
+		byte[] bytes = new byte[end - start];
+		for (int i = start; i < end; i++) {
+			bytes[i - start] = buffer.get(i);
+		}
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
 }
@@ -41,12 +41,30 @@ public class GeoProjector {
 	 * @return projected 2D point 
 	 */		
 	public double[] fromLatLon(double lat, double lon) {
-		double x = (lon - ref_lon) * metersPerLonDegree;
-		double y = (lat - ref_lat) * metersPerLatDegree;
+		double x = xFromLon(lon);
+		double y = yFromLat(lat);
 		double[] xy = {x, y};
 		return xy;
 	}
 
+	/**
+	 * Project a longitude to the x-coordinate of 2D space
+	 * @param lon longitude
+	 * @return projected x-coordinate
+	 */
+	public double xFromLon(double lon) {
+		return (lon - ref_lon) * metersPerLonDegree;
+	}
+
+	/**
+	 * Project a latitude to the y-coordinate of 2D space
+	 * @param lat latitude
+	 * @return projected y-coordinate
+	 */
+	public double yFromLat(double lat) {
+		return (lat - ref_lat) * metersPerLatDegree;
+	}
+
 	/**
 	 * Project a lat,lon location to 2D space
 	 * @param lat latitude 
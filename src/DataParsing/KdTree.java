@@ -169,18 +169,33 @@ public class KdTree {
 	public Link nearest(Point2D p) {
 		if (p == null) throw new NullPointerException(
 				"called contains() with a null Point2D");
+		return nearest(p.getX(), p.getY());
+	}
+
+	/**
+	 * A nearest neighbor in the group to point (x, y); null if the group is empty.
+	 * 
+	 * The search allocates nothing and does not modify the tree, so it may run in many threads
+	 * at once.
+	 * 
+	 * @param x x-coordinate of the point
+	 * @param y y-coordinate of the point
+	 * @return the nearest neighbor to the given point,
+	 *         {@code null} otherwise.
+	 */
+	public Link nearest(double x, double y) {
 		if (isEmpty()) return null;
-		return nearest(root, p, root.link, true);
+		return nearest(root, x, y, root.link, true);
 	}
 
-	private Link nearest(Node n, Point2D p, Link champion,
+	private Link nearest(Node n, double x, double y, Link champion,
 			boolean evenLevel) {
 
 		// Handle reaching the end of the tree
 		if (n == null) return champion;
 
 		// Determine if the current Node's link beats the existing champion
-		if (n.link.distanceSq(p) < champion.distanceSq(p))
+		if (n.link.distanceSq(x, y) < champion.distanceSq(x, y))
 			champion = n.link;
 
 		/**
@@ -197,19 +212,19 @@ public class KdTree {
 		 * of the links on the other side of that partition band, because none
 		 * can be closer.
 		 */
-		double toPartitionLine = distancePointToBand(p, n, evenLevel);
+		double toPartitionLine = distancePointToBand(x, y, n, evenLevel);
 
 		/**
 		 * Handle the search point being to the left of or below
 		 * the current Node's partition band.
 		 */
 		if (toPartitionLine < 0) {
-			champion = nearest(n.lb, p, champion, !evenLevel);
+			champion = nearest(n.lb, x, y, champion, !evenLevel);
 
 			// Since champion may have changed, recalculate distance
-			if (champion.distanceSq(p) >=
+			if (champion.distanceSq(x, y) >=
 					toPartitionLine * toPartitionLine) {
-				champion = nearest(n.rt, p, champion, !evenLevel);
+				champion = nearest(n.rt, x, y, champion, !evenLevel);
 			}
 		}
 
@@ -224,12 +239,12 @@ public class KdTree {
 		 * the level of the current Node).
 		 */
 		else {
-			champion = nearest(n.rt, p, champion, !evenLevel);
+			champion = nearest(n.rt, x, y, champion, !evenLevel);
 
 			// Since champion may have changed, recalculate distance
-			if (champion.distanceSq(p) >=
+			if (champion.distanceSq(x, y) >=
 					toPartitionLine * toPartitionLine) {
-				champion = nearest(n.lb, p, champion, !evenLevel);
+				champion = nearest(n.lb, x, y, champion, !evenLevel);
 			}
 		}
 
@@ -257,17 +272,17 @@ public class KdTree {
 	 */
 	private int directionLinkToBand(Link link, Node n, boolean evenLevel) {
 		if (evenLevel) { // compare x coordinates
-			if (link.maxX <= n.minX)
+			if (link.getMaxX() <= n.minX)
 				return -1;
-			if (link.minX >= n.maxX)
+			if (link.getMinX() >= n.maxX)
 				return 1;
 			else 
 				return 0;
 		}
 		else { // compare y coordinates
-			if (link.maxY <= n.minY)
+			if (link.getMaxY() <= n.minY)
 				return -1;
-			if (link.minY >= n.maxY)
+			if (link.getMinY() >= n.maxY)
 				return 1;
 			else 
 				return 0;		
@@ -283,7 +298,8 @@ public class KdTree {
 	 * Otherwise (including where the difference is exactly 0), then the
 	 * given point lies or should lie on the right branch of the given Node.
 	 * 
-	 * @param p the point in question
+	 * @param x x-coordinate of the point in question
+	 * @param y y-coordinate of the point in question
 	 * @param n the Node in question
 	 * @param evenLevel is the current level even?  If so, then the Node's
 	 *        partition band is vertical, so the point will be to the left
@@ -294,16 +310,16 @@ public class KdTree {
 	 *         1 right; 
 	 *         0 if the point is inside the node's partition band.
 	 */	
-	private double distancePointToBand(Point2D p, Node n, boolean evenLevel) {
+	private double distancePointToBand(double x, double y, Node n, boolean evenLevel) {
 		if (evenLevel) { // compare x coordinates
-			if (p.getX() <= n.minX || p.getX() >= n.maxX) 
-				return p.getX() - n.minX;
+			if (x <= n.minX || x >= n.maxX) 
+				return x - n.minX;
 			else 
 				return 0;
 		}
 		else { // compare y coordinates
-			if (p.getY() <= n.minY || p.getY() >= n.maxY) 
-				return p.getY() - n.minY;
+			if (y <= n.minY || y >= n.maxY) 
+				return y - n.minY;
 			else 
 				return 0;
 		}		
@@ -329,20 +345,20 @@ public class KdTree {
 		private Node(Link link) {
 		
 			this.link = link;
-			minX = link.minX;
-			minY = link.minY;
-			maxX = link.maxX;
-			maxY = link.maxY;
+			minX = link.getMinX();
+			minY = link.getMinY();
+			maxX = link.getMaxX();
+			maxY = link.getMaxY();
 			lb = null;
 			rt = null;
 			
 		}
 
 		public void extendRange(Link link) {
-			minX = Math.min(minX, link.minX);
-			minY = Math.min(minY, link.minY);
-			maxX = Math.max(maxX, link.maxX);
-			maxY = Math.max(maxY, link.maxY);			
+			minX = Math.min(minX, link.getMinX());
+			minY = Math.min(minY, link.getMinY());
+			maxX = Math.max(maxX, link.getMaxX());
+			maxY = Math.max(maxY, link.getMaxY());			
 		}
 	}
 }
\ No newline at end of file
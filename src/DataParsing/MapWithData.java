@@ -6,8 +6,9 @@ import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.time.ZoneId;
 import java.util.ArrayList;
-import java.util.PriorityQueue;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.log4j.jmx.Agent;
 
@@ -23,8 +24,8 @@ public class MapWithData {
 	// Full path of the file containing the resources to be loaded to the simulator
 	private String resourceFile;    
 
-	// Priority queue of events
-	public PriorityQueue<Event> events;
+	// Queue of events
+	public EventQueue events;
 
 	// The earliest resource introduction time. The time is used to determine the time at which
 	// agents are to be deployed. The agents are to be deployed at time earliestResourceTime - 1.
@@ -40,6 +41,12 @@ public class MapWithData {
 	// Time Zone ID of the map; for conversion from the time stamps in a resource dataset file to Linux epochs.
 	protected ZoneId zoneId;
 
+	// true to parse the resource dataset file memory-mapped in place, false to read it through a Scanner.
+	protected boolean mappedParser = true;
+
+	// The number of threads that map-match resources; 0 uses all available processors.
+	protected int mapMatchingParallelism = 1;
+
 	/**
 	 * Constructor of MapWithData
 	 * @param map reference to the map
@@ -50,10 +57,36 @@ public class MapWithData {
 		this.map = map;
 		this.resourceFile = resourceFile;
 		this.agentPlacementRandomSeed = agentPlacementRandomSeed;
-		events = new PriorityQueue<>();
+		events = new IndexedEventHeap();
 		zoneId = map.computeZoneId();
 	}
 
+	/**
+	 * Set how the resource dataset file is parsed. Both give the same resources.
+	 * 
+	 * @param mappedParser true to parse the file memory-mapped in place, false to read it through a Scanner
+	 */
+	public void setMappedParser(boolean mappedParser) {
+		this.mappedParser = mappedParser;
+	}
+
+	/**
+	 * Set the number of threads that map-match the resources of the dataset file. The resources
+	 * are the same with any number of threads.
+	 * 
+	 * @param mapMatchingParallelism the number of threads; 0 to use all available processors
+	 */
+	public void setMapMatchingParallelism(int mapMatchingParallelism) {
+		this.mapMatchingParallelism = mapMatchingParallelism;
+	}
+
+	/**
+	 * @return a parser of the resource dataset file
+	 */
+	public CSVNewYorkParser parser() {
+		return new CSVNewYorkParser(resourceFile, zoneId, mappedParser);
+	}
+
 	/**
 	 * Maps each agent and each resource onto the nearest location on the map
 	 * according to the agent/resource's longitude and latitude. Creates resource events 
@@ -66,13 +99,32 @@ public class MapWithData {
 	 */
 	public long createMapWithData(Simulator simulator) {
  
-		CSVNewYorkParser parser = new CSVNewYorkParser(resourceFile, zoneId);
-		ArrayList<Resource> resourcesParsed = parser.parse();
+		ArrayList<Resource> resourcesParsed = parser().parse();
 		try {
-            for (Resource resource : resourcesParsed) {
-				// map matching
-				LocationOnRoad pickupMatch = mapMatch(resource.getPickupLon(), resource.getPickupLat());
-				LocationOnRoad dropoffMatch = mapMatch(resource.getDropoffLon(), resource.getDropoffLat());
+			// map matching, pickups at even and dropoffs at odd indices
+			double[] longitudes = new double[2 * resourcesParsed.size()];
+			double[] latitudes = new double[2 * resourcesParsed.size()];
+			for (int i = 0; i < resourcesParsed.size(); i++) {
+				Resource resource = resourcesParsed.get(i);
+				longitudes[2 * i] = resource.getPickupLon();
+				latitudes[2 * i] = resource.getPickupLat();
+				longitudes[2 * i + 1] = resource.getDropoffLon();
+				latitudes[2 * i + 1] = resource.getDropoffLat();
+			}
+			MapMatches matches;
+			ExecutorService executor = newMapMatchingExecutor();
+			try {
+				matches = mapMatch(longitudes, latitudes, executor);
+			} finally {
+				if (executor != null) {
+					executor.shutdown();
+				}
+			}
+
+			for (int i = 0; i < resourcesParsed.size(); i++) {
+				Resource resource = resourcesParsed.get(i);
+				LocationOnRoad pickupMatch = matches.location(2 * i);
+				LocationOnRoad dropoffMatch = matches.location(2 * i + 1);
 
 				ResourceEvent ev = new ResourceEvent(pickupMatch, dropoffMatch, resource.getTime(), simulator);
 				events.add(ev);
@@ -101,11 +153,32 @@ public class MapWithData {
 	public LocationOnRoad mapMatch(double longitude, double latitude) {
 		Link link = map.getNearestLink(longitude, latitude);
 		double xy[] = map.projector().fromLatLon(latitude, longitude);
-		double [] snapResult = snap(link.from.getX(), link.from.getY(), link.to.getX(), link.to.getY(), xy[0], xy[1]);
-		double distanceFromStartVertex = this.distance(snapResult[0], snapResult[1], link.from.getX(), link.from.getY());
-		long travelTimeFromStartVertex = Math.round(distanceFromStartVertex / link.length * link.travelTime);
-		long travelTimeFromStartIntersection = link.beginTime + travelTimeFromStartVertex;
-		return new LocationOnRoad(link.road, travelTimeFromStartIntersection);		
+		long travelTimeFromStartIntersection = link.travelTimeFromStartIntersection(xy[0], xy[1]);
+		return new LocationOnRoad(link.getRoad(), travelTimeFromStartIntersection);		
+	}
+
+	/**
+	 * Match a batch of points to the closest locations on the map (see CityMap.mapMatch). The
+	 * locations are the same as those of mapMatch for each point.
+	 *
+	 * @param longitudes the longitudes of the points
+	 * @param latitudes the latitudes of the points
+	 * @param executor the executor that matches the points, see newMapMatchingExecutor
+	 * @return the locations of the points
+	 */
+	public MapMatches mapMatch(double[] longitudes, double[] latitudes, ExecutorService executor) {
+		return map.mapMatch(longitudes, latitudes, executor);
+	}
+
+	/**
+	 * Create the threads that map-match resources in batches. The caller reuses them for all its
+	 * batches and shuts them down when it is done.
+	 *
+	 * @return a pool of the map matching threads, or null if resources are matched by the calling thread
+	 */
+	public ExecutorService newMapMatchingExecutor() {
+		int parallelism = mapMatchingParallelism > 0 ? mapMatchingParallelism : Runtime.getRuntime().availableProcessors();
+		return parallelism > 1 ? Executors.newFixedThreadPool(parallelism) : null;
 	}
 
 	/**
@@ -192,7 +265,7 @@ public class MapWithData {
 	 * 
 	 * @return events
 	 */
-	public PriorityQueue<Event> getEvents() {
+	public EventQueue getEvents() {
 		return events;
 	}
 
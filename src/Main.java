@@ -96,6 +96,12 @@ public class Main {
 				LogManager.getLogManager().reset();
 			}
 			
+			try {
+				simulator.setOptions(prop);
+			} catch (IllegalArgumentException e) {
+				System.out.println(e.getMessage());
+				System.exit(1);
+			}
 			simulator.configure(mapJSONFile, datasetFile, numberOfAgents, boundingPolygonKMLFile, resourceMaximumLifeTime, agentPlacementSeed, speedReduction);
 
 			simulator.run();
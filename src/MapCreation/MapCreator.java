@@ -83,6 +83,9 @@ public class MapCreator {
 	// Used to project from lat,lon to x,y in meters
 	GeoProjector projector;
 
+	// Makes the changes to vertices, intersections and roads, which agents cannot make.
+	final MapBuilder builder;
+
 	// The bounding polygon for cropping the map.
 	// Created from boundingPolygonKMLFile
 	static List<double[]> boundingPolygon;
@@ -92,12 +95,15 @@ public class MapCreator {
 	 * converts it into a map represented by { @code vertices ).
 	 * Uses Json.simple package
 	 *
+	 * @param builder the builder that makes the changes to the map
 	 * @param fileName the JSON file that will be read
 	 * @param boundingPolygonKMLFile a KML file defining a bounding polygon of the simulated area
 	 * modifies {@code vertices }
 	 *
 	 */
-	public MapCreator(String mapFile, String boundingPolygonKMLFile, double speedReduction) {
+	public MapCreator(MapBuilder builder, String mapFile, String boundingPolygonKMLFile, double speedReduction) {
+
+		this.builder = builder;
 
 		boundingPolygon = getPolygonFromKML(boundingPolygonKMLFile);
 
@@ -213,12 +219,12 @@ public class MapCreator {
 						long id1 = (long)jsonvertices.get(i);
 						long id2 = (long)jsonvertices.get(i+1);
 
-						double distance = vertices.get(id1).xy.distance(vertices.get(id2).xy);
+						double distance = vertices.get(id1).getXY().distance(vertices.get(id2).getXY());
 
 						// Convert km/h to meters per second; apply speed reduction
-						vertices.get(id1).addEdge(vertices.get(id2), distance, maxSpeed * 1000 / 3600 / speedReduction);
+						builder.addEdge(vertices.get(id1), vertices.get(id2), distance, maxSpeed * 1000 / 3600 / speedReduction);
 						if (!oneway) {
-							vertices.get(id2).addEdge(vertices.get(id1), distance, maxSpeed * 1000 / 3600 / speedReduction);
+							builder.addEdge(vertices.get(id2), vertices.get(id1), distance, maxSpeed * 1000 / 3600 / speedReduction);
 						}
 					}
 				}
@@ -276,7 +282,7 @@ public class MapCreator {
 			long id = (long) idObj;
 			Vertex vertex = vertices.get(id);
 			if (!insidePolygon(vertex.longitude, vertex.latitude)) {
-				vertex.severVertex();
+				builder.severVertex(vertex);
 				vertices.remove(id);
 			}
 		}
@@ -391,7 +397,7 @@ public class MapCreator {
 		}
 		// remove all the vertices that have to be removed
 		for (Long id : toRemove) {
-			vertices.get(id).cutVertex();
+			builder.cutVertex(vertices.get(id));
 			vertices.remove(id);
 		}
 	}
@@ -407,7 +413,7 @@ public class MapCreator {
 			Set<Link> roadsFrom = vertex.getLinksFrom();
 			Set<Link> roadsTo = vertex.getLinksTo();
 			// Skip vertices that connect two one way links. 
-			if ((roadsFrom.size() == 1 && roadsTo.size() == 1) && !(roadsFrom.toArray(new Link[1])[0].to == roadsTo.toArray(new Link[1])[0].from)) {
+			if ((roadsFrom.size() == 1 && roadsTo.size() == 1) && !(roadsFrom.toArray(new Link[1])[0].getTo() == roadsTo.toArray(new Link[1])[0].getFrom())) {
 				// do not promote
 				continue;
 			}
@@ -445,9 +451,8 @@ public class MapCreator {
 	 * @param vertex the vertex to promote
 	 */
 	public void promoteIntersection(Vertex vertex) {
-		Intersection intersection= new Intersection(vertex);
+		Intersection intersection= builder.promoteIntersection(vertex);
 		intersections.put(intersection.id, intersection);
-		vertex.intersection = intersection;
 	}
 
 	/**
@@ -455,29 +460,25 @@ public class MapCreator {
 	 */
 	public void createRoads() {
 		for (Intersection intersection : intersections.values()) {
-			Vertex vertex = intersection.vertex;
-			for (Link link : vertex.linksMapFrom.values()) {
-				// create a new road
-				Road road = new Road();
-				road.from = intersection;
-
+			Vertex vertex = builder.vertexOf(intersection);
+			for (Link link : vertex.getLinksMapFrom().values()) {
 				// extend the road by visiting non-intersection vertices one by one until
 				// an intersection is reached
+				List<Link> links = new ArrayList<>();
 				Link currentLink = link;
-				while (currentLink.to.intersection == null) {
-					road.addLink(currentLink);
-					for (Link linkFrom : currentLink.to.linksMapFrom.values()) {
-						if (linkFrom.to != currentLink.from) {
+				while (currentLink.getTo().getIntersection() == null) {
+					links.add(currentLink);
+					for (Link linkFrom : currentLink.getTo().getLinksMapFrom().values()) {
+						if (linkFrom.getTo() != currentLink.getFrom()) {
 							currentLink = linkFrom;
 							break;
 						}
 					}
 				}
 				// add the link that connects to the end intersection
-				road.addLink(currentLink);
-				road.to = currentLink.to.intersection;
-				intersection.roadsMapFrom.put(road.to, road);
-				road.to.roadsMapTo.put(intersection,  road);
+				links.add(currentLink);
+				// create a new road
+				builder.createRoad(intersection, currentLink.getTo().getIntersection(), links);
 			}
 		}
 	}
@@ -518,33 +519,33 @@ public class MapCreator {
 			// check if the distance between two connected vertices is smaller than
 			// the minimum distance
 			for (Link link : interFrom.getLinksFrom()) {
-				if (link.from.distanceTo(link.to) <= distance) {
-					Vertex interTo = link.to;
+				if (link.getFrom().distanceTo(link.getTo()) <= distance) {
+					Vertex interTo = link.getTo();
 					double newLongtitude = (interFrom.longitude + interTo.longitude)/2;
 					double newLatitude = (interFrom.latitude + interTo.latitude)/2;
 					double newXY[] = projector.fromLatLon(newLatitude, newLongtitude);
 					// it is very important that the id of newInter is unique!
 					Vertex newInter = new Vertex(newLongtitude, newLatitude, newXY[0], newXY[1], idCounter++);  
 					for (Link inter1From : interFrom.getLinksFrom()) {
-						if (inter1From.to.id != interTo.id) {
-							newInter.addEdge(inter1From.to, newInter.distanceTo(inter1From.to), inter1From.speed);
+						if (inter1From.getTo().getId() != interTo.getId()) {
+							builder.addEdge(newInter, inter1From.getTo(), newInter.distanceTo(inter1From.getTo()), inter1From.speed);
 						}
 					}
 					for (Link inter1To : interFrom.getLinksTo()) {
-						inter1To.from.addEdge(newInter, newInter.distanceTo(inter1To.from), inter1To.speed);
+						builder.addEdge(inter1To.getFrom(), newInter, newInter.distanceTo(inter1To.getFrom()), inter1To.speed);
 					}
 					for (Link inter2From : interTo.getLinksFrom()) { 
-						newInter.addEdge(inter2From.to, newInter.distanceTo(inter2From.to), inter2From.speed);
+						builder.addEdge(newInter, inter2From.getTo(), newInter.distanceTo(inter2From.getTo()), inter2From.speed);
 					}
 					for (Link inter2To : interTo.getLinksTo()) {
-						if (inter2To.from.id != interFrom.id) {
-							inter2To.from.addEdge(newInter, newInter.distanceTo(inter2To.from), inter2To.speed);
+						if (inter2To.getFrom().getId() != interFrom.getId()) {
+							builder.addEdge(inter2To.getFrom(), newInter, newInter.distanceTo(inter2To.getFrom()), inter2To.speed);
 						}
-					}                    interFrom.severVertex();
-					interTo.severVertex();
-					vertices.remove(interFrom.id);
-					vertices.remove(interTo.id);
-					vertices.put(newInter.id, newInter);
+					}                    builder.severVertex(interFrom);
+					builder.severVertex(interTo);
+					vertices.remove(interFrom.getId());
+					vertices.remove(interTo.getId());
+					vertices.put(newInter.getId(), newInter);
 					return;
 				}
 			}
@@ -584,7 +585,7 @@ public class MapCreator {
 				long id = (long) idObj;
 				Vertex vertex = vertices.get(id);
 				if (vertex.getAdjacentFrom().isEmpty()) {
-					vertex.cutVertex();
+					builder.cutVertex(vertex);
 					vertices.remove(id);
 					check = true;
 				}
@@ -599,7 +600,7 @@ public class MapCreator {
 					long id = (long) idObj;
 					if (!reached.contains(id)) {
 						Vertex vertex = vertices.get(id);
-						vertex.cutVertex();
+						builder.cutVertex(vertex);
 						vertices.remove(id);
 						check = true;
 					}
@@ -610,8 +611,8 @@ public class MapCreator {
 
 	public void checkNeighbors(Vertex inter, Set<Long> reached) {
 		for (Vertex neighbor : inter.getAdjacentFrom()) {
-			if (!reached.contains(neighbor.id)) {
-				reached.add(neighbor.id);
+			if (!reached.contains(neighbor.getId())) {
+				reached.add(neighbor.getId());
 				checkNeighbors(neighbor, reached);
 			}
 		}
@@ -1,10 +1,10 @@
 package UserExamples;
 
 import COMSETsystem.BaseAgent;
-import COMSETsystem.CityMap;
+import COMSETsystem.CityMapView;
 import COMSETsystem.Intersection;
 import COMSETsystem.LocationOnRoad;
-import COMSETsystem.Road;
+import COMSETsystem.RouteCursor;
 
 import java.util.*;
 import java.util.logging.Level;
@@ -19,8 +19,8 @@ import java.util.logging.Logger;
  */
 public class AgentRandomDestination extends BaseAgent {
 
-	// search route stored as a list of intersections.
-	LinkedList<Intersection> route = new LinkedList<Intersection>();
+	// search route, followed one intersection at a time.
+	RouteCursor route;
 
 	// random number generator
 	Random rnd;
@@ -34,8 +34,9 @@ public class AgentRandomDestination extends BaseAgent {
 	 * @param id An id that is unique among all agents and resources
 	 * @param map The map
 	 */
-	public AgentRandomDestination(long id, CityMap map) {
+	public AgentRandomDestination(long id, CityMapView map) {
 		super(id, map);
+		route = map.routeCursor();
 		rnd = new Random(id);
 		if (dataModel == null) {
 			dataModel = new DummyDataModel(map);
@@ -48,7 +49,7 @@ public class AgentRandomDestination extends BaseAgent {
 	 * 
 	 * IMPORTANT: The first intersection on the resulted search route must not be the
 	 * end intersection of the current road, i.e., it must not be that 
-	 * route.get(0) == currentLocation.road.to. 
+	 * route.next() == currentLocation.road.to. 
 	 */
 
 	@Override
@@ -64,15 +65,13 @@ public class AgentRandomDestination extends BaseAgent {
 		if (destinationIntersection == sourceIntersection) {
 			// destination cannot be the source
 			// if destination is the source, choose a neighbor to be the destination
-			Road[] roadsFrom = sourceIntersection.roadsMapFrom.values().toArray(new Road[sourceIntersection.roadsMapFrom.values().size()]);
-			destinationIntersection = roadsFrom[0].to;
+			destinationIntersection = sourceIntersection.getAdjacentFrom().iterator().next();
 		}
-		route = map.shortestTravelTimePath(sourceIntersection, destinationIntersection);
-		route.poll(); // Ensure that route.get(0) != currentLocation.road.to.
+		route.reset(sourceIntersection, destinationIntersection); // The route starts after currentLocation.road.to.
 	}
 
 	/**
-	 * This method polls the first intersection in the current route and returns this intersection.
+	 * This method takes the next intersection of the current route and returns this intersection.
 	 * 
 	 * This method is a callback method which is called when the agent reaches an intersection. The Simulator 
 	 * will move the agent to the returned intersection and then call this method again, and so on. 
@@ -84,17 +83,44 @@ public class AgentRandomDestination extends BaseAgent {
 	@Override
 	public Intersection nextIntersection(LocationOnRoad currentLocation, long currentTime) {
                 //System.out.println("Agent " + this.id+ " Loc "+ currentLocation.road + " currentTime " + currentTime);
-		if (route.size() != 0) {
+		if (route.hasNext()) {
 			// Route is not empty, take the next intersection.
-			Intersection nextIntersection = route.poll();
+			Intersection nextIntersection = route.next();
 			return nextIntersection;
 		} else {
 			// Finished the planned route. Plan a new route.
 			planSearchRoute(currentLocation, currentTime);
-			return route.poll();
+			return route.next();
 		}		
 	}
 
+	/**
+	 * This method commits to the rest of the current route, so that the Simulator moves the agent to the 
+	 * destination of the route in a single step. If the route is finished, a new route is planned first.
+	 * The intersections are the same as those that nextIntersection would return one at a time.
+	 */
+	@Override
+	public List<Intersection> commitRoute(LocationOnRoad currentLocation, long currentTime) {
+		if (!route.hasNext()) {
+			// Finished the planned route. Plan a new route.
+			planSearchRoute(currentLocation, currentTime);
+		}
+		List<Intersection> committed = new ArrayList<Intersection>();
+		while (route.hasNext()) {
+			committed.add(route.next());
+		}
+		return committed;
+	}
+
+	/**
+	 * The agent only changes its own route and random number generator when it moves, and the
+	 * shared data model is read-only, so it may be moved in parallel with other agents.
+	 */
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
 	/**
 	 * A dummy implementation of the assignedTo callback function which does nothing but clearing the current route.
 	 * assignedTo is called when the agent is assigned to a resource.
@@ -1,7 +1,7 @@
 package UserExamples;
 
 import COMSETsystem.BaseAgent;
-import COMSETsystem.CityMap;
+import COMSETsystem.CityMapView;
 import COMSETsystem.Intersection;
 import COMSETsystem.LocationOnRoad;
 
@@ -30,7 +30,7 @@ public class AgentRandomWalk extends BaseAgent {
 	 * @param id An id that is unique among all agents and resources
 	 * @param map The map
 	 */
-	public AgentRandomWalk(long id, CityMap map) {
+	public AgentRandomWalk(long id, CityMapView map) {
 		super(id, map);
 		rnd = new Random(id);
 		if (dataModel == null) {
@@ -79,6 +79,15 @@ public class AgentRandomWalk extends BaseAgent {
 		}		
 	}
 
+	/**
+	 * The agent only changes its own route and random number generator when it moves, and the
+	 * shared data model is read-only, so it may be moved in parallel with other agents.
+	 */
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
 	/**
 	 * A dummy implementation of the assignedTo callback function which does nothing but clearing the current route.
 	 * assignedTo is called when the agent is assigned to a resource.
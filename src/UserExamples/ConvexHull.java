@@ -9,7 +9,7 @@ public class ConvexHull {
 
     public static List<Intersection> convexHull(List<Intersection> intersections) {
         if (intersections.isEmpty()) return new ArrayList<>();
-        intersections.sort((Intersection i, Intersection j) -> Double.compare(i.xy.getX(), j.xy.getX()));
+        intersections.sort((Intersection i, Intersection j) -> Double.compare(i.getX(), j.getX()));
         List<Intersection> hull = new ArrayList<>();
 
         // lower hull
@@ -36,6 +36,6 @@ public class ConvexHull {
 
     // ccw returns true if the three points make a counter-clockwise turn
     private static boolean ccw(Intersection a, Intersection b, Intersection c) {
-        return ((b.xy.getX() - a.xy.getX()) * (c.xy.getY() - a.xy.getY())) > ((b.xy.getY() - a.xy.getY()) * (c.xy.getX() - a.xy.getX()));
+        return ((b.getX() - a.getX()) * (c.getY() - a.getY())) > ((b.getY() - a.getY()) * (c.getX() - a.getX()));
     }
 }
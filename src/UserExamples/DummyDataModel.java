@@ -1,6 +1,6 @@
 package UserExamples;
 
-import COMSETsystem.CityMap;
+import COMSETsystem.CityMapView;
 
 /**
  * A dummy data model that provides nothing.
@@ -13,9 +13,9 @@ import COMSETsystem.CityMap;
 public class DummyDataModel {
 
 	// A reference to the map.
-	CityMap map;
+	CityMapView map;
 
-	public DummyDataModel(CityMap map) {
+	public DummyDataModel(CityMapView map) {
 		this.map = map;
 	}
 
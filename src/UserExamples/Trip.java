@@ -1,6 +1,6 @@
 package UserExamples;
 
-import COMSETsystem.CityMap;
+import COMSETsystem.CityMapView;
 import COMSETsystem.Intersection;
 import COMSETsystem.Link;
 import COMSETsystem.Vertex;
@@ -10,14 +10,14 @@ import java.util.*;
 
 public class Trip {
 
-    private CityMap map;
+    private CityMapView map;
     private KdTree index = new KdTree();
     private List<Long> intersectionIDs;
     private HashMap<Long, Double> weights;
     private int id;
 
 
-    public Trip(int id, List<Long> intersectionIDs, CityMap map) {
+    public Trip(int id, List<Long> intersectionIDs, CityMapView map) {
         this.id = id;
         this.map = map;
         this.weights = new HashMap<>();
@@ -32,8 +32,8 @@ public class Trip {
             tripVertices.add(new Vertex(
                     map.intersections().get(intersectionID).longitude,
                     map.intersections().get(intersectionID).latitude,
-                    map.intersections().get(intersectionID).xy.getX(),
-                    map.intersections().get(intersectionID).xy.getY(),
+                    map.intersections().get(intersectionID).getX(),
+                    map.intersections().get(intersectionID).getY(),
                     intersectionID
                     ));
         }
@@ -80,12 +80,12 @@ public class Trip {
             }
         }
 
-        return trip;
+        return new ArrayList<>(trip);
     }
 
 
     public Intersection findClosest(Intersection intersection) {
-        return map.intersections().get(this.index.nearest(intersection.xy).from.id);
+        return map.intersections().get(this.index.nearest(intersection.getXY()).getFrom().getId());
     }
 
     public int getTravelDuration() {
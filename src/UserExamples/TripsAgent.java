@@ -8,8 +8,17 @@ import java.util.logging.Logger;
 
 public class TripsAgent extends BaseAgent {
 
-    // search route stored as a list of intersections.
-    LinkedList<Intersection> route = new LinkedList<Intersection>();
+    // the route to the trip, followed one intersection at a time.
+    RouteCursor route;
+
+    // the intersections of the trip that are driven after the route, or null.
+    List<Long> tripRoute = null;
+
+    // tripRoute is driven from index tripCut + 1 on, wrapping around, until just before tripCut.
+    int tripCut;
+
+    // the number of intersections of tripRoute driven so far.
+    int tripStep;
 
     // a static singleton object of a data model, shared by all agents
     static TripsDataModel dataModel = null;
@@ -20,8 +29,9 @@ public class TripsAgent extends BaseAgent {
      * @param id An id that is unique among all agents and resources
      * @param map The map
      */
-    public TripsAgent(long id, CityMap map) {
+    public TripsAgent(long id, CityMapView map) {
         super(id, map);
+        route = map.routeCursor();
         if (dataModel == null) {
             dataModel = new TripsDataModel(map);
         }
@@ -33,6 +43,7 @@ public class TripsAgent extends BaseAgent {
     @Override
     public void planSearchRoute(LocationOnRoad currentLocation, long currentTime) {
         route.clear();
+        tripRoute = null;
         Intersection currentIntersection = currentLocation.road.to;
 
         // sample trip w/o journey
@@ -42,21 +53,14 @@ public class TripsAgent extends BaseAgent {
         Intersection firstTripIntersection = trip.findClosest(currentIntersection);
         // if the current intersection is not a trip intersection drive from current intersection to the trip
         if (!currentIntersection.equals(firstTripIntersection)) {
-            LinkedList<Intersection> initPath = this.map.shortestTravelTimePath(currentIntersection, firstTripIntersection);
-            // add this way to the planned route
-            route.addAll(initPath.subList(1, initPath.size())); // without the first entry as it equals to currentLocation.road.to
+            // drive this way first (without the current intersection as it equals to currentLocation.road.to)
+            route.reset(currentIntersection, firstTripIntersection);
         }
 
         // cut the trip at the firstTripIntersection and start from there (exclude the current intersection)
-        int cut = trip.getIntersectionIDs().indexOf(firstTripIntersection.id);
-        List<Long> firstPartIds = trip.getIntersectionIDs().subList(cut + 1, trip.size());
-        for (Long identifier : firstPartIds) {
-            route.add(map.intersections().get(identifier));
-        }
-        List<Long> secondPartIds = trip.getIntersectionIDs().subList(0, cut);
-        for (Long identifier : secondPartIds) {
-            route.add(map.intersections().get(identifier));
-        }
+        tripRoute = trip.getIntersectionIDs();
+        tripCut = tripRoute.indexOf(firstTripIntersection.id);
+        tripStep = 0;
     }
 
     /**
@@ -71,15 +75,55 @@ public class TripsAgent extends BaseAgent {
 
     @Override
     public Intersection nextIntersection(LocationOnRoad currentLocation, long currentTime) {
-        if (route.size() != 0) {
+        if (hasNextInRoute()) {
             // Route is not empty, take the next intersection.
-            Intersection nextIntersection = route.poll();
+            Intersection nextIntersection = pollRoute();
             return nextIntersection;
         } else {
             // Finished the planned route. Plan a new route.
             planSearchRoute(currentLocation, currentTime);
-            return route.poll();
+            return pollRoute();
+        }
+    }
+
+    /**
+     * Commit to the rest of the planned route, i.e., the route to the trip followed by the trip, so that the
+     * simulator moves the agent along it in a single step. If the route is finished, a new route is planned first.
+     */
+    @Override
+    public List<Intersection> commitRoute(LocationOnRoad currentLocation, long currentTime) {
+        if (!hasNextInRoute()) {
+            // Finished the planned route. Plan a new route.
+            planSearchRoute(currentLocation, currentTime);
+        }
+        List<Intersection> committed = new ArrayList<>();
+        while (hasNextInRoute()) {
+            committed.add(pollRoute());
+        }
+        return committed;
+    }
+
+    /**
+     * @return true if the planned route, i.e., the route to the trip followed by the trip, has more intersections
+     */
+    private boolean hasNextInRoute() {
+        return route.hasNext() || (tripRoute != null && tripStep < tripRoute.size() - 1);
+    }
+
+    /**
+     * Take the next intersection of the planned route.
+     *
+     * @return the next intersection, or null if the planned route is finished
+     */
+    private Intersection pollRoute() {
+        if (route.hasNext()) {
+            return route.next();
+        }
+        if (tripRoute != null && tripStep < tripRoute.size() - 1) {
+            int index = (tripCut + 1 + tripStep++) % tripRoute.size();
+            return map.intersections().get(tripRoute.get(index));
         }
+        return null;
     }
 
     /**
@@ -91,6 +135,7 @@ public class TripsAgent extends BaseAgent {
     public void assignedTo(LocationOnRoad currentLocation, long currentTime, long resourceId, LocationOnRoad resourcePikcupLocation, LocationOnRoad resourceDropoffLocation) {
         // Clear the current route.
         route.clear();
+        tripRoute = null;
 
         Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Agent " + this.id + " assigned to resource " + resourceId);
         Logger.getLogger(this.getClass().getName()).log(Level.INFO, "currentLocation = " + currentLocation);
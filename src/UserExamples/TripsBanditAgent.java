@@ -36,9 +36,24 @@ public class TripsBanditAgent extends BaseAgent {
     private static final boolean WITH_APPROACH = false;
 
     /**
-     * The route that is currently applied.
+     * The route to the trip, followed one intersection at a time.
      */
-    private LinkedList<Intersection> route = new LinkedList<>();
+    private RouteCursor route;
+
+    /**
+     * The intersections of the trip that are driven after the route, or null.
+     */
+    private List<Long> tripRoute = null;
+
+    /**
+     * tripRoute is driven from index tripCut + 1 on, wrapping around, until just before tripCut.
+     */
+    private int tripCut;
+
+    /**
+     * The number of intersections of tripRoute driven so far.
+     */
+    private int tripStep;
 
     /**
      * The data model.
@@ -61,8 +76,9 @@ public class TripsBanditAgent extends BaseAgent {
      * @param id An id that is unique among all agents and resources
      * @param map The map
      */
-    public TripsBanditAgent(long id, CityMap map) {
+    public TripsBanditAgent(long id, CityMapView map) {
         super(id, map);
+        route = map.routeCursor();
         if (dataModel == null) {
             dataModel = new TripsDataModel(map);
         }
@@ -73,6 +89,7 @@ public class TripsBanditAgent extends BaseAgent {
     @Override
     public void planSearchRoute(LocationOnRoad currentLocation, long currentTime) {
         route.clear();
+        tripRoute = null;
         Intersection currentIntersection = currentLocation.road.to;
 
         if (trip == null) {
@@ -83,23 +100,16 @@ public class TripsBanditAgent extends BaseAgent {
         Intersection firstTripIntersection = trip.findClosest(currentIntersection);
         // if the current intersection is not a trip intersection drive from current intersection to the trip
         if (!currentIntersection.equals(firstTripIntersection)) {
-            LinkedList<Intersection> initPath = this.map.shortestTravelTimePath(currentIntersection, firstTripIntersection);
-            // add this way to the planned route
-            route.addAll(initPath.subList(1, initPath.size())); // without the first entry as it equals to currentLocation.road.to
+            // drive this way first (without the current intersection as it equals to currentLocation.road.to)
+            route.reset(currentIntersection, firstTripIntersection);
         }
 
         if (currentIntersection.equals(firstTripIntersection) || WITH_APPROACH) {
 
             // cut the trip at the firstTripIntersection and start from there (exclude the current intersection)
-            int cut = trip.getIntersectionIDs().indexOf(firstTripIntersection.id);
-            List<Long> firstPartIds = trip.getIntersectionIDs().subList(cut + 1, trip.size());
-            for (Long identifier : firstPartIds) {
-                route.add(map.intersections().get(identifier));
-            }
-            List<Long> secondPartIds = trip.getIntersectionIDs().subList(0, cut);
-            for (Long identifier : secondPartIds) {
-                route.add(map.intersections().get(identifier));
-            }
+            tripRoute = trip.getIntersectionIDs();
+            tripCut = tripRoute.indexOf(firstTripIntersection.id);
+            tripStep = 0;
 
             searchStart = currentTime;
         }
@@ -108,15 +118,55 @@ public class TripsBanditAgent extends BaseAgent {
 
     @Override
     public Intersection nextIntersection(LocationOnRoad currentLocation, long currentTime) {
-        if (route.size() != 0) {
+        if (hasNextInRoute()) {
             // Route is not empty, take the next intersection.
-            Intersection nextIntersection = route.poll();
+            Intersection nextIntersection = pollRoute();
             return nextIntersection;
         } else {
             // Finished the planned route. Plan a new route.
             planSearchRoute(currentLocation, currentTime);
-            return route.poll();
+            return pollRoute();
+        }
+    }
+
+    /**
+     * Commit to the rest of the planned route, i.e., the route to the trip followed by the trip, so that the
+     * simulator moves the agent along it in a single step. If the route is finished, a new route is planned first.
+     */
+    @Override
+    public List<Intersection> commitRoute(LocationOnRoad currentLocation, long currentTime) {
+        if (!hasNextInRoute()) {
+            // Finished the planned route. Plan a new route.
+            planSearchRoute(currentLocation, currentTime);
+        }
+        List<Intersection> committed = new ArrayList<>();
+        while (hasNextInRoute()) {
+            committed.add(pollRoute());
+        }
+        return committed;
+    }
+
+    /**
+     * @return true if the planned route, i.e., the route to the trip followed by the trip, has more intersections
+     */
+    private boolean hasNextInRoute() {
+        return route.hasNext() || (tripRoute != null && tripStep < tripRoute.size() - 1);
+    }
+
+    /**
+     * Take the next intersection of the planned route.
+     *
+     * @return the next intersection, or null if the planned route is finished
+     */
+    private Intersection pollRoute() {
+        if (route.hasNext()) {
+            return route.next();
+        }
+        if (tripRoute != null && tripStep < tripRoute.size() - 1) {
+            int index = (tripCut + 1 + tripStep++) % tripRoute.size();
+            return map.intersections().get(tripRoute.get(index));
         }
+        return null;
     }
 
     /**
@@ -174,6 +224,7 @@ public class TripsBanditAgent extends BaseAgent {
     public void assignedTo(LocationOnRoad currentLocation, long currentTime, long resourceId, LocationOnRoad resourcePikcupLocation, LocationOnRoad resourceDropoffLocation) {
         // Clear the current route.
         route.clear();
+        tripRoute = null;
 
         if (searchStart != -1) {
             updateTheta(currentTime + map.travelTimeBetween(currentLocation, resourcePikcupLocation));
@@ -246,6 +297,7 @@ public class TripsBanditAgent extends BaseAgent {
                 }
 
                 Simulator simulator = new Simulator(agentClass);
+                simulator.setOptions(prop);
                 simulator.configure(mapJSONFile, datasetFile, numberOfAgents, boundingPolygonKMLFile, resourceMaximumLifeTime, agentPlacementSeed, speedReduction);
                 simulator.run();
 //                file.write(simulator.run().getAverageAgentSearchTime() + "\n");
@@ -17,7 +17,7 @@ public class TripsDataModel {
     private String loadedData = null;
 
     // A reference to the map.
-    private final CityMap map;
+    private final CityMapView map;
 
     // The map of trips.
     private final Map<Intersection, Trip> trips = new HashMap<>();
@@ -35,9 +35,9 @@ public class TripsDataModel {
     /**
      * Constructor for the TripsDataModel.
      *
-     * @param map An instance of the CityMap
+     * @param map A read-only view of the map
      */
-    public TripsDataModel(CityMap map) {
+    public TripsDataModel(CityMapView map) {
         this.map = map;
         ensureDataLoaded(-1);
     }
@@ -7,6 +7,11 @@ import me.tongfei.progressbar.ProgressBar;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 public class TripsDataProcessor {
 
@@ -32,7 +37,7 @@ public class TripsDataProcessor {
 
 
     // A reference to the map.
-    CityMap map;
+    CityMapView map;
 
     // The map of trips.
     private HashMap<Intersection, Trip> trips = new HashMap<>();
@@ -48,8 +53,17 @@ public class TripsDataProcessor {
     // pickup count map <intersectionID -> <time -> count>
     private HashMap<Long, HashMap<Long, Integer>> pickupCounts;
 
+    // The number of threads that parse and map-match the data files, one per available processor.
+    private final int ingestParallelism = Runtime.getRuntime().availableProcessors();
 
-    public TripsDataProcessor(CityMap map) {
+    // The size in bytes of the chunks of a data file that are parsed by one thread.
+    private static final long INGEST_CHUNK_SIZE = 32L << 20;
+
+    // The number of pickups that a thread map-matches at once.
+    private static final int MAP_MATCH_BATCH_SIZE = 4096;
+
+
+    public TripsDataProcessor(CityMapView map) {
         this.map = map;
     }
 
@@ -146,37 +160,15 @@ public class TripsDataProcessor {
 
         Map<Intersection, Set<Long>> reachMap = new HashMap<>();
 
+        DijkstraEngine engine = new DijkstraEngine(map.graph());
+
         for (Long intersectionID : ProgressBar.wrap(map.intersections().keySet(), "Trip Calculations")) {
             // path search: collect all intersection within 5 min radius for calculating the trip
-            // use intersections that are reachable within 10mins for weighting the trip
-            Set<Long> visited = new HashSet<>();
+            // (these are also the intersections used for weighting the trip)
             Set<Long> forHull = new HashSet<>();
-            PriorityQueue<QEntry> pq = new PriorityQueue<>();
-            pq.add(new QEntry(intersectionID, 0));
-
-            while (!pq.isEmpty()) {
-                QEntry curr = pq.poll();
-                if (!visited.add(curr.getIntersectionID()))
-                    continue;
-
-                if (curr.getTravelTime() < 300L) {  // for the hull, only consider intersections if travel time is less than 5min
-                    forHull.add(curr.getIntersectionID());
-                }
-
-                Set<Intersection> neighbors = map.intersections().get(curr.getIntersectionID()).getAdjacentFrom();
-
-                for (Intersection ngh : neighbors) {
-                    if (!visited.contains(ngh.id)) {
-
-                        long totalTravelTime;
-                        totalTravelTime = curr.getTravelTime() +
-                                    map.travelTimeBetween(map.intersections().get(curr.getIntersectionID()), ngh);
-
-                        if (totalTravelTime < 600L) {  // add nodes within 10 mins radius to be considered for weight calculation
-                            pq.add(new QEntry(ngh.id, totalTravelTime));
-                        }
-                    }
-                }
+            engine.run(map.intersections().get(intersectionID).pathTableIndex(), 300L);
+            for (int i = 0; i < engine.settledCount(); i++) {
+                forHull.add(engine.intersection(engine.settled(i)).id);
             }
             // create convex hull (have to convert from IntersectionIds to Intersections and back...)
             List<Intersection> intersectionList = new ArrayList<>();
@@ -286,67 +278,102 @@ public class TripsDataProcessor {
         System.out.println("After optimizing trips, there are " + trips.size() + " trips left.");
     }
 
-    private ArrayList<Resource> parseResources(String data_file) {
-        CSVNewYorkParser parser = new CSVNewYorkParser(data_file, map.computeZoneId());
-        return parser.parse(); // Resources with unixTimestamps
-    }
-
     /**
      * Precompute the pickup and drop off counts per intersection and time bin.
      * Those are going to be used for weighting the trips (temporally).
      *
+     * The data files are split into chunks that are parsed, filtered by the bounding polygon and
+     * map-matched in parallel. Each thread collects the pickups it parses into a batch that is
+     * map-matched and counted at once when it is full, so the resources of the data files are
+     * never held in memory at once.
+     *
      * @param binSize in minutes
+     * @throws RuntimeException if a data file cannot be read or a chunk fails, since the counts
+     *         would be partial
      */
     private void countEvents(long binSize, long binStep) {
         assert (binSize >= binStep);
-        // Load the data file such that we get a list of the resources as we'll have them in the map
-        ArrayList<Resource> resources = new ArrayList<>();
-        for (String data_file : data_files) {
-            resources.addAll(parseResources(data_file));
+        int bins = (int) (SECONDS_IN_WEEK / binSize);
+        // the counts by intersection (path table index) and time bin
+        AtomicIntegerArray counts = new AtomicIntegerArray(map.intersections().size() * bins);
+        // the batch of pickups of each thread
+        Queue<PickupBatch> batches = new ConcurrentLinkedQueue<>();
+        ThreadLocal<PickupBatch> threadBatch = ThreadLocal.withInitial(() -> {
+            PickupBatch batch = new PickupBatch();
+            batches.add(batch);
+            return batch;
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(ingestParallelism);
+        try {
+            for (String data_file : data_files) {
+                CSVNewYorkParser parser = new CSVNewYorkParser(data_file, map.computeZoneId());
+                parser.parseInParallel(executor, INGEST_CHUNK_SIZE, res -> {
+                    PickupBatch batch = threadBatch.get();
+                    batch.add(res);
+                    if (batch.size == MAP_MATCH_BATCH_SIZE) {
+                        batch.count(counts, bins);
+                    }
+                });
+            }
+        } catch (ExecutionException e) {
+            // a chunk failed, so the counts would be partial
+            throw new RuntimeException("Counting the pickups of the data files failed", e.getCause());
+        } catch (Exception e) {
+            throw new RuntimeException("Counting the pickups of the data files failed", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        for (PickupBatch batch : batches) {
+            batch.count(counts, bins);
         }
-
-        // make sure that the list of resources is sorted according to pickup time
-        resources.sort(Comparator.comparingLong(Resource::getTime));
 
         // init pick up and drop off count maps (recall: <intersectionID -> <time -> count>>)
         pickupCounts = new HashMap<>();
-        for (Long intersectionID : map.intersections().keySet()) {
+        for (Intersection intersection : map.intersections().values()) {
             HashMap<Long, Integer> timeToCount = new HashMap<>();
-            for (long timestamp = 0; timestamp < SECONDS_IN_WEEK; timestamp+=binSize) {
-                timeToCount.put(timestamp, 0);
+            for (int bin = 0; bin < bins; bin++) {
+                timeToCount.put(bin * binSize, counts.get(intersection.pathTableIndex() * bins + bin));
             }
-            pickupCounts.put(intersectionID, timeToCount);
-        }
-        // fill the map
-        for (Resource res : resources) {
-            assignResourceToIntersection(res);
+            pickupCounts.put(intersection.id, timeToCount);
         }
     }
 
-    private void assignResourceToIntersection(Resource res) {
-        HashMap<Long, HashMap<Long, Integer>> targetMap = pickupCounts;
-        double lat = res.getPickupLat();
-        double lon = res.getPickupLon();
-        // get the nearest link of the current resource
-        Link nearestLink = map.getNearestLink(lon, lat);
-        // get the resource's xy projection
-        double[] xyProjection = map.projector().fromLatLon(lat, lon);
-        // get this resource's associated time bin
-        long time = res.getTime();
-
-        long associatedBinLatest = assignToTimeBin(time);
-        // assign resource to closest intersection
-        if (nearestLink.road.from.xy.distance(xyProjection[0], xyProjection[1]) <
-                nearestLink.road.to.xy.distance(xyProjection[0], xyProjection[1])) {
-            // the from intersection of the nearest link is closer
-            HashMap<Long, Integer> counts = targetMap.get(nearestLink.road.from.id);
-            counts.put(associatedBinLatest, counts.get(associatedBinLatest) + 1);
-            targetMap.put(nearestLink.road.from.id, counts);
-        } else {
-            // the to intersection of the nearest link is closer
-            HashMap<Long, Integer> counts = targetMap.get(nearestLink.road.to.id);
-            counts.put(associatedBinLatest, counts.get(associatedBinLatest) + 1);
-            targetMap.put(nearestLink.road.to.id, counts);
+    /**
+     * The pickups parsed by one thread that are not counted yet.
+     */
+    private class PickupBatch {
+        private final double[] longitudes = new double[MAP_MATCH_BATCH_SIZE];
+        private final double[] latitudes = new double[MAP_MATCH_BATCH_SIZE];
+        private final long[] times = new long[MAP_MATCH_BATCH_SIZE];
+        private int size = 0;
+
+        private void add(Resource res) {
+            longitudes[size] = res.getPickupLon();
+            latitudes[size] = res.getPickupLat();
+            times[size] = res.getTime();
+            size++;
+        }
+
+        /**
+         * Map-match the pickups, count each at the intersection of its nearest link that is
+         * closer to it, and empty the batch.
+         */
+        private void count(AtomicIntegerArray counts, int bins) {
+            MapMatches matches = map.mapMatch(Arrays.copyOf(longitudes, size), Arrays.copyOf(latitudes, size), null);
+            for (int i = 0; i < size; i++) {
+                Road road = matches.road(i);
+                // assign resource to closest intersection
+                Intersection intersection;
+                if (road.from.distance(matches.x[i], matches.y[i]) < road.to.distance(matches.x[i], matches.y[i])) {
+                    // the from intersection of the nearest link is closer
+                    intersection = road.from;
+                } else {
+                    // the to intersection of the nearest link is closer
+                    intersection = road.to;
+                }
+                counts.incrementAndGet(intersection.pathTableIndex() * bins + assignTimeIndex(times[i]));
+            }
+            size = 0;
         }
     }
 
@@ -364,37 +391,6 @@ public class TripsDataProcessor {
         return Collections.unmodifiableList(tripList);
     }
 
-    private class QEntry implements Comparable<QEntry> {
-
-        private long travelTime;
-        private Long intersectionID;
-
-        public QEntry(Long i, long travelTime) {
-            this.travelTime = travelTime;
-            this.intersectionID = i;
-        }
-
-        public long getTravelTime() {
-            return travelTime;
-        }
-
-        public void setTravelTime(int travelTime) {
-            this.travelTime = travelTime;
-        }
-
-        public Long getIntersectionID() {
-            return intersectionID;
-        }
-
-        @Override
-        public int compareTo(QEntry e) {
-            return Long.compare(this.travelTime, e.getTravelTime());
-        }
-
-
-    }
-
-
     public static class Data {
         public final Map<Intersection, Trip> trips;
         public final double[][] theta;